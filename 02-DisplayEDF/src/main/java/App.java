@@ -1,7 +1,9 @@
 import com.sun.net.httpserver.HttpExchange;
 
+import be.uclouvain.ChannelColumnCache;
 import be.uclouvain.EDFTimeSeries;
 import be.uclouvain.HttpToolbox;
+import be.uclouvain.PolyphaseResampler;
 
 import java.io.IOException;
 import java.util.Map;
@@ -33,6 +35,7 @@ public class App {
     public synchronized void postClear(HttpExchange exchange) throws IOException {
         try{
             timeSeries = null;
+            ChannelColumnCache.clear();
             HttpToolbox.sendResponse(exchange,"text/plain", "");
             //HttpExchange.sendResponseHeaders(200, -1);
             // might have to add a response header with 200 if
@@ -58,6 +61,7 @@ public class App {
     public synchronized void postUpload(HttpExchange exchange) throws IOException {
         byte[] edfData = HttpToolbox.getMultipartFile(exchange, "data");
         timeSeries = new EDFTimeSeries(edfData);
+        ChannelColumnCache.clear();
         if(edfData == null){
             HttpToolbox.sendBadRequest(exchange);
         }
@@ -125,6 +129,13 @@ public class App {
      * is non-existent in the currently uploaded EDF file, the method
      * must answer with a 404 "Not Found" HTTP status.
      *
+     * If the optional "targetRate" GET argument is provided and is
+     * below the sampling frequency of the channel, the channel is
+     * resampled to this rate (cf. "PolyphaseResampler") before being
+     * sent, which reduces the number of points to be displayed. A
+     * rate that is too low to be reached by "PolyphaseResampler"
+     * gives a 400 "Bad Request" HTTP status.
+     *
      * Sample command-line session using the "curl" tool:
      *
      *   $ curl http://localhost:8000/samples?channel=25
@@ -184,20 +195,58 @@ public class App {
         }
         
 
+        // Optional "targetRate" GET argument: Downsample the channel
+        // before sending it, which shrinks the payload
+        double targetRate = 0;
+        String target = arguments.get("targetRate");
+        if (target != null) {
+            try {
+                targetRate = Double.parseDouble(target);
+            } catch (NumberFormatException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            if (!(targetRate > 0)) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+        }
+
         JSONArray jsonArray = new JSONArray();
 
 
         double samplingFrequency = timeSeries.getSamplingFrequency(i);
         double timeInterval = 1.0 / samplingFrequency;
 
-        for (int j = 0; j < samples; j++) {
-            int digitalValue = timeSeries.getDigitalValue(i, j);
-            float physicalValue = timeSeries.getChannel(i).getPhysicalValue(digitalValue);
-
-            JSONObject sampleJson = new JSONObject();
-            sampleJson.put("x", j * timeInterval);
-            sampleJson.put("y", physicalValue);
-            jsonArray.put(sampleJson);
+        if (targetRate > 0 && targetRate < samplingFrequency) {
+            PolyphaseResampler resampler;
+            try {
+                resampler = PolyphaseResampler.create(samplingFrequency, targetRate);
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            double[] decoded = new double[samples];
+            timeSeries.getPhysicalValues(i, 0, decoded, 0, samples);
+
+            double[] resampled = resampler.process(decoded, samples);
+            timeInterval = 1.0 / resampler.getOutputRate(samplingFrequency);
+
+            for (int j = 0; j < resampled.length; j++) {
+                JSONObject sampleJson = new JSONObject();
+                sampleJson.put("x", j * timeInterval);
+                sampleJson.put("y", resampled[j]);
+                jsonArray.put(sampleJson);
+            }
+        } else {
+            float[] physicalValues = timeSeries.getPhysicalValues(i);
+            for (int j = 0; j < samples; j++) {
+                JSONObject sampleJson = new JSONObject();
+                sampleJson.put("x", j * timeInterval);
+                sampleJson.put("y", physicalValues[j]);
+                jsonArray.put(sampleJson);
+            }
         }
 
         HttpToolbox.sendResponse(exchange, "application/json", jsonArray.toString());
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Polyphase resampler of real signals by a rational factor "up/down".
+ * Conceptually, the signal is upsampled by inserting "up-1" zeros
+ * between its samples, low-pass filtered to remove both the images
+ * and the frequencies above the new Nyquist frequency (anti-aliasing),
+ * then decimated by keeping one sample out of "down". The polyphase
+ * decomposition of the low-pass filter only evaluates the products
+ * that contribute to the kept samples, so the cost is proportional to
+ * the number of output samples.
+ *
+ * The low-pass filter is a Blackman-windowed sinc, whose delay is
+ * compensated: The "m"-th output sample corresponds to the time
+ * "m * down / up" in the input. Objects are immutable and can be
+ * shared by concurrent threads.
+ */
+public class PolyphaseResampler {
+    /**
+     * Number of taps of the low-pass filter on each side of its
+     * center, expressed in samples at the lowest of the two rates.
+     */
+    public static final int HALF_TAPS = 16;
+
+    /**
+     * Largest numerator or denominator used to approximate the
+     * ratio between two sampling frequencies.
+     */
+    public static final int MAX_FACTOR = 1000;
+
+    private final int up;
+    private final int down;
+    private final int center;
+    private final double[][] phases;  // phases[p][j] = h[p + j * up]
+
+    private static int gcd(int a,
+                           int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1;
+        } else {
+            return Math.sin(Math.PI * x) / (Math.PI * x);
+        }
+    }
+
+    /**
+     * Create a resampler by a rational factor.
+     * @param up The upsampling factor.
+     * @param down The downsampling factor.
+     */
+    public PolyphaseResampler(int up,
+                              int down) {
+        if (up <= 0 ||
+            down <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        int divisor = gcd(up, down);
+        this.up = up / divisor;
+        this.down = down / divisor;
+
+        // Low-pass filter at the upsampled rate, with a cutoff at the
+        // lowest of the two Nyquist frequencies, and a gain of "up"
+        // to compensate for the inserted zeros
+        final int factor = Math.max(this.up, this.down);
+        final int length = 2 * HALF_TAPS * factor + 1;
+        final double cutoff = 0.5 / (double) factor;  // In cycles per upsampled sample
+        center = HALF_TAPS * factor;
+
+        double[] kernel = new double[length];
+        for (int n = 0; n < length; n++) {
+            double window = (0.42 - 0.5 * Math.cos(2.0 * Math.PI * n / (length - 1)) +
+                             0.08 * Math.cos(4.0 * Math.PI * n / (length - 1)));
+            kernel[n] = 2.0 * cutoff * sinc(2.0 * cutoff * (n - center)) * window * this.up;
+        }
+
+        final int tapsPerPhase = (length + this.up - 1) / this.up;
+        phases = new double[this.up][tapsPerPhase];
+        for (int n = 0; n < length; n++) {
+            phases[n % this.up][n / this.up] = kernel[n];
+        }
+    }
+
+    /**
+     * Create a resampler between two sampling frequencies, whose ratio
+     * is approximated by a fraction whose terms are at most
+     * "MAX_FACTOR" (using continued fractions).
+     * @param sourceRate The sampling frequency of the input.
+     * @param targetRate The requested sampling frequency of the output.
+     * @return The resampler.
+     * @throws IllegalArgumentException If the ratio between the two
+     * frequencies is below "1/MAX_FACTOR" or above "MAX_FACTOR".
+     */
+    public static PolyphaseResampler create(double sourceRate,
+                                            double targetRate) {
+        if (!(sourceRate > 0) ||
+            !(targetRate > 0)) {
+            throw new IllegalArgumentException("The sampling frequencies must be positive");
+        }
+
+        final double ratio = targetRate / sourceRate;
+
+        // Convergents "p/q" of the continued fraction of the ratio
+        long p0 = 0, q0 = 1, p1 = 1, q1 = 0;
+        double x = ratio;
+        int bestUp = 0;
+        int bestDown = 0;
+
+        for (int i = 0; i < 32; i++) {
+            long a = (long) Math.floor(x);
+            long p2 = a * p1 + p0;
+            long q2 = a * q1 + q0;
+            if (p2 > MAX_FACTOR || q2 > MAX_FACTOR) {
+                break;
+            }
+            if (p2 > 0) {
+                bestUp = (int) p2;
+                bestDown = (int) q2;
+            }
+            p0 = p1;
+            q0 = q1;
+            p1 = p2;
+            q1 = q2;
+
+            double fraction = x - a;
+            if (fraction < 1e-9) {
+                break;
+            }
+            x = 1.0 / fraction;
+        }
+
+        if (bestUp == 0) {
+            // Not even the first convergent fits, which would otherwise
+            // silently give a resampler by a factor of 1
+            throw new IllegalArgumentException("The ratio between the sampling frequencies is out of range: " + ratio);
+        }
+
+        return new PolyphaseResampler(bestUp, bestDown);
+    }
+
+    /**
+     * Get the upsampling factor.
+     * @return The numerator of the (reduced) resampling factor.
+     */
+    public int getUp() {
+        return up;
+    }
+
+    /**
+     * Get the downsampling factor.
+     * @return The denominator of the (reduced) resampling factor.
+     */
+    public int getDown() {
+        return down;
+    }
+
+    /**
+     * Get the actual sampling frequency of the output.
+     * @param sourceRate The sampling frequency of the input.
+     * @return The sampling frequency of the output.
+     */
+    public double getOutputRate(double sourceRate) {
+        return sourceRate * (double) up / (double) down;
+    }
+
+    /**
+     * Get the number of output samples for a given input.
+     * @param inputLength The number of input samples.
+     * @return The number of output samples.
+     */
+    public int getOutputLength(int inputLength) {
+        return (int) (((long) inputLength * up + down - 1) / down);
+    }
+
+    /**
+     * Resample a signal. The samples before the beginning and after
+     * the end of the input are considered as zeros.
+     * @param input The input samples.
+     * @param length The number of input samples to be considered.
+     * @return The output samples.
+     */
+    public double[] process(double[] input,
+                            int length) {
+        if (length > input.length) {
+            throw new IllegalArgumentException();
+        }
+
+        final double[] output = new double[getOutputLength(length)];
+
+        for (int m = 0; m < output.length; m++) {
+            // Position in the upsampled signal, shifted by the delay of the filter
+            final long t = (long) m * down + center;
+            final int phase = (int) (t % up);
+            final long last = t / up;  // Most recent input sample contributing to "m"
+            final double[] taps = phases[phase];
+
+            double sum = 0;
+            for (int j = 0; j < taps.length; j++) {
+                final long n = last - j;
+                if (n < 0) {
+                    break;
+                } else if (n < length) {
+                    sum += taps[j] * input[(int) n];
+                }
+            }
+            output[m] = sum;
+        }
+
+        return output;
+    }
+}
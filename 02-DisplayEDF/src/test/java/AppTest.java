@@ -1,15 +1,23 @@
 import org.javagrader.Allow;
 import org.javagrader.Grade;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import be.uclouvain.ChannelColumnCache;
+import be.uclouvain.EDFTimeSeries;
 import be.uclouvain.HttpToolbox;
 import be.uclouvain.MockHttpExchange;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 @Grade
 @Allow("all")  // Allows the use of "java.lang.Thread" and "java.lang.ClassLoader" for dcm4che/HttpToolbox
@@ -96,4 +104,190 @@ public class AppTest {
             assertEquals(0.012035, o2.getJSONObject(30591).getDouble("y"), 0.0001);
         }    
     }
+
+    @Test
+    @Grade(value = 1)
+    public void testResampledSamples() throws IOException, URISyntaxException {
+        AppLauncher app = new AppLauncher();
+
+        final byte[] edf = HttpToolbox.readResource("/eeglab_data.edf");
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", edf);
+
+        assertEquals(400, MockHttpExchange.executeGetAsStatusCode(app, "/samples?channel=2&targetRate=nope"));
+        assertEquals(400, MockHttpExchange.executeGetAsStatusCode(app, "/samples?channel=2&targetRate=0"));
+        assertEquals(400, MockHttpExchange.executeGetAsStatusCode(app, "/samples?channel=2&targetRate=0.0001"));
+
+        // Downsampling from 128Hz to 32Hz keeps one sample out of 4
+        JSONArray f3 = new JSONArray(MockHttpExchange.executeGetAsString(app, "/samples?channel=2&targetRate=32"));
+        assertEquals(7648, f3.length());
+        assertEquals(0, f3.getJSONObject(0).getDouble("x"), 0.00001);
+        assertEquals(0.03125, f3.getJSONObject(1).getDouble("x"), 0.00001);
+        assertEquals(238.96875, f3.getJSONObject(7647).getDouble("x"), 0.00001);
+
+        // Rates above the sampling frequency leave the channel untouched
+        f3 = new JSONArray(MockHttpExchange.executeGetAsString(app, "/samples?channel=2&targetRate=1000"));
+        assertEquals(30592, f3.length());
+        assertEquals(-26.771448, f3.getJSONObject(0).getDouble("y"), 0.00001);
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testBulkDecoding() throws IOException {
+        EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/eeglab_data.edf"));
+        for (int channel = 0; channel < edf.getNumberOfChannels(); channel++) {
+            int[] values = edf.getDigitalValues(channel);
+            assertEquals(edf.getNumberOfSamples(channel), values.length);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(edf.getDigitalValue(channel, i), values[i]);
+            }
+        }
+
+        // Range that straddles several data records, written at an offset
+        int channel = edf.lookupChannelIndex("Oz");
+        int start = edf.getChannel(channel).getNumberOfSamplesInRecord() - 3;
+        int[] range = new int[1000];
+        edf.getDigitalValues(channel, start, range, 10, 990);
+        for (int i = 0; i < 990; i++) {
+            assertEquals(edf.getDigitalValue(channel, start + i), range[10 + i]);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> edf.getDigitalValues(channel, edf.getNumberOfSamples(channel) - 5, range, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> edf.getDigitalValues(channel, 0, range, 995, 10));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testPhysicalDecoding() throws IOException {
+        EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/eeglab_data.edf"));
+        for (int channel = 0; channel < edf.getNumberOfChannels(); channel++) {
+            EDFTimeSeries.Channel info = edf.getChannel(channel);
+            float[] values = edf.getPhysicalValues(channel);
+            double[] doubles = new double[values.length + 2];
+            edf.getPhysicalValues(channel, 0, doubles, 2, values.length);
+            for (int i = 0; i < values.length; i++) {
+                float expected = info.getPhysicalValue(edf.getDigitalValue(channel, i));
+                assertEquals(expected, values[i], 0.0f);
+                assertEquals(expected, doubles[2 + i], 0.0);
+            }
+        }
+
+        float[] range = new float[10];
+        assertThrows(IllegalArgumentException.class, () -> edf.getPhysicalValues(0, -1, range, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> edf.getPhysicalValues(0, 0, range, 1, 10));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testMappedFile() throws IOException {
+        final byte[] data = HttpToolbox.readResource("/eeglab_data.edf");
+        EDFTimeSeries expected = new EDFTimeSeries(data);
+
+        Path path = Files.createTempFile("eeglab", ".edf");
+        try {
+            Files.write(path, data);
+
+            // Tiny segments, so that the file is split into many mappings
+            for (int segmentSize : new int[] { 1000, 65536, EDFTimeSeries.DEFAULT_SEGMENT_SIZE }) {
+                EDFTimeSeries mapped = EDFTimeSeries.mapFile(path.toString(), segmentSize);
+                assertEquals(expected.getNumberOfChannels(), mapped.getNumberOfChannels());
+                assertEquals(expected.getDuration(), mapped.getDuration(), 0.0);
+                for (int channel = 0; channel < expected.getNumberOfChannels(); channel++) {
+                    assertEquals(expected.getChannel(channel).getLabel(), mapped.getChannel(channel).getLabel());
+                    assertArrayEquals(expected.getDigitalValues(channel), mapped.getDigitalValues(channel));
+                    assertArrayEquals(expected.getPhysicalValues(channel), mapped.getPhysicalValues(channel));
+                    int last = expected.getNumberOfSamples(channel) - 1;
+                    assertEquals(expected.getDigitalValue(channel, last), mapped.getDigitalValue(channel, last));
+                }
+            }
+
+            // Truncated file
+            Files.write(path, Arrays.copyOf(data, data.length - 1));
+            assertThrows(IOException.class, () -> EDFTimeSeries.mapFile(path.toString()));
+            Files.write(path, Arrays.copyOf(data, 100));
+            assertThrows(IOException.class, () -> EDFTimeSeries.mapFile(path.toString()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static String getHeaderField(byte[] data,
+                                         int offset,
+                                         int length) {
+        return new String(data, offset, length, StandardCharsets.US_ASCII).replaceAll(" +$", "");
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testHeaderParsing() throws IOException {
+        final byte[] data = HttpToolbox.readResource("/eeglab_data.edf");
+        EDFTimeSeries edf = new EDFTimeSeries(data);
+
+        // Reference values, decoded with the standard Java parsers
+        final int ns = Integer.parseInt(getHeaderField(data, 252, 4));
+        assertEquals(ns, edf.getNumberOfChannels());
+        assertEquals(Double.parseDouble(getHeaderField(data, 244, 8)) * Integer.parseInt(getHeaderField(data, 236, 8)),
+                     edf.getDuration(), 0.0);
+
+        for (int i = 0; i < ns; i++) {
+            EDFTimeSeries.Channel channel = edf.getChannel(i);
+            assertEquals(getHeaderField(data, 256 + i * 16, 16), channel.getLabel());
+            assertEquals(getHeaderField(data, 256 + ns * 16 + i * 80, 80), channel.getTransducerType());
+            assertEquals(getHeaderField(data, 256 + ns * 96 + i * 8, 8), channel.getPhysicalDimension());
+            assertEquals(Float.parseFloat(getHeaderField(data, 256 + ns * 104 + i * 8, 8)), channel.getPhysicalMinimum(), 0.0f);
+            assertEquals(Float.parseFloat(getHeaderField(data, 256 + ns * 112 + i * 8, 8)), channel.getPhysicalMaximum(), 0.0f);
+            assertEquals(Integer.parseInt(getHeaderField(data, 256 + ns * 120 + i * 8, 8)), channel.getDigitalMinimum());
+            assertEquals(Integer.parseInt(getHeaderField(data, 256 + ns * 128 + i * 8, 8)), channel.getDigitalMaximum());
+            assertEquals(getHeaderField(data, 256 + ns * 136 + i * 80, 80), channel.getPrefiltering());
+            assertEquals(Integer.parseInt(getHeaderField(data, 256 + ns * 216 + i * 8, 8)), channel.getNumberOfSamplesInRecord());
+            assertEquals(i, edf.lookupChannelIndex(channel.getLabel()));
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testColumnCache() throws IOException {
+        EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/eeglab_data.edf"));
+        int channel = edf.lookupChannelIndex("Oz");
+        float[] expected = new float[edf.getNumberOfSamples(channel)];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = edf.getChannel(channel).getPhysicalValue(edf.getDigitalValue(channel, i));
+        }
+
+        ChannelColumnCache.clear();
+        try {
+            // The first access transposes all the channels at once
+            assertArrayEquals(expected, edf.getPhysicalValues(channel), 0.0f);
+            assertEquals(edf.getNumberOfChannels(), ChannelColumnCache.getSize());
+            assertEquals(0, ChannelColumnCache.getCountHits());
+            assertEquals(1, ChannelColumnCache.getCountMisses());
+
+            double[] range = new double[10];
+            edf.getPhysicalValues(channel, 100, range, 2, 8);
+            for (int i = 0; i < 8; i++) {
+                assertEquals(expected[100 + i], range[2 + i], 0.0);
+            }
+            edf.getPhysicalValues(0, 0, range, 0, 10);
+            assertEquals(2, ChannelColumnCache.getCountHits());
+            assertEquals(1, ChannelColumnCache.getCountMisses());
+
+            // Too small a budget: The channels are decoded from the file
+            ChannelColumnCache.setMemoryBudget(1024);
+            assertEquals(0, ChannelColumnCache.getSize());
+            assertEquals(0, ChannelColumnCache.getMemoryUsage());
+            assertArrayEquals(expected, edf.getPhysicalValues(channel), 0.0f);
+            assertEquals(0, ChannelColumnCache.getSize());
+
+            // Room for one channel only: The channels are cached one by one
+            ChannelColumnCache.setMemoryBudget(4L * expected.length + 1024);
+            assertArrayEquals(expected, edf.getPhysicalValues(channel), 0.0f);
+            assertEquals(1, ChannelColumnCache.getSize());
+            edf.getPhysicalValues(0);
+            assertEquals(1, ChannelColumnCache.getSize());
+
+            assertThrows(IllegalArgumentException.class, () -> ChannelColumnCache.setMemoryBudget(0));
+        } finally {
+            ChannelColumnCache.setMemoryBudget(ChannelColumnCache.DEFAULT_MEMORY_BUDGET);
+            ChannelColumnCache.clear();
+        }
+    }
 }
@@ -89,11 +89,13 @@ public class App {
             JSONArray jsonArray = new JSONArray();
             int n_samples = timeSeries.getNumberOfSamples(i)/timeSeries.lookupNumberOfEpochs();
             double timecode = 1.0/timeSeries.getSamplingFrequency(i);
+            // Decode the whole channel at once, instead of jumping between the epochs.
+            // Each request parses its own file, so "ChannelColumnCache" would not help.
+            float[] physical_values = timeSeries.decodePhysicalValues(i);
             for (int j = 0; j < n_samples; j++) {
                 double sample_value = 0.0;
                 for (int k = 0; k < timeSeries.lookupNumberOfEpochs(); k++) {
-                    int digital_value = timeSeries.getDigitalValue(i, j + k * n_samples);
-                    double physical_value = timeSeries.getChannel(i).getPhysicalValue(digital_value);
+                    double physical_value = physical_values[j + k * n_samples];
                     sample_value += physical_value;
                 }
 
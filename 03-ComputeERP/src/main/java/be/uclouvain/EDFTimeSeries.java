@@ -26,10 +26,13 @@
 package be.uclouvain;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,51 +40,177 @@ import java.util.Map;
 /**
  * Class to access the content of an EDF (European Data Format) file.
  * The implementation is as close as possible to the internal EDF file format.
+ *
+ * The samples are either stored in memory (cf. the constructor), or
+ * read on demand from a memory-mapped file (cf. "mapFile()"). In the
+ * latter case, only the header is loaded, and the memory that is used
+ * by the samples is managed by the page cache of the operating system,
+ * which allows to open files that are larger than the Java heap.
  */
 public class EDFTimeSeries {
+    /**
+     * Parser of the ASCII fields of the header. The fields are decoded
+     * in place, from the bytes of the header: No intermediate array
+     * or string is created for the numbers, and the strings are only
+     * created if needed.
+     */
     static private class Reader {
         private final byte[] data;
         private int offset = 0;
 
+        // Result of the last successful call to "parseDecimal()"
+        private long mantissa;
+        private int countDecimals;
+        private boolean negative;
+
         private Reader(byte[] data) {
             this.data = data;
         }
 
-        public byte[] readChunk(int length) {
-            if (offset + length > data.length) {
+        // Returns the offset of the skipped field
+        public int skip(int length) {
+            if (length < 0 ||
+                offset + length > data.length) {
                 throw new IllegalArgumentException();
             } else {
-                byte[] chunk = Arrays.copyOfRange(data, offset, offset + length);
+                int field = offset;
                 offset += length;
-                return chunk;
+                return field;
             }
         }
 
-        private String trim(String s) {
-            int length = s.length();
-
+        // Length of a field, once its trailing spaces are removed
+        private static int getTrimmedLength(byte[] data,
+                                            int offset,
+                                            int length) {
             while (length > 0 &&
-                    s.charAt(length - 1) == 0x20) {
+                    data[offset + length - 1] == 0x20) {
                 length--;
             }
 
-            return s.substring(0, length);
+            return length;
+        }
+
+        public static String decodeAscii(byte[] data,
+                                         int offset,
+                                         int length) {
+            return new String(data, offset, getTrimmedLength(data, offset, length), StandardCharsets.US_ASCII);
         }
 
         public String readAscii(int length) {
-            return trim(new String(readChunk(length), StandardCharsets.US_ASCII));
+            int field = skip(length);
+            return decodeAscii(data, field, length);
         }
 
+        // Same as "Integer.parseInt()" on the trimmed field
         public int readInteger(int length) {
-            return Integer.parseInt(readAscii(length));
+            int field = skip(length);
+            int end = field + getTrimmedLength(data, field, length);
+
+            int position = field;
+            boolean negative = false;
+            if (position < end &&
+                (data[position] == '-' || data[position] == '+')) {
+                negative = (data[position] == '-');
+                position++;
+            }
+
+            if (position == end) {
+                throw new NumberFormatException("Bad integer in EDF header");
+            }
+
+            long value = 0;
+            for (; position < end; position++) {
+                int digit = data[position] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Bad integer in EDF header");
+                }
+                value = 10 * value + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new NumberFormatException("Bad integer in EDF header");
+                }
+            }
+
+            value = (negative ? -value : value);
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Bad integer in EDF header");
+            }
+
+            return (int) value;
+        }
+
+        // Decimal number "[+-]digits[.digits]", as a mantissa, a number
+        // of fractional digits and a sign. Returns "false" if the field
+        // uses another syntax (e.g. an exponent), or has too many digits.
+        private boolean parseDecimal(int field,
+                                     int length) {
+            int end = field + getTrimmedLength(data, field, length);
+            int position = field;
+            boolean negative = false;
+            if (position < end &&
+                (data[position] == '-' || data[position] == '+')) {
+                negative = (data[position] == '-');
+                position++;
+            }
+
+            long mantissa = 0;
+            int countDigits = 0;
+            int countDecimals = -1;  // No decimal point so far
+            for (; position < end; position++) {
+                byte c = data[position];
+                if (c == '.' && countDecimals == -1) {
+                    countDecimals = 0;
+                } else if (c >= '0' && c <= '9') {
+                    mantissa = 10 * mantissa + (c - '0');
+                    countDigits++;
+                    if (countDecimals != -1) {
+                        countDecimals++;
+                    }
+                } else {
+                    return false;
+                }
+            }
+
+            if (countDigits == 0 ||
+                countDigits > 15) {
+                return false;
+            }
+
+            this.mantissa = mantissa;
+            this.countDecimals = Math.max(countDecimals, 0);
+            this.negative = negative;
+            return true;
         }
 
+        // Same as "Float.parseFloat()" on the trimmed field
         public float readFloat(int length) {
-            return Float.parseFloat(readAscii(length));
+            int field = skip(length);
+
+            // If the mantissa and the power of 10 are both exact in
+            // single precision, the division is correctly rounded
+            if (parseDecimal(field, length) &&
+                mantissa < (1L << 24) &&
+                countDecimals <= 10) {
+                float value = (float) mantissa / FLOAT_POWERS_OF_TEN[countDecimals];
+                return (negative ? -value : value);
+            } else {
+                return Float.parseFloat(decodeAscii(data, field, length));
+            }
         }
 
+        // Same as "Double.parseDouble()" on the trimmed field
         public double readDouble(int length) {
-            return Double.parseDouble(readAscii(length));
+            int field = skip(length);
+
+            // Same reasoning as in "readFloat()", in double precision
+            if (parseDecimal(field, length) &&
+                mantissa < (1L << 53) &&
+                countDecimals <= 22) {
+                double value = (double) mantissa / DOUBLE_POWERS_OF_TEN[countDecimals];
+                return (negative ? -value : value);
+            } else {
+                return Double.parseDouble(decodeAscii(data, field, length));
+            }
         }
 
         public int getOffset() {
@@ -89,11 +218,26 @@ public class EDFTimeSeries {
         }
     }
 
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
 
     /**
      * Class that contains the parameters of one channel (i.e. one electrode) in an EDF file.
      */
     static public class Channel {
+        // The text fields are only decoded from the header when accessed
+        private final byte[] header;
+        private int labelOffset;
+        private int transducerTypeOffset;
+        private int physicalDimensionOffset;
+        private int prefilteringOffset;
         private String label;
         private String transducerType;
         private String physicalDimension;
@@ -103,22 +247,23 @@ public class EDFTimeSeries {
         private int digitalMaximum;
         private String prefiltering;
         private int numberOfSamplesInRecord;
-        private boolean physicalInitialized = false;
+        private volatile boolean physicalInitialized = false;
         private float physicalScaling;
 
-        private Channel() {
+        private Channel(byte[] header) {
+            this.header = header;
         }
 
         private void readLabel(Reader reader) {
-            label = reader.readAscii(16);
+            labelOffset = reader.skip(16);
         }
 
         private void readTransducerType(Reader reader) {
-            transducerType = reader.readAscii(80);
+            transducerTypeOffset = reader.skip(80);
         }
 
         private void readPhysicalDimension(Reader reader) {
-            physicalDimension = reader.readAscii(8);
+            physicalDimensionOffset = reader.skip(8);
         }
 
         private void readPhysicalMinimum(Reader reader) {
@@ -138,7 +283,7 @@ public class EDFTimeSeries {
         }
 
         private void readPrefiltering(Reader reader) {
-            prefiltering = reader.readAscii(80);
+            prefilteringOffset = reader.skip(80);
         }
 
         private void readNumberOfSamplesInRecord(Reader reader) {
@@ -150,6 +295,9 @@ public class EDFTimeSeries {
          * @return The label.
          */
         public String getLabel() {
+            if (label == null) {
+                label = Reader.decodeAscii(header, labelOffset, 16);
+            }
             return label;
         }
 
@@ -158,6 +306,9 @@ public class EDFTimeSeries {
          * @return The transducer type.
          */
         public String getTransducerType() {
+            if (transducerType == null) {
+                transducerType = Reader.decodeAscii(header, transducerTypeOffset, 80);
+            }
             return transducerType;
         }
 
@@ -166,6 +317,9 @@ public class EDFTimeSeries {
          * @return The units.
          */
         public String getPhysicalDimension() {
+            if (physicalDimension == null) {
+                physicalDimension = Reader.decodeAscii(header, physicalDimensionOffset, 8);
+            }
             return physicalDimension;
         }
 
@@ -206,6 +360,9 @@ public class EDFTimeSeries {
          * @return The prefiltering parameters.
          */
         public String getPrefiltering() {
+            if (prefiltering == null) {
+                prefiltering = Reader.decodeAscii(header, prefilteringOffset, 80);
+            }
             return prefiltering;
         }
 
@@ -225,6 +382,17 @@ public class EDFTimeSeries {
          * @throws IOException If the file doesn't follow the EDF specification.
          */
         public float getPhysicalValue(int digitalValue) throws IOException {
+            final float scaling = getPhysicalScaling();
+
+            if (digitalValue < digitalMinimum ||
+                    digitalValue > digitalMaximum) {
+                throw new IllegalArgumentException();
+            } else {
+                return (float) (digitalValue - digitalMinimum) * scaling + physicalMinimum;
+            }
+        }
+
+        private float getPhysicalScaling() throws IOException {
             if (!physicalInitialized) {
                 if (physicalMinimum >= physicalMaximum ||
                         digitalMinimum >= digitalMaximum) {
@@ -235,12 +403,7 @@ public class EDFTimeSeries {
                 }
             }
 
-            if (digitalValue < digitalMinimum ||
-                    digitalValue > digitalMaximum) {
-                throw new IllegalArgumentException();
-            } else {
-                return (float) (digitalValue - digitalMinimum) * physicalScaling + physicalMinimum;
-            }
+            return physicalScaling;
         }
     }
 
@@ -303,7 +466,17 @@ public class EDFTimeSeries {
     }
 
 
-    private final byte[] data;
+    /**
+     * Default size of the segments in which the files are mapped.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    // The samples, as little-endian buffers. Segment "i" starts at
+    // byte "i * segmentSize" of the file, and is followed by one
+    // additional data record, so that the samples of one channel in
+    // one data record never straddle two segments.
+    private final ByteBuffer[] segments;
+    private final long segmentSize;
     private final String localPatientIdentification;
     private final String localRecordingIdentification;
     private final String startDate;
@@ -312,8 +485,9 @@ public class EDFTimeSeries {
     private final int numberOfDataRecords;
     private final double durationOfDataRecord;  // In seconds
     private int recordSize;
+    private final int[] channelOffsets;  // Byte offset of each channel inside a data record
     private final Channel[] channels;
-    private final Map<String, Integer> channelsIndex = new HashMap<>();
+    private Map<String, Integer> channelsIndex;  // Created on the first lookup
     private final PlusLocalRecordingIdentification plusLocalRecordingIdentification;
 
     /**
@@ -322,9 +496,23 @@ public class EDFTimeSeries {
      * @throws IOException If the file doesn't follow the EDF specification.
      */
     public EDFTimeSeries(byte[] data) throws IOException {
-        this.data = data;
+        this(data, data.length, null, 0);
+    }
 
-        Reader reader = new Reader(data);
+    /**
+     * Parse the header of an EDF file, then give access to its samples.
+     * @param header The EDF file, or at least its full header.
+     * @param fileSize The size of the EDF file.
+     * @param file If not `null`, the file whose samples are to be
+     * mapped. Otherwise, "header" contains the full EDF file.
+     * @param segmentSize The size of the mapped segments (only used
+     * if "file" is not `null`).
+     */
+    private EDFTimeSeries(byte[] header,
+                          long fileSize,
+                          FileChannel file,
+                          int segmentSize) throws IOException {
+        Reader reader = new Reader(header);
 
         if (!reader.readAscii(8).equals("0")) {
             throw new IOException("Bad EDF file format");
@@ -337,20 +525,18 @@ public class EDFTimeSeries {
 
         headerSize = reader.readInteger(8);
 
-        reader.readChunk(44);  // Skipping reserved
+        reader.skip(44);  // Skipping reserved
 
         numberOfDataRecords = reader.readInteger(8);
         durationOfDataRecord = reader.readDouble(8);
 
-        channels = new Channel[(int) reader.readInteger(4)];
+        channels = new Channel[reader.readInteger(4)];
         for (int i = 0; i < channels.length; i++) {
-            channels[i] = new Channel();
+            channels[i] = new Channel(header);
         }
 
-        for (int i = 0; i < channels.length; i++) {
-            Channel channel = channels[i];
+        for (Channel channel : channels) {
             channel.readLabel(reader);
-            channelsIndex.put(channel.getLabel(), i);
         }
 
         for (Channel channel : channels) {
@@ -387,22 +573,46 @@ public class EDFTimeSeries {
 
         // Skipping reserved
         for (int i = 0; i < channels.length; i++) {
-            reader.readChunk(32);
+            reader.skip(32);
         }
 
         if (headerSize != reader.getOffset()) {
             throw new IOException("Bad EDF file format");
         }
 
+        // The channels are stored one after the other in each data
+        // record: Their offsets are computed once, so that accessing
+        // a sample doesn't depend on the index of its channel
+        channelOffsets = new int[channels.length];
         recordSize = 0;
-        for (Channel channel : channels) {
-            recordSize += 2 * channel.getNumberOfSamplesInRecord();
+        for (int i = 0; i < channels.length; i++) {
+            channelOffsets[i] = recordSize;
+            recordSize += 2 * channels[i].getNumberOfSamplesInRecord();
         }
 
-        if (headerSize + recordSize * numberOfDataRecords != data.length) {
+        if (numberOfDataRecords < 0 ||
+            headerSize + (long) recordSize * (long) numberOfDataRecords != fileSize) {
             throw new IOException("Bad EDF file format");
         }
 
+        if (file == null) {
+            segments = new ByteBuffer[] { ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN) };
+            this.segmentSize = Long.MAX_VALUE;
+        } else {
+            if (segmentSize <= 0 ||
+                (long) segmentSize + (long) recordSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Bad segment size");
+            }
+
+            segments = new ByteBuffer[(int) ((fileSize + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i * (long) segmentSize;
+                long length = Math.min((long) segmentSize + recordSize, fileSize - start);
+                segments[i] = file.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            this.segmentSize = segmentSize;
+        }
+
         String[] split = localRecordingIdentification.split(" ");
         if (split.length == 5 &&
             split[0].equals("Startdate")) {
@@ -424,6 +634,70 @@ public class EDFTimeSeries {
         return new EDFTimeSeries(data);
     }
 
+    /**
+     * Open an EDF file on the filesystem by mapping it into memory.
+     * Contrarily to "parseFile()", only the header is read: The
+     * samples are loaded on demand by the operating system. Files
+     * larger than 2GB are split into several mappings.
+     * @param path Path to the EDF file.
+     * @return The EDF file.
+     * @throws IOException If the file cannot be read, or if it
+     * doesn't follow the EDF specification.
+     */
+    static public EDFTimeSeries mapFile(String path) throws IOException {
+        return mapFile(path, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Variant of "mapFile()" where the size of the mapped segments can
+     * be chosen.
+     * @param path Path to the EDF file.
+     * @param segmentSize The size of each segment, in bytes.
+     * @return The EDF file.
+     * @throws IOException If the file cannot be read, or if it
+     * doesn't follow the EDF specification.
+     */
+    static public EDFTimeSeries mapFile(String path,
+                                        int segmentSize) throws IOException {
+        try (FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long fileSize = file.size();
+            if (fileSize < 256) {
+                throw new IOException("Bad EDF file format");
+            }
+
+            // The size of the header is stored at byte 184 of its fixed part
+            byte[] fixed = readFully(file, 0, 256);
+            Reader reader = new Reader(fixed);
+            reader.skip(184);
+            int headerSize;
+            try {
+                headerSize = reader.readInteger(8);
+            } catch (IllegalArgumentException e) {  // Also catches "NumberFormatException"
+                throw new IOException("Bad EDF file format");
+            }
+
+            if (headerSize < 256 ||
+                headerSize > fileSize) {
+                throw new IOException("Bad EDF file format");
+            }
+
+            // The mappings remain valid after the file is closed
+            return new EDFTimeSeries(readFully(file, 0, headerSize), fileSize, file, segmentSize);
+        }
+    }
+
+    private static byte[] readFully(FileChannel file,
+                                    long position,
+                                    int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Bad EDF file format");
+            }
+        }
+        return buffer.array();
+    }
+
     /**
      * Get the local patient identification field.
      * @return The local patient identification.
@@ -499,17 +773,24 @@ public class EDFTimeSeries {
         return getChannel(channelIndex).getNumberOfSamplesInRecord() * numberOfDataRecords;
     }
 
-    private int getDigitalSample(int offset) {
-        // "Each sample value is represented as a 2-byte integer
-        // in 2's complement format." NB: Byte.toUnsignedInt()
-        // requires Java 8.
+    private long getSamplePosition(int channelIndex,
+                                   int recordIndex,
+                                   int sampleInRecord) {
+        return headerSize + (long) recordIndex * (long) recordSize + channelOffsets[channelIndex] + 2 * sampleInRecord;
+    }
 
-        int value = Byte.toUnsignedInt(data[offset + 1]) * 256 + Byte.toUnsignedInt(data[offset]);
-        if (value >= 32768) {
-            return value - 65536;
-        } else {
-            return value;
-        }
+    private ByteBuffer getSegment(long position) {
+        return segments[(int) (position / segmentSize)];
+    }
+
+    private int getIndexInSegment(long position) {
+        return (int) (position % segmentSize);
+    }
+
+    private int getDigitalSample(long position) {
+        // "Each sample value is represented as a 2-byte integer
+        // in 2's complement format." The segments are little-endian.
+        return getSegment(position).getShort(getIndexInSegment(position));
     }
 
     /**
@@ -522,16 +803,277 @@ public class EDFTimeSeries {
     public int getDigitalValue(int channelIndex,
                                int sample) {
         int samplesInRecord = getChannel(channelIndex).getNumberOfSamplesInRecord();
-        int recordIndex = sample / samplesInRecord;
-        int recordOffset = headerSize + recordIndex * recordSize;
+        return getDigitalSample(getSamplePosition(channelIndex, sample / samplesInRecord, sample % samplesInRecord));
+    }
+
+    /**
+     * Get the digital values (integers) of a range of samples in one
+     * of the channels (electrodes). The samples are decoded by one
+     * sequential pass over each data record, which is much faster
+     * than calling "getDigitalValue()" for each sample.
+     * @param channelIndex The index of the channel of interest.
+     * @param start The index of the first sample of interest.
+     * @param target The array receiving the digital values.
+     * @param offset The index in "target" of the first digital value.
+     * @param count The number of samples to be decoded.
+     */
+    public void getDigitalValues(int channelIndex,
+                                 int start,
+                                 int[] target,
+                                 int offset,
+                                 int count) {
+        checkRange(channelIndex, start, target.length, offset, count);
+
+        final int samplesInRecord = getChannel(channelIndex).getNumberOfSamplesInRecord();
+        int recordIndex = (count == 0 ? 0 : start / samplesInRecord);
+        int sampleInRecord = (count == 0 ? 0 : start % samplesInRecord);
+        int position = offset;
+        int remaining = count;
+
+        while (remaining > 0) {
+            final int chunk = Math.min(remaining, samplesInRecord - sampleInRecord);
+            final long source = getSamplePosition(channelIndex, recordIndex, sampleInRecord);
+            final ByteBuffer segment = getSegment(source);
+            final int index = getIndexInSegment(source);
+
+            for (int i = 0; i < chunk; i++) {
+                target[position + i] = segment.getShort(index + 2 * i);
+            }
+
+            position += chunk;
+            remaining -= chunk;
+            recordIndex++;
+            sampleInRecord = 0;
+        }
+    }
+
+    /**
+     * Get the digital values (integers) of all the samples in one of
+     * the channels (electrodes).
+     * @param channelIndex The index of the channel of interest.
+     * @return The digital values, of length "getNumberOfSamples()".
+     * @see #getDigitalValues(int, int, int[], int, int)
+     */
+    public int[] getDigitalValues(int channelIndex) {
+        int[] values = new int[getNumberOfSamples(channelIndex)];
+        getDigitalValues(channelIndex, 0, values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * Get the physical values of a range of samples in one of the
+     * channels (electrodes). This gives the same values as calling
+     * "getDigitalValue()" then "Channel.getPhysicalValue()" for each
+     * sample, but the scaling and the validation of the channel are
+     * done once, and the 16-bit integers are converted by a simple
+     * loop over each data record, without any allocation. The values
+     * are copied from "ChannelColumnCache" whenever the channel can
+     * be cached, in which case the whole file is only decoded once.
+     * @param channelIndex The index of the channel of interest.
+     * @param start The index of the first sample of interest.
+     * @param target The array receiving the physical values.
+     * @param offset The index in "target" of the first physical value.
+     * @param count The number of samples to be decoded.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     */
+    public void getPhysicalValues(int channelIndex,
+                                  int start,
+                                  float[] target,
+                                  int offset,
+                                  int count) throws IOException {
+        checkRange(channelIndex, start, target.length, offset, count);
+
+        float[] column = (count == 0 ? null : ChannelColumnCache.getColumn(this, channelIndex));
+        if (column == null) {
+            decodePhysicalValues(channelIndex, start, target, offset, count);
+        } else {
+            System.arraycopy(column, start, target, offset, count);
+        }
+    }
+
+    /**
+     * Decode a range of physical values directly from the EDF file,
+     * without going through "ChannelColumnCache". This is meant for
+     * the callers that read each sample only once, or that read the
+     * file by small chunks to bound their memory (e.g. streaming):
+     * Caching the transposed file would be useless for them.
+     * @param channelIndex The index of the channel of interest.
+     * @param start The index of the first sample of interest.
+     * @param target The array receiving the physical values.
+     * @param offset The index in "target" of the first physical value.
+     * @param count The number of samples to be decoded.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     * @see #getPhysicalValues(int, int, float[], int, int)
+     */
+    public void decodePhysicalValues(int channelIndex,
+                                     int start,
+                                     float[] target,
+                                     int offset,
+                                     int count) throws IOException {
+        checkRange(channelIndex, start, target.length, offset, count);
+
+        final Channel channel = getChannel(channelIndex);
+        final float scaling = channel.getPhysicalScaling();
+        final int digitalMinimum = channel.getDigitalMinimum();
+        final int digitalMaximum = channel.getDigitalMaximum();
+        final float physicalMinimum = channel.getPhysicalMinimum();
+        final int samplesInRecord = channel.getNumberOfSamplesInRecord();
+
+        int recordIndex = (count == 0 ? 0 : start / samplesInRecord);
+        int sampleInRecord = (count == 0 ? 0 : start % samplesInRecord);
+        int position = offset;
+        int remaining = count;
+        boolean outOfRange = false;
+
+        while (remaining > 0) {
+            final int chunk = Math.min(remaining, samplesInRecord - sampleInRecord);
+            final long source = getSamplePosition(channelIndex, recordIndex, sampleInRecord);
+            final ByteBuffer segment = getSegment(source);
+            final int index = getIndexInSegment(source);
+
+            // No branch inside the loop: The range is checked once per record
+            for (int i = 0; i < chunk; i++) {
+                final int value = segment.getShort(index + 2 * i);
+                outOfRange |= (value < digitalMinimum) | (value > digitalMaximum);
+                target[position + i] = (float) (value - digitalMinimum) * scaling + physicalMinimum;
+            }
 
-        for (int i = 0; i < channelIndex; i++) {
-            recordOffset += 2 * getChannel(i).getNumberOfSamplesInRecord();
+            if (outOfRange) {
+                throw new IllegalArgumentException();
+            }
+
+            position += chunk;
+            remaining -= chunk;
+            recordIndex++;
+            sampleInRecord = 0;
         }
+    }
 
-        recordOffset += 2 * (sample % samplesInRecord);
+    /**
+     * Variant of "getPhysicalValues()" writing into an array of
+     * doubles. The values are computed in single precision, as in
+     * "Channel.getPhysicalValue()", then widened.
+     * @param channelIndex The index of the channel of interest.
+     * @param start The index of the first sample of interest.
+     * @param target The array receiving the physical values.
+     * @param offset The index in "target" of the first physical value.
+     * @param count The number of samples to be decoded.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     * @see #getPhysicalValues(int, int, float[], int, int)
+     */
+    public void getPhysicalValues(int channelIndex,
+                                  int start,
+                                  double[] target,
+                                  int offset,
+                                  int count) throws IOException {
+        checkRange(channelIndex, start, target.length, offset, count);
+
+        float[] column = (count == 0 ? null : ChannelColumnCache.getColumn(this, channelIndex));
+        if (column == null) {
+            decodePhysicalValues(channelIndex, start, target, offset, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                target[offset + i] = column[start + i];
+            }
+        }
+    }
+
+    /**
+     * Variant of "decodePhysicalValues()" writing into an array of
+     * doubles, without going through "ChannelColumnCache".
+     * @param channelIndex The index of the channel of interest.
+     * @param start The index of the first sample of interest.
+     * @param target The array receiving the physical values.
+     * @param offset The index in "target" of the first physical value.
+     * @param count The number of samples to be decoded.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     * @see #decodePhysicalValues(int, int, float[], int, int)
+     */
+    public void decodePhysicalValues(int channelIndex,
+                                     int start,
+                                     double[] target,
+                                     int offset,
+                                     int count) throws IOException {
+        checkRange(channelIndex, start, target.length, offset, count);
+
+        final Channel channel = getChannel(channelIndex);
+        final float scaling = channel.getPhysicalScaling();
+        final int digitalMinimum = channel.getDigitalMinimum();
+        final int digitalMaximum = channel.getDigitalMaximum();
+        final float physicalMinimum = channel.getPhysicalMinimum();
+        final int samplesInRecord = channel.getNumberOfSamplesInRecord();
+
+        int recordIndex = (count == 0 ? 0 : start / samplesInRecord);
+        int sampleInRecord = (count == 0 ? 0 : start % samplesInRecord);
+        int position = offset;
+        int remaining = count;
+        boolean outOfRange = false;
+
+        while (remaining > 0) {
+            final int chunk = Math.min(remaining, samplesInRecord - sampleInRecord);
+            final long source = getSamplePosition(channelIndex, recordIndex, sampleInRecord);
+            final ByteBuffer segment = getSegment(source);
+            final int index = getIndexInSegment(source);
+
+            for (int i = 0; i < chunk; i++) {
+                final int value = segment.getShort(index + 2 * i);
+                outOfRange |= (value < digitalMinimum) | (value > digitalMaximum);
+                // Computed in single precision, then widened
+                final float physical = (float) (value - digitalMinimum) * scaling + physicalMinimum;
+                target[position + i] = physical;
+            }
+
+            if (outOfRange) {
+                throw new IllegalArgumentException();
+            }
 
-        return getDigitalSample(recordOffset);
+            position += chunk;
+            remaining -= chunk;
+            recordIndex++;
+            sampleInRecord = 0;
+        }
+    }
+
+    /**
+     * Get the physical values of all the samples in one of the
+     * channels (electrodes).
+     * @param channelIndex The index of the channel of interest.
+     * @return The physical values, of length "getNumberOfSamples()".
+     * @throws IOException If the file doesn't follow the EDF specification.
+     * @see #getPhysicalValues(int, int, float[], int, int)
+     */
+    public float[] getPhysicalValues(int channelIndex) throws IOException {
+        float[] values = new float[getNumberOfSamples(channelIndex)];
+        getPhysicalValues(channelIndex, 0, values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * Decode the physical values of all the samples in one of the
+     * channels (electrodes), without going through "ChannelColumnCache".
+     * @param channelIndex The index of the channel of interest.
+     * @return The physical values, of length "getNumberOfSamples()".
+     * @throws IOException If the file doesn't follow the EDF specification.
+     * @see #decodePhysicalValues(int, int, float[], int, int)
+     */
+    public float[] decodePhysicalValues(int channelIndex) throws IOException {
+        float[] values = new float[getNumberOfSamples(channelIndex)];
+        decodePhysicalValues(channelIndex, 0, values, 0, values.length);
+        return values;
+    }
+
+    private void checkRange(int channelIndex,
+                            int start,
+                            int targetLength,
+                            int offset,
+                            int count) {
+        if (start < 0 ||
+            count < 0 ||
+            offset < 0 ||
+            start + count > getNumberOfSamples(channelIndex) ||
+            offset + count > targetLength) {
+            throw new IllegalArgumentException();
+        }
     }
 
     /**
@@ -540,7 +1082,7 @@ public class EDFTimeSeries {
      * @return The channel (electrode).
      */
     public Channel lookupChannel(String label) {
-        return channels[channelsIndex.get(label)];
+        return channels[getChannelsIndex().get(label)];
     }
 
     /**
@@ -549,7 +1091,17 @@ public class EDFTimeSeries {
      * @return The index of the channel (electrode).
      */
     public int lookupChannelIndex(String label) {
-        return channelsIndex.get(label);
+        return getChannelsIndex().get(label);
+    }
+
+    private synchronized Map<String, Integer> getChannelsIndex() {
+        if (channelsIndex == null) {
+            channelsIndex = new HashMap<>();
+            for (int i = 0; i < channels.length; i++) {
+                channelsIndex.put(channels[i].getLabel(), i);
+            }
+        }
+        return channelsIndex;
     }
 
     /**
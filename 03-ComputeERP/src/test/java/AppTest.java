@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import be.uclouvain.ChannelColumnCache;
 import be.uclouvain.HttpToolbox;
 import be.uclouvain.MockHttpExchange;
 import be.uclouvain.EDFTimeSeries;
@@ -60,4 +61,16 @@ public class AppTest {
             }
         }
     }
+
+    @Test
+    @Grade(value = 1)
+    public void testErpNotCached() throws IOException, URISyntaxException {
+        final AppLauncher app = new AppLauncher();
+
+        // The uploaded file is read once, so it must not stay in memory
+        ChannelColumnCache.clear();
+        assertEquals(200, MockHttpExchange.executeMultipartUploadAsStatusCode(
+            app, "/compute-erp", "data", HttpToolbox.readResource("/n170_epochs.edf")));
+        assertEquals(0, ChannelColumnCache.getSize());
+    }
 }
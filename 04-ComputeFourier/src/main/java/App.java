@@ -1,13 +1,40 @@
 import be.uclouvain.HttpToolbox;
 import com.sun.net.httpserver.HttpExchange;
 
+import be.uclouvain.ChannelMatrix;
 import be.uclouvain.ComplexNumber;
+import be.uclouvain.CrossSpectralMatrix;
+import be.uclouvain.DPSSTapers;
 import be.uclouvain.EDFTimeSeries;
+import be.uclouvain.FFTPlan;
+import be.uclouvain.FFTPlanCache;
+import be.uclouvain.FloatRealFFTPlan;
+import be.uclouvain.FrequencyBand;
+import be.uclouvain.Goertzel;
+import be.uclouvain.MultitaperPSD;
+import be.uclouvain.Padding;
+import be.uclouvain.ParallelLoop;
+import be.uclouvain.PolyphaseResampler;
+import be.uclouvain.Precision;
+import be.uclouvain.RealFFTPlan;
 import be.uclouvain.Signal;
+import be.uclouvain.STFT;
+import be.uclouvain.SignalBuffer;
+import be.uclouvain.SlidingDFT;
+import be.uclouvain.SlidingDFTSessions;
+import be.uclouvain.SpectrogramCache;
+import be.uclouvain.SpectrogramTile;
+import be.uclouvain.WelchPSD;
+import be.uclouvain.WindowFunction;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Your task is to implement this class, by developing methods that
@@ -111,34 +138,14 @@ public class App {
             return source;
         }
 
-        if (! (N > 0 && (N & (N - 1)) == 0)) {
+        if (!FFTPlan.isPowerOfTwo(N)) {
             throw new IllegalArgumentException("N must be a power of 2.");
         }
 
-        Signal even_signal = new Signal(N / 2);
-        Signal odd_signal = new Signal(N / 2);
-
-        for (int m = 0; m < N / 2; m++) {
-            even_signal.setValue(m, source.getValue(m * 2));
-            odd_signal.setValue(m, source.getValue(m * 2 + 1));
-        }
-
-        Signal even_fft = computeFFT(even_signal);
-        Signal odd_fft = computeFFT(odd_signal);
-
-        Signal result = new Signal(N);
-        for (int k = 0; k < N / 2; k++) {
-            double theta = -2 * Math.PI * k / N;
-            ComplexNumber exp = exp_img(new ComplexNumber(0, theta));
-
-            ComplexNumber evenValue = even_fft.getValue(k);
-            ComplexNumber oddValue = multi_img(odd_fft.getValue(k), exp);
-
-            result.setValue(k, add_img(evenValue, oddValue));
-            result.setValue(k + N / 2, subs_img(evenValue, oddValue));
-        }
-
-        return result;
+        // Iterative, in-place transform on a copy of the primitive arrays
+        SignalBuffer result = source.getBuffer().copy(N);
+        FFTPlanCache.getPlan(N).forward(result.getReal(), result.getImag());
+        return new Signal(result);
     }
 
     /**
@@ -160,10 +167,10 @@ public class App {
         double T = 1.0 / samplingFrequency;
         double normalizationFactor = T / N;
 
+        double[] real = fourier.getBuffer().getReal();
+        double[] imag = fourier.getBuffer().getImag();
         for (int k = 0; k < N; k++) {
-            ComplexNumber value = fourier.getValue(k);
-
-            powerSpectrum[k] = normalizationFactor * (Math.pow(value.getReal(),2) + Math.pow(value.getImag(),2));
+            powerSpectrum[k] = normalizationFactor * (real[k] * real[k] + imag[k] * imag[k]);
         }
 
         return powerSpectrum;
@@ -226,6 +233,75 @@ public class App {
     public static void computePowerSpectrum(HttpExchange exchange,
                                             EDFTimeSeries timeSeries,
                                             int channelIndex) throws IOException {
+        computePowerSpectrum(exchange, timeSeries, channelIndex, Padding.POWER_OF_TWO);
+    }
+
+    /**
+     * Variant of the "/compute-power-spectrum" route where the length
+     * of the zero-padded buffer can be chosen. With "Padding.SMOOTH"
+     * or "Padding.NONE", the FFT is not restricted to powers of 2,
+     * which avoids nearly doubling the transform size for channels
+     * whose length is just above a power of 2. The "N/2+1" first
+     * values of the power spectrum of the padded signal are sent.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param padding The padding strategy.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computePowerSpectrum(HttpExchange exchange,
+                                            EDFTimeSeries timeSeries,
+                                            int channelIndex,
+                                            Padding padding) throws IOException {
+        computePowerSpectrum(exchange, timeSeries, channelIndex, padding, 0);
+    }
+
+    /**
+     * Variant of the "/compute-power-spectrum" route that first
+     * resamples the channel to a lower sampling frequency (cf.
+     * "PolyphaseResampler"). This shrinks the FFT and the response
+     * whenever the caller is only interested in the low frequencies
+     * (typically, below 30Hz for clinical EEG). The "x" values and the
+     * normalization use the sampling frequency after resampling.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param padding The padding strategy.
+     * @param targetRate The requested sampling frequency. The channel
+     * is left untouched if this value is not strictly positive, or if
+     * it is not below the sampling frequency of the channel.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computePowerSpectrum(HttpExchange exchange,
+                                            EDFTimeSeries timeSeries,
+                                            int channelIndex,
+                                            Padding padding,
+                                            double targetRate) throws IOException {
+        computePowerSpectrum(exchange, timeSeries, channelIndex, padding, targetRate, Precision.DOUBLE);
+    }
+
+    /**
+     * Variant of the "/compute-power-spectrum" route whose FFT can be
+     * computed in single precision (cf. "Precision"). In this case,
+     * the padded length must be a power of 2, and the power spectrum
+     * is sent as 32-bit floats.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param padding The padding strategy.
+     * @param targetRate The requested sampling frequency (cf. above).
+     * @param precision The precision of the FFT.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computePowerSpectrum(HttpExchange exchange,
+                                            EDFTimeSeries timeSeries,
+                                            int channelIndex,
+                                            Padding padding,
+                                            double targetRate,
+                                            Precision precision) throws IOException {
         if (timeSeries == null) {
             HttpToolbox.sendNotFound(exchange);
             //throw new IOException();
@@ -233,36 +309,649 @@ public class App {
             HttpToolbox.sendNotFound(exchange);
         } else {
 
-            EDFTimeSeries.Channel channel = timeSeries.getChannel(channelIndex);
-
             int N = timeSeries.getNumberOfSamples(channelIndex);
+            double samplingFrequency = timeSeries.getSamplingFrequency(channelIndex);
+
+            double[] resampled = null;
+            if (targetRate > 0 && targetRate < samplingFrequency) {
+                double[] decoded = new double[N];
+                timeSeries.getPhysicalValues(channelIndex, 0, decoded, 0, N);
+
+                PolyphaseResampler resampler = PolyphaseResampler.create(samplingFrequency, targetRate);
+                resampled = resampler.process(decoded, N);
+                samplingFrequency = resampler.getOutputRate(samplingFrequency);
+                N = resampled.length;
+            }
+
+            int new_N = padding.getPaddedLength(Math.max(N, 1));
+            if (precision == Precision.SINGLE) {
+                sendSinglePrecisionPowerSpectrum(exchange, timeSeries, channelIndex, resampled,
+                                                 N, new_N, samplingFrequency);
+                return;
+            }
+
+            // The channel is real-valued, so its spectrum is
+            // Hermitian: Only the "new_N/2+1" bins that are sent back
+            // are computed. The padded signal is processed in the
+            // scratch buffers of the FFT plan, which are reused.
+            RealFFTPlan plan = FFTPlanCache.getRealPlan(new_N);
+            double[] samples = plan.getScratchSamples();
+            if (resampled != null) {
+                System.arraycopy(resampled, 0, samples, 0, N);
+            } else {
+                timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+            }
+            Arrays.fill(samples, N, new_N, 0);
+
+            SignalBuffer spectrum = plan.getScratchSpectrum();
+            double[] real = spectrum.getReal();
+            double[] imag = spectrum.getImag();
+            plan.forward(samples, real, imag);
 
-            int new_N = N;
-            while (! (new_N > 0 && (new_N & (new_N - 1)) == 0)){
-                new_N++;
+            double normalizationFactor = (1.0 / samplingFrequency) / new_N;
+
+            JSONArray response = new JSONArray();
+
+            for (int i = 0; i < plan.getNumberOfBins(); i++) {
+                JSONObject element = new JSONObject();
+                element.put("x", samplingFrequency / new_N * i);
+                element.put("y", normalizationFactor * (real[i] * real[i] + imag[i] * imag[i]));
+                response.put(element);
             }
-            Signal signal = new Signal(new_N);
+            HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+        }
+    }
+
+    private static void sendSinglePrecisionPowerSpectrum(HttpExchange exchange,
+                                                         EDFTimeSeries timeSeries,
+                                                         int channelIndex,
+                                                         double[] resampled,
+                                                         int N,
+                                                         int new_N,
+                                                         double samplingFrequency) throws IOException {
+        if (!FFTPlan.isPowerOfTwo(new_N) ||
+            new_N < 2) {
+            throw new IllegalArgumentException("Single precision requires a power-of-two padding");
+        }
 
+        FloatRealFFTPlan plan = FFTPlanCache.getFloatRealPlan(new_N);
+        float[] samples = plan.getScratchSamples();
+        if (resampled != null) {
             for (int i = 0; i < N; i++) {
-                signal.setValue(i, channel.getPhysicalValue(timeSeries.getDigitalValue(channelIndex, i)));
+                samples[i] = (float) resampled[i];
             }
-            for (int j = N; j < new_N; j++) {
-                signal.setValue(j, new ComplexNumber(0,0));
+        } else {
+            // The physical values are floats, so they are stored without rounding
+            timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+        }
+        Arrays.fill(samples, N, new_N, 0);
+
+        float[] real = plan.getScratchReal();
+        float[] imag = plan.getScratchImag();
+        plan.forward(samples, real, imag);
+
+        float normalizationFactor = (float) ((1.0 / samplingFrequency) / new_N);
+
+        JSONArray response = new JSONArray();
+
+        for (int i = 0; i < plan.getNumberOfBins(); i++) {
+            JSONObject element = new JSONObject();
+            element.put("x", samplingFrequency / new_N * i);
+            element.put("y", normalizationFactor * (real[i] * real[i] + imag[i] * imag[i]));
+            response.put(element);
+        }
+        HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+    }
+
+    /**
+     * Variant of the "/compute-power-spectrum" route that estimates
+     * the power spectral density using Welch's method (cf. "WelchPSD")
+     * instead of computing one periodogram of the whole channel. The
+     * estimate is less noisy, and the response only contains
+     * "segmentLength/2+1" values, whatever the length of the channel.
+     * If the channel is shorter than "segmentLength", one segment
+     * covering the whole channel is used.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param segmentLength The number of samples in each segment.
+     * @param overlap The number of samples shared by two successive
+     * segments, or a negative value to use half the segment length.
+     * @param window The window function.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computeWelchPowerSpectrum(HttpExchange exchange,
+                                                 EDFTimeSeries timeSeries,
+                                                 int channelIndex,
+                                                 int segmentLength,
+                                                 int overlap,
+                                                 WindowFunction window) throws IOException {
+        if (timeSeries == null ||
+            channelIndex < 0 ||
+            channelIndex >= timeSeries.getNumberOfChannels()) {
+            HttpToolbox.sendNotFound(exchange);
+        } else {
+            int N = timeSeries.getNumberOfSamples(channelIndex);
+            if (N == 0) {
+                throw new IllegalArgumentException("Empty channel");
+            }
+
+            int length = Math.min(segmentLength, N);
+            if (overlap < 0) {
+                overlap = length / 2;
+            } else if (overlap >= length) {
+                throw new IllegalArgumentException("The overlap must be smaller than the segments");
             }
 
-            Signal FFT_signal = computeFFT(signal);
-            double[] powerspectrum = computePowerSpectrum(FFT_signal, timeSeries.getSamplingFrequency(channelIndex));
+            double[] samples = new double[N];
+            timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+
+            double samplingFrequency = timeSeries.getSamplingFrequency(channelIndex);
+            double[] psd = WelchPSD.compute(samples, N, samplingFrequency, length, overlap, window);
 
             JSONArray response = new JSONArray();
+            for (int i = 0; i < psd.length; i++) {
+                JSONObject element = new JSONObject();
+                element.put("x", samplingFrequency / length * i);
+                element.put("y", psd[i]);
+                response.put(element);
+            }
+            HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+        }
+    }
+
+    /**
+     * Variant of the "/compute-power-spectrum" route that estimates
+     * the power spectral density using Thomson's multitaper method
+     * (cf. "MultitaperPSD"). The whole channel is used, so the
+     * frequency resolution is the same as for the periodogram, but the
+     * variance of the estimate is divided by the number of tapers.
+     * The DPSS tapers are cached (cf. "DPSSTaperCache"), so that the
+     * next requests on channels of the same length only cost "K" FFTs.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param bandwidth The time-bandwidth product "NW".
+     * @param countTapers The number "K" of tapers, or a non-positive
+     * value to use "2NW - 1" tapers.
+     * @param padding The padding strategy.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computeMultitaperPowerSpectrum(HttpExchange exchange,
+                                                      EDFTimeSeries timeSeries,
+                                                      int channelIndex,
+                                                      double bandwidth,
+                                                      int countTapers,
+                                                      Padding padding) throws IOException {
+        if (timeSeries == null ||
+            channelIndex < 0 ||
+            channelIndex >= timeSeries.getNumberOfChannels()) {
+            HttpToolbox.sendNotFound(exchange);
+        } else {
+            int N = timeSeries.getNumberOfSamples(channelIndex);
+            if (N == 0) {
+                throw new IllegalArgumentException("Empty channel");
+            }
+
+            if (countTapers <= 0) {
+                countTapers = DPSSTapers.getDefaultNumberOfTapers(bandwidth);
+            }
+
+            double[] samples = new double[N];
+            timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+
+            double samplingFrequency = timeSeries.getSamplingFrequency(channelIndex);
+            double[] psd = MultitaperPSD.compute(samples, N, samplingFrequency, bandwidth, countTapers, padding);
+            int paddedLength = padding.getPaddedLength(N);
 
-            for (int i = 0; i <= powerspectrum.length/2; i++) {
+            JSONArray response = new JSONArray();
+            for (int i = 0; i < psd.length; i++) {
                 JSONObject element = new JSONObject();
-                double frequency = timeSeries.getSamplingFrequency(channelIndex)/ powerspectrum.length  * i;
-                element.put("x", frequency);
-                element.put("y", powerspectrum[i]);
+                element.put("x", samplingFrequency / paddedLength * i);
+                element.put("y", psd[i]);
                 response.put(element);
             }
             HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
         }
     }
+
+    /**
+     * Route that sends one tile of the spectrogram (short-time
+     * Fourier transform) of one channel of the provided EDF file. The
+     * tiles are cached (cf. "SpectrogramCache"), and are sent as a
+     * binary buffer of float32 values expressed in decibels (cf.
+     * "SpectrogramTile.encode()").
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param stft The configuration of the short-time Fourier transform.
+     * @param tileIndex The index of the tile of interest.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computeSpectrogram(HttpExchange exchange,
+                                          EDFTimeSeries timeSeries,
+                                          int channelIndex,
+                                          STFT stft,
+                                          int tileIndex) throws IOException {
+        if (timeSeries == null ||
+            channelIndex < 0 ||
+            channelIndex >= timeSeries.getNumberOfChannels()) {
+            HttpToolbox.sendNotFound(exchange);
+        } else {
+            int totalFrames = stft.getNumberOfFrames(timeSeries.getNumberOfSamples(channelIndex));
+            SpectrogramTile tile = SpectrogramCache.getTile(timeSeries, channelIndex, stft, tileIndex);
+            HttpToolbox.sendResponse(exchange, "application/octet-stream", tile.encode(totalFrames));
+        }
+    }
+
+    /**
+     * Compute the power of one channel inside several frequency bands,
+     * for each epoch of the channel, directly on the decoded samples
+     * (cf. "Goertzel.computeBandPowers()", which switches to one real
+     * FFT per epoch for the wide bands, so that the cost stays in
+     * "O(N log(N))" even for long epochs). The epochs are processed
+     * in parallel. The samples after the last
+     * complete epoch are ignored, except if the channel is shorter
+     * than one epoch, in which case the whole channel is one epoch.
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param epochDuration The duration of each epoch, in seconds.
+     * @param bands The frequency bands of interest.
+     * @return The power of each band (second index) in each epoch
+     * (first index).
+     * @throws IOException If the file doesn't follow the EDF specification.
+     **/
+    public static double[][] computeBandPowers(EDFTimeSeries timeSeries,
+                                               int channelIndex,
+                                               double epochDuration,
+                                               final FrequencyBand[] bands) throws IOException {
+        if (epochDuration <= 0) {
+            throw new IllegalArgumentException("The duration of the epochs must be positive");
+        }
+
+        int N = timeSeries.getNumberOfSamples(channelIndex);
+        final double samplingFrequency = timeSeries.getSamplingFrequency(channelIndex);
+
+        int epochLength = (int) Math.round(epochDuration * samplingFrequency);
+        if (epochLength <= 0 || epochLength > N) {
+            epochLength = N;
+        }
+        if (epochLength == 0) {
+            throw new IllegalArgumentException("Empty channel");
+        }
+
+        final int countEpochs = N / epochLength;
+        final double[] samples = new double[countEpochs * epochLength];
+        timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, samples.length);
+
+        final int length = epochLength;
+        final double[][] powers = new double[countEpochs][bands.length];
+        ParallelLoop.run(countEpochs, (from, to) -> {
+            for (int epoch = from; epoch < to; epoch++) {
+                Goertzel.computeBandPowers(samples, epoch * length, length, samplingFrequency, bands, powers[epoch]);
+            }
+        });
+
+        return powers;
+    }
+
+    /**
+     * Route that sends the power of several channels inside several
+     * frequency bands. The response is a JSON dictionary that maps
+     * the label of each channel to a dictionary with two fields:
+     * "average" maps the name of each band to its power averaged over
+     * the epochs, and "epochs" is an array containing the power of
+     * each band in each epoch.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest.
+     * @param epochDuration The duration of each epoch, in seconds.
+     * @param bands The frequency bands of interest.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computeBandPower(HttpExchange exchange,
+                                        EDFTimeSeries timeSeries,
+                                        int[] channels,
+                                        double epochDuration,
+                                        FrequencyBand[] bands) throws IOException {
+        if (timeSeries == null) {
+            HttpToolbox.sendNotFound(exchange);
+            return;
+        }
+
+        for (int channelIndex : channels) {
+            if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+                HttpToolbox.sendNotFound(exchange);
+                return;
+            }
+        }
+
+        JSONObject response = new JSONObject();
+
+        for (int channelIndex : channels) {
+            double[][] powers = computeBandPowers(timeSeries, channelIndex, epochDuration, bands);
+
+            JSONArray epochs = new JSONArray();
+            double[] sums = new double[bands.length];
+            for (double[] epoch : powers) {
+                JSONObject item = new JSONObject();
+                for (int b = 0; b < bands.length; b++) {
+                    item.put(bands[b].getName(), epoch[b]);
+                    sums[b] += epoch[b];
+                }
+                epochs.put(item);
+            }
+
+            JSONObject average = new JSONObject();
+            for (int b = 0; b < bands.length; b++) {
+                average.put(bands[b].getName(), sums[b] / powers.length);
+            }
+
+            JSONObject item = new JSONObject();
+            item.put("average", average);
+            item.put("epochs", epochs);
+            response.put(timeSeries.getChannel(channelIndex).getLabel(), item);
+        }
+
+        HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+    }
+
+    /**
+     * Estimate the cross-spectral densities between several channels
+     * (cf. "CrossSpectralMatrix"). The channels are decoded once, in
+     * parallel, into one matrix. They must share the same sampling
+     * frequency, and only their common duration is considered.
+     *
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest.
+     * @param segmentLength The number of samples in each segment.
+     * @param window The window function.
+     * @return The cross-spectral matrix, whose rows follow "channels".
+     * @throws IOException If the file doesn't follow the EDF specification.
+     **/
+    public static CrossSpectralMatrix computeCrossSpectralMatrix(EDFTimeSeries timeSeries,
+                                                                 int[] channels,
+                                                                 int segmentLength,
+                                                                 WindowFunction window) throws IOException {
+        if (timeSeries == null ||
+            channels.length == 0) {
+            throw new IllegalArgumentException();
+        }
+
+        double samplingFrequency = timeSeries.getSamplingFrequency(channels[0]);
+        int minLength = Integer.MAX_VALUE;
+        for (int channelIndex : channels) {
+            if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+                throw new IllegalArgumentException("Bad channel index: " + channelIndex);
+            }
+            if (timeSeries.getSamplingFrequency(channelIndex) != samplingFrequency) {
+                throw new IllegalArgumentException("The channels must share the same sampling frequency");
+            }
+            minLength = Math.min(minLength, timeSeries.getNumberOfSamples(channelIndex));
+        }
+
+        // Only the samples that are common to all the channels are used
+        ChannelMatrix matrix = ChannelMatrix.decodeFirstSamples(timeSeries, channels, minLength);
+        return CrossSpectralMatrix.compute(matrix, minLength, samplingFrequency,
+                                           segmentLength, segmentLength / 2, window);
+    }
+
+    /**
+     * Route that sends the magnitude-squared coherence between all the
+     * pairs of several channels, inside several frequency bands. The
+     * response is a JSON dictionary with two fields: "channels" is the
+     * array of the labels of the channels, and "coherence" maps the
+     * name of each band to the packed upper triangle of the coherence
+     * matrix, row by row (i.e. the pairs "(0,0), (0,1), ..., (0,C-1),
+     * (1,1), ..., (C-1,C-1)"), as single-precision values.
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest.
+     * @param segmentLength The number of samples in each segment.
+     * @param window The window function.
+     * @param bands The frequency bands of interest.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computeCoherence(HttpExchange exchange,
+                                        EDFTimeSeries timeSeries,
+                                        int[] channels,
+                                        int segmentLength,
+                                        WindowFunction window,
+                                        FrequencyBand[] bands) throws IOException {
+        if (timeSeries == null) {
+            HttpToolbox.sendNotFound(exchange);
+            return;
+        }
+
+        for (int channelIndex : channels) {
+            if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+                HttpToolbox.sendNotFound(exchange);
+                return;
+            }
+        }
+
+        CrossSpectralMatrix matrix = computeCrossSpectralMatrix(timeSeries, channels, segmentLength, window);
+
+        JSONArray labels = new JSONArray();
+        for (int channelIndex : channels) {
+            labels.put(timeSeries.getChannel(channelIndex).getLabel());
+        }
+
+        JSONObject coherence = new JSONObject();
+        for (FrequencyBand band : bands) {
+            JSONArray values = new JSONArray();
+            for (double value : matrix.computeCoherence(band)) {
+                values.put((float) value);
+            }
+            coherence.put(band.getName(), values);
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("channels", labels);
+        response.put("coherence", coherence);
+        HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+    }
+
+    /**
+     * Route that sends the power spectrum of a window of fixed length
+     * inside one channel. The state of the previous request of the
+     * same session is reused (cf. "SlidingDFTSessions"): If the window
+     * has moved forward by a few samples (at most about "log2(L)", cf.
+     * "SlidingDFT.getMaxSlidingShift()"), its spectrum is updated by
+     * the sliding DFT, in O(L) per new sample, and only the new
+     * samples are decoded. Otherwise, the window is decoded and
+     * transformed from scratch, which is cheaper.
+     *
+     * The response is a JSON dictionary with fields "start" (index of
+     * the first sample of the window), "slid" (number of samples by
+     * which the previous window was moved, or -1 if it was recomputed)
+     * and "spectrum" (the "L/2+1" first values of the power spectrum,
+     * formatted as in "computePowerSpectrum()").
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param sessionId The identifier of the session.
+     * @param channelIndex The index of the channel of interest.
+     * @param start The index of the first sample of the window.
+     * @param windowLength The number of samples "L" in the window.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computeWindowedSpectrum(HttpExchange exchange,
+                                               EDFTimeSeries timeSeries,
+                                               String sessionId,
+                                               int channelIndex,
+                                               int start,
+                                               int windowLength) throws IOException {
+        if (timeSeries == null ||
+            channelIndex < 0 ||
+            channelIndex >= timeSeries.getNumberOfChannels()) {
+            HttpToolbox.sendNotFound(exchange);
+            return;
+        }
+
+        int N = timeSeries.getNumberOfSamples(channelIndex);
+        if (windowLength <= 0 ||
+            start < 0 ||
+            start > N - windowLength) {
+            throw new IllegalArgumentException("The window is outside of the channel");
+        }
+
+        double samplingFrequency = timeSeries.getSamplingFrequency(channelIndex);
+        SlidingDFTSessions.Session session = SlidingDFTSessions.getSession(sessionId, timeSeries, channelIndex, windowLength);
+
+        JSONObject response = new JSONObject();
+
+        synchronized (session) {
+            SlidingDFT dft = session.getDFT();
+            int shift = start - session.getStart();
+
+            if (dft.isInitialized() &&
+                session.getStart() >= 0 &&
+                shift >= 0 &&
+                shift <= dft.getMaxSlidingShift()) {
+                double[] samples = new double[shift];
+                timeSeries.getPhysicalValues(channelIndex, session.getStart() + windowLength, samples, 0, shift);
+                dft.push(samples, 0, shift);
+                response.put("slid", shift);
+            } else {
+                double[] samples = new double[windowLength];
+                timeSeries.getPhysicalValues(channelIndex, start, samples, 0, windowLength);
+                dft.reset(samples, 0);
+                response.put("slid", -1);
+            }
+
+            session.setStart(start);
+
+            double normalizationFactor = (1.0 / samplingFrequency) / windowLength;
+            JSONArray spectrum = new JSONArray();
+            for (int k = 0; k < dft.getNumberOfBins(); k++) {
+                JSONObject element = new JSONObject();
+                element.put("x", samplingFrequency / windowLength * k);
+                element.put("y", normalizationFactor * dft.getPower(k));
+                spectrum.put(element);
+            }
+
+            response.put("start", start);
+            response.put("spectrum", spectrum);
+        }
+
+        HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+    }
+
+    /**
+     * Compute the power spectra of several channels at once. The
+     * channels are decoded into one contiguous matrix per padded
+     * length (cf. "ChannelMatrix"), then the rows are transformed in
+     * parallel using one shared FFT plan, whose scratch buffers are
+     * private to each worker thread.
+     *
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest (must
+     * be distinct).
+     * @param padding The padding strategy.
+     * @return The "N/2+1" first values of the power spectrum of each
+     * channel (normalized by "T/N"), in the same order as "channels".
+     * @throws IOException If the file doesn't follow the EDF specification.
+     **/
+    public static double[][] computePowerSpectra(EDFTimeSeries timeSeries,
+                                                 int[] channels,
+                                                 Padding padding) throws IOException {
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] < 0 || channels[i] >= timeSeries.getNumberOfChannels()) {
+                throw new IllegalArgumentException("Bad channel index: " + channels[i]);
+            }
+            if (positions.put(channels[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate channel index: " + channels[i]);
+            }
+        }
+
+        final double[][] result = new double[channels.length][];
+
+        for (Map.Entry<Integer, int[]> group : ChannelMatrix.groupByPaddedLength(timeSeries, channels, padding).entrySet()) {
+            final int new_N = group.getKey();
+            final ChannelMatrix matrix = ChannelMatrix.decode(timeSeries, group.getValue(), new_N);
+            final RealFFTPlan plan = FFTPlanCache.getRealPlan(new_N);
+
+            final int[] targets = new int[matrix.getNumberOfRows()];
+            for (int row = 0; row < targets.length; row++) {
+                targets[row] = positions.get(matrix.getChannelIndex(row));
+            }
+
+            ParallelLoop.run(matrix.getNumberOfRows(), (from, to) -> {
+                double[] samples = plan.getScratchSamples();
+                SignalBuffer spectrum = plan.getScratchSpectrum();
+                double[] real = spectrum.getReal();
+                double[] imag = spectrum.getImag();
+
+                for (int row = from; row < to; row++) {
+                    System.arraycopy(matrix.getData(), matrix.getRowOffset(row), samples, 0, new_N);
+                    plan.forward(samples, real, imag);
+
+                    double samplingFrequency = timeSeries.getSamplingFrequency(matrix.getChannelIndex(row));
+                    double normalizationFactor = (1.0 / samplingFrequency) / new_N;
+
+                    double[] power = new double[plan.getNumberOfBins()];
+                    for (int k = 0; k < power.length; k++) {
+                        power[k] = normalizationFactor * (real[k] * real[k] + imag[k] * imag[k]);
+                    }
+                    result[targets[row]] = power;
+                }
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * Multi-channel version of the "/compute-power-spectrum" route:
+     * The response is a JSON dictionary that maps the label of each
+     * channel (except annotations) to its power spectrum, formatted
+     * as in "computePowerSpectrum()".
+     *
+     * @param exchange The context of the REST call (output only).
+     * @param timeSeries The EEG data.
+     * @param padding The padding strategy.
+     * @throws IOException If error during the HTTP exchange.
+     **/
+    public static void computePowerSpectra(HttpExchange exchange,
+                                           EDFTimeSeries timeSeries,
+                                           Padding padding) throws IOException {
+        if (timeSeries == null) {
+            HttpToolbox.sendNotFound(exchange);
+        } else {
+            List<Integer> channels = new ArrayList<>();
+            for (int i = 0; i < timeSeries.getNumberOfChannels(); i++) {
+                if (!timeSeries.getChannel(i).getLabel().equals("EDF Annotations")) {
+                    channels.add(i);
+                }
+            }
+
+            int[] indices = channels.stream().mapToInt(Integer::intValue).toArray();
+            double[][] spectra = computePowerSpectra(timeSeries, indices, padding);
+
+            JSONObject response = new JSONObject();
+
+            for (int i = 0; i < indices.length; i++) {
+                double samplingFrequency = timeSeries.getSamplingFrequency(indices[i]);
+                int new_N = padding.getPaddedLength(Math.max(timeSeries.getNumberOfSamples(indices[i]), 1));
+
+                JSONArray spectrum = new JSONArray();
+                for (int k = 0; k < spectra[i].length; k++) {
+                    JSONObject element = new JSONObject();
+                    element.put("x", samplingFrequency / new_N * k);
+                    element.put("y", spectra[i][k]);
+                    spectrum.put(element);
+                }
+                response.put(timeSeries.getChannel(indices[i]).getLabel(), spectrum);
+            }
+            HttpToolbox.sendResponse(exchange, "application/json", String.valueOf(response));
+        }
+    }
 }
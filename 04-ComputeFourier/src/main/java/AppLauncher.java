@@ -1,5 +1,18 @@
+import be.uclouvain.ChannelColumnCache;
+import be.uclouvain.CrossSpectralMatrix;
+import be.uclouvain.DPSSTaperCache;
 import be.uclouvain.EDFTimeSeries;
+import be.uclouvain.FFTPlanCache;
+import be.uclouvain.FrequencyBand;
 import be.uclouvain.HttpToolbox;
+import be.uclouvain.MultitaperPSD;
+import be.uclouvain.Padding;
+import be.uclouvain.Precision;
+import be.uclouvain.STFT;
+import be.uclouvain.SlidingDFTSessions;
+import be.uclouvain.SpectrogramCache;
+import be.uclouvain.WelchPSD;
+import be.uclouvain.WindowFunction;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -7,7 +20,12 @@ import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -15,12 +33,61 @@ public class AppLauncher implements HttpHandler {
     private EDFTimeSeries timeSeries;
     
     public static void main(String[] args) throws IOException {
+        AppLauncher launcher = new AppLauncher();
+        if (args.length > 0) {
+            // Recordings that are too large to be uploaded can be
+            // mapped from the filesystem when the server starts
+            launcher.timeSeries = EDFTimeSeries.mapFile(args[0]);
+        }
+
         HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
-        server.createContext("/", new AppLauncher());
+        server.createContext("/", launcher);
         server.setExecutor(null); // creates a default executor
         server.start();
     }
 
+    // Optional "bands" field: Array of dictionaries with fields
+    // "name", "low" and "high". Defaults to the clinical EEG bands.
+    private static FrequencyBand[] parseBands(JSONObject request) {
+        if (request.has("bands")) {
+            JSONArray items = request.getJSONArray("bands");
+            FrequencyBand[] bands = new FrequencyBand[items.length()];
+            for (int i = 0; i < bands.length; i++) {
+                JSONObject item = items.getJSONObject(i);
+                bands[i] = new FrequencyBand(item.getString("name"), item.getDouble("low"), item.getDouble("high"));
+            }
+            return bands;
+        } else {
+            return FrequencyBand.getClinicalBands();
+        }
+    }
+
+    // Optional "channels" field: Array of distinct channel indices,
+    // as the results are indexed by the channel labels. Defaults to
+    // all the channels, except the EDF annotations.
+    private int[] parseChannels(JSONObject request) {
+        if (request.has("channels")) {
+            JSONArray items = request.getJSONArray("channels");
+            Set<Integer> distinct = new HashSet<>();
+            int[] channels = new int[items.length()];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = items.getInt(i);
+                if (!distinct.add(channels[i])) {
+                    throw new IllegalArgumentException("Duplicate channel index: " + channels[i]);
+                }
+            }
+            return channels;
+        } else {
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; timeSeries != null && i < timeSeries.getNumberOfChannels(); i++) {
+                if (!timeSeries.getChannel(i).getLabel().equals("EDF Annotations")) {
+                    all.add(i);
+                }
+            }
+            return all.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
     public void handle(HttpExchange exchange) throws IOException {
         String uri = exchange.getRequestURI().normalize().toString();
 
@@ -63,6 +130,9 @@ public class AppLauncher implements HttpHandler {
                     synchronized(this) {
                         byte[] body = HttpToolbox.getMultipartFile(exchange, "data");
                         timeSeries = new EDFTimeSeries(body);
+                        ChannelColumnCache.clear();
+                        SpectrogramCache.clear();
+                        SlidingDFTSessions.clear();
 
                         for (int i = 0; i < timeSeries.getNumberOfChannels(); i++) {
                             channels.put(timeSeries.getChannel(i).getLabel(), i);
@@ -78,16 +148,157 @@ public class AppLauncher implements HttpHandler {
                     try {
                         JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
                         int channelIndex = request.getInt("channel");
+                        Padding padding = Padding.parse(request.optString("padding", "power-of-two"));
+
+                        String method = request.optString("method", "periodogram");
+                        Precision precision = Precision.parse(request.optString("precision", "double"));
+                        if (precision == Precision.SINGLE && !method.equals("periodogram")) {
+                            throw new IllegalArgumentException("Single precision is only available for periodograms");
+                        }
+
+                        double targetRate = request.optDouble("targetRate", 0);
+                        if (request.has("targetRate") && !(targetRate > 0)) {
+                            throw new IllegalArgumentException("Bad target rate");
+                        }
+                        if (request.has("targetRate") && !method.equals("periodogram")) {
+                            throw new IllegalArgumentException("Resampling is only available for periodograms");
+                        }
+                        if (request.has("padding") && method.equals("welch")) {
+                            throw new IllegalArgumentException("The Welch method doesn't use padding");
+                        }
 
                         synchronized (this) {
-                            App.computePowerSpectrum(exchange, timeSeries, channelIndex);
+                            if (method.equals("periodogram")) {
+                                App.computePowerSpectrum(exchange, timeSeries, channelIndex, padding, targetRate, precision);
+                            } else if (method.equals("welch")) {
+                                App.computeWelchPowerSpectrum(exchange, timeSeries, channelIndex,
+                                                              request.optInt("segmentLength", WelchPSD.DEFAULT_SEGMENT_LENGTH),
+                                                              request.optInt("overlap", -1),
+                                                              WindowFunction.parse(request.optString("window", "hann")));
+                            } else if (method.equals("multitaper")) {
+                                App.computeMultitaperPowerSpectrum(exchange, timeSeries, channelIndex,
+                                                                   request.optDouble("bandwidth", MultitaperPSD.DEFAULT_BANDWIDTH),
+                                                                   request.optInt("tapers", 0), padding);
+                            } else {
+                                throw new IllegalArgumentException("Unknown method: " + method);
+                            }
                         }
-                    } catch (JSONException | IOException e) {
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
                         HttpToolbox.sendBadRequest(exchange);
                     }
                 }
                 break;
                 
+            case "/compute-power-spectra":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        Padding padding = Padding.parse(request.optString("padding", "power-of-two"));
+
+                        synchronized (this) {
+                            App.computePowerSpectra(exchange, timeSeries, padding);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/compute-spectrogram":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        int channelIndex = request.getInt("channel");
+                        int windowLength = request.optInt("windowLength", STFT.DEFAULT_WINDOW_LENGTH);
+                        STFT stft = new STFT(windowLength,
+                                             request.optInt("hop", windowLength / 2),
+                                             request.optInt("fftSize", windowLength),
+                                             WindowFunction.parse(request.optString("window", "hann")));
+                        int tileIndex = request.optInt("tile", 0);
+
+                        synchronized (this) {
+                            App.computeSpectrogram(exchange, timeSeries, channelIndex, stft, tileIndex);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/compute-band-power":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        double epochDuration = request.optDouble("epochDuration", 2.0);
+                        FrequencyBand[] bands = parseBands(request);
+
+                        synchronized (this) {
+                            App.computeBandPower(exchange, timeSeries, parseChannels(request), epochDuration, bands);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/compute-coherence":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        int segmentLength = request.optInt("segmentLength", CrossSpectralMatrix.DEFAULT_SEGMENT_LENGTH);
+                        WindowFunction window = WindowFunction.parse(request.optString("window", "hann"));
+                        FrequencyBand[] bands = parseBands(request);
+
+                        synchronized (this) {
+                            App.computeCoherence(exchange, timeSeries, parseChannels(request), segmentLength, window, bands);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/compute-windowed-spectrum":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        String sessionId = request.getString("session");
+                        int channelIndex = request.getInt("channel");
+                        int start = request.getInt("start");
+                        int windowLength = request.getInt("windowLength");
+
+                        synchronized (this) {
+                            App.computeWindowedSpectrum(exchange, timeSeries, sessionId, channelIndex, start, windowLength);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/fft-plan-cache":
+                if (HttpToolbox.protectGetRequest(exchange)) {
+                    JSONObject statistics = new JSONObject();
+                    statistics.put("hits", FFTPlanCache.getCountHits());
+                    statistics.put("misses", FFTPlanCache.getCountMisses());
+                    statistics.put("size", FFTPlanCache.getSize());
+                    statistics.put("capacity", FFTPlanCache.getCapacity());
+                    HttpToolbox.sendResponse(exchange, statistics);
+                }
+                break;
+
+            case "/dpss-cache":
+                if (HttpToolbox.protectGetRequest(exchange)) {
+                    JSONObject statistics = new JSONObject();
+                    statistics.put("hits", DPSSTaperCache.getCountHits());
+                    statistics.put("misses", DPSSTaperCache.getCountMisses());
+                    statistics.put("size", DPSSTaperCache.getSize());
+                    statistics.put("memoryUsage", DPSSTaperCache.getMemoryUsage());
+                    statistics.put("memoryBudget", DPSSTaperCache.getMemoryBudget());
+                    HttpToolbox.sendResponse(exchange, statistics);
+                }
+                break;
+
             default:
                 HttpToolbox.sendNotFound(exchange);
                 break;
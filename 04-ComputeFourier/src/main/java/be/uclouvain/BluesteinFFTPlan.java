@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Fast Fourier Transform of arbitrary size, using Bluestein's
+ * chirp-z algorithm. The DFT of size "N" is rewritten as a circular
+ * convolution, which is evaluated using power-of-2 FFTs of size
+ * "M >= 2*N-1". This is slower than "MixedRadixFFTPlan", so it should
+ * only be used for sizes that have prime factors other than 2, 3 and
+ * 5.
+ *
+ * The chirp and the spectrum of the convolution kernel are computed
+ * once, when the plan is created. Plans can be shared by several
+ * threads.
+ */
+public class BluesteinFFTPlan implements ComplexFFT {
+    private final int size;
+    private final FFTPlan plan;
+    private final double[] chirpReal;   // exp(-i*pi*n^2/N)
+    private final double[] chirpImag;
+    private final double[] kernelReal;  // FFT of the conjugated chirp, of size M
+    private final double[] kernelImag;
+    private final ThreadScratch<SignalBuffer> scratch;
+
+    /**
+     * Create a plan for transforms of a given size.
+     * @param size The number of items in the transformed vectors.
+     */
+    public BluesteinFFTPlan(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.size = size;
+        this.plan = FFTPlanCache.getNestedPlan(FFTPlan.nextPowerOfTwo(2 * size - 1));
+        final int m = plan.getSize();
+
+        chirpReal = new double[size];
+        chirpImag = new double[size];
+        for (int n = 0; n < size; n++) {
+            // "n^2 mod 2N" avoids the loss of precision for large "n"
+            double theta = Math.PI * (double) ((long) n * n % (2L * size)) / (double) size;
+            chirpReal[n] = Math.cos(theta);
+            chirpImag[n] = -Math.sin(theta);
+        }
+
+        kernelReal = new double[m];
+        kernelImag = new double[m];
+        kernelReal[0] = chirpReal[0];
+        kernelImag[0] = -chirpImag[0];
+        for (int n = 1; n < size; n++) {
+            kernelReal[n] = chirpReal[n];
+            kernelImag[n] = -chirpImag[n];
+            kernelReal[m - n] = chirpReal[n];
+            kernelImag[m - n] = -chirpImag[n];
+        }
+        plan.forward(kernelReal, kernelImag);
+
+        scratch = new ThreadScratch<>(16L * m, () -> new SignalBuffer(m));
+    }
+
+    /**
+     * Get the size of the transforms computed by this plan.
+     * @return The number of items.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Compute the forward FFT, in place.
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    public void forward(double[] real,
+                        double[] imag) {
+        if (real.length < size ||
+            imag.length < size) {
+            throw new IllegalArgumentException();
+        }
+
+        SignalBuffer work = scratch.get();
+        double[] ar = work.getReal();
+        double[] ai = work.getImag();
+
+        for (int n = 0; n < size; n++) {
+            ar[n] = real[n] * chirpReal[n] - imag[n] * chirpImag[n];
+            ai[n] = real[n] * chirpImag[n] + imag[n] * chirpReal[n];
+        }
+        work.clear(size, plan.getSize());
+
+        plan.forward(ar, ai);
+
+        for (int k = 0; k < plan.getSize(); k++) {
+            final double re = ar[k] * kernelReal[k] - ai[k] * kernelImag[k];
+            final double im = ar[k] * kernelImag[k] + ai[k] * kernelReal[k];
+            ar[k] = re;
+            ai[k] = im;
+        }
+
+        plan.inverse(ar, ai);
+
+        for (int k = 0; k < size; k++) {
+            real[k] = ar[k] * chirpReal[k] - ai[k] * chirpImag[k];
+            imag[k] = ar[k] * chirpImag[k] + ai[k] * chirpReal[k];
+        }
+    }
+
+    /**
+     * Compute the inverse FFT, in place. The output is scaled by
+     * "1/N", so that "inverse(forward(x)) == x".
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    public void inverse(double[] real,
+                        double[] imag) {
+        // "IFFT(x) = conj(FFT(conj(x))) / N"
+        for (int i = 0; i < size; i++) {
+            imag[i] = -imag[i];
+        }
+
+        forward(real, imag);
+
+        final double scaling = 1.0 / (double) size;
+        for (int i = 0; i < size; i++) {
+            real[i] *= scaling;
+            imag[i] *= -scaling;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU cache of the decoded channels of EDF files, indexed by
+ * the EDF file and the channel. EDF files interleave the channels
+ * record by record, so reading one channel strides over the whole
+ * file. This cache stores the transposed, channel-major version of
+ * the samples, as one contiguous array of physical values per
+ * channel: Once a channel has been decoded, reading it is a
+ * sequential scan of a primitive array.
+ *
+ * On the first access to a file, all its channels are decoded at
+ * once, in parallel on the "ParallelLoop" pool, if they fit in the
+ * memory budget. Otherwise, the channels are decoded one by one, as
+ * they are accessed. The cache is shared by the whole application and
+ * is thread-safe.
+ *
+ * Only the decoded arrays are accounted in the memory budget, but
+ * each entry also keeps its EDF file alive: "clear()" must be called
+ * whenever a file is discarded. Callers that parse a temporary file,
+ * or that stream a channel by small chunks, should rather use
+ * "EDFTimeSeries.decodePhysicalValues()", which bypasses the cache.
+ */
+public class ChannelColumnCache {
+    /**
+     * Default memory budget of the cache, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024L * 1024L;
+
+    private static final long ENTRY_OVERHEAD = 128;  // Key, map entry and object headers
+
+    // Marker for the channels that cannot be decoded as a whole (for
+    // instance, because some digital value is out of range)
+    private static final float[] INVALID = new float[0];
+
+    private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private static long memoryUsage = 0;
+    private static long countHits = 0;
+    private static long countMisses = 0;
+
+    private static final class Key {
+        private final EDFTimeSeries timeSeries;  // Compared by identity
+        private final int channelIndex;
+
+        Key(EDFTimeSeries timeSeries,
+            int channelIndex) {
+            this.timeSeries = timeSeries;
+            this.channelIndex = channelIndex;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return (timeSeries == key.timeSeries &&
+                    channelIndex == key.channelIndex);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(timeSeries) + channelIndex;
+        }
+    }
+
+    private static final LinkedHashMap<Key, float[]> columns = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ChannelColumnCache() {
+    }
+
+    private static long getCost(int numberOfSamples) {
+        return ENTRY_OVERHEAD + 4L * (long) numberOfSamples;
+    }
+
+    private static void shrink() {
+        Iterator<Map.Entry<Key, float[]>> it = columns.entrySet().iterator();
+        while (memoryUsage > memoryBudget && it.hasNext()) {
+            memoryUsage -= getCost(it.next().getValue().length);
+            it.remove();
+        }
+    }
+
+    private static synchronized float[] lookup(Key key) {
+        float[] column = columns.get(key);
+        if (column == null) {
+            countMisses++;
+        } else {
+            countHits++;
+        }
+        return column;
+    }
+
+    private static synchronized float[] store(Key key,
+                                              float[] column) {
+        float[] previous = columns.get(key);
+        if (previous == null) {
+            columns.put(key, column);
+            memoryUsage += getCost(column.length);
+            shrink();
+            return column;
+        } else {
+            return previous;
+        }
+    }
+
+    private static synchronized float[] peek(Key key) {
+        return columns.get(key);  // Doesn't update the hit/miss counters
+    }
+
+    private static float[] decode(EDFTimeSeries timeSeries,
+                                  int channelIndex) {
+        float[] column = new float[timeSeries.getNumberOfSamples(channelIndex)];
+        try {
+            timeSeries.decodePhysicalValues(channelIndex, 0, column, 0, column.length);
+            return column;
+        } catch (IOException | IllegalArgumentException e) {
+            return INVALID;  // The caller will report the error while decoding the requested range
+        }
+    }
+
+    private static float[] load(final EDFTimeSeries timeSeries,
+                                int channelIndex) {
+        final int countChannels = timeSeries.getNumberOfChannels();
+
+        long totalCost = 0;
+        for (int i = 0; i < countChannels; i++) {
+            totalCost += getCost(timeSeries.getNumberOfSamples(i));
+        }
+
+        if (totalCost <= getMemoryBudget()) {
+            // Transpose the whole file, one channel per task
+            final float[][] decoded = new float[countChannels][];
+            ParallelLoop.run(countChannels, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    if (peek(new Key(timeSeries, i)) == null) {
+                        decoded[i] = decode(timeSeries, i);
+                    }
+                }
+            });
+
+            // Store the requested channel last, so that it is the most recently used
+            for (int i = 0; i < countChannels; i++) {
+                if (i != channelIndex && decoded[i] != null) {
+                    store(new Key(timeSeries, i), decoded[i]);
+                }
+            }
+            return store(new Key(timeSeries, channelIndex), decoded[channelIndex]);
+        } else if (getCost(timeSeries.getNumberOfSamples(channelIndex)) <= getMemoryBudget()) {
+            return store(new Key(timeSeries, channelIndex), decode(timeSeries, channelIndex));
+        } else {
+            return null;  // Too large to be cached
+        }
+    }
+
+    /**
+     * Get the physical values of all the samples of one channel,
+     * decoding the EDF file if they are not in the cache yet. The
+     * returned array is shared, so it must not be modified.
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @return The physical values, or `null` if the channel cannot
+     * be cached (because it is too large for the memory budget, or
+     * because some of its samples cannot be decoded). The caller must
+     * then decode the EDF file by itself.
+     */
+    public static float[] getColumn(EDFTimeSeries timeSeries,
+                                    int channelIndex) {
+        Key key = new Key(timeSeries, channelIndex);
+        float[] column = lookup(key);
+        if (column == null) {
+            // Decode outside of the mutex of the cache, but make sure
+            // that the same file is not transposed twice concurrently
+            synchronized (timeSeries) {
+                column = peek(key);  // Another thread might have decoded the channel in the meantime
+                if (column == null) {
+                    column = load(timeSeries, channelIndex);
+                }
+            }
+        }
+        return (column == INVALID ? null : column);
+    }
+
+    /**
+     * Change the memory budget of the cache. The least recently used
+     * channels are discarded if needed.
+     * @param budget The new budget, in bytes.
+     */
+    public static synchronized void setMemoryBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException();
+        }
+        memoryBudget = budget;
+        shrink();
+    }
+
+    /**
+     * Get the memory budget of the cache.
+     * @return The budget, in bytes.
+     */
+    public static synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get an estimate of the memory that is used by the cached channels.
+     * @return The number of bytes.
+     */
+    public static synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Get the number of channels that are currently cached.
+     * @return The number of channels.
+     */
+    public static synchronized int getSize() {
+        return columns.size();
+    }
+
+    /**
+     * Get the number of requests that were served from the cache.
+     * @return The number of hits.
+     */
+    public static synchronized long getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * Get the number of requests that required decoding the EDF file.
+     * @return The number of misses.
+     */
+    public static synchronized long getCountMisses() {
+        return countMisses;
+    }
+
+    /**
+     * Empty the cache and reset the hit/miss counters. This must be
+     * called when a new EDF file is loaded, so that the channels of
+     * the previous file can be garbage-collected.
+     */
+    public static synchronized void clear() {
+        columns.clear();
+        memoryUsage = 0;
+        countHits = 0;
+        countMisses = 0;
+    }
+}
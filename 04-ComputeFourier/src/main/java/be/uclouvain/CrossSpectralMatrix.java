@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Matrix of the cross-spectral densities between all the pairs of
+ * channels of a recording, estimated with Welch's method (cf.
+ * "WelchPSD"): For each segment, each channel is transformed only
+ * once, then the products "X_i[k] * conj(X_j[k])" are accumulated
+ * for all the pairs "i <= j". The matrix is Hermitian, so only its
+ * upper triangle is stored, one row of bins per pair.
+ *
+ * The segments are processed by batches. The FFTs of a batch are
+ * computed in parallel, then the pairs are split among the workers
+ * of the "ParallelLoop" pool: As each pair has its own accumulator,
+ * no synchronization is needed. The bins are visited by blocks, so
+ * that the spectra of the channels of a block stay in the cache
+ * while all the pairs are accumulated.
+ */
+public class CrossSpectralMatrix {
+    /**
+     * Default number of samples in each segment.
+     */
+    public static final int DEFAULT_SEGMENT_LENGTH = 256;
+
+    /**
+     * Maximum number of complex values in the accumulators of the
+     * pairs (i.e. "C(C+1)/2 * (L/2+1)"), which amounts to 256MB.
+     */
+    public static final long MAX_NUMBER_OF_VALUES = 1L << 24;
+
+    private static final int SEGMENTS_PER_BATCH = 16;
+    private static final int BINS_PER_BLOCK = 64;
+
+    private final int countChannels;
+    private final int countBins;
+    private final int segmentLength;
+    private final double samplingFrequency;
+    private final int[] pairFirst;
+    private final int[] pairSecond;
+    private final double[] real;  // "real[pair * countBins + k]"
+    private final double[] imag;
+    private int countSegments;
+
+    private CrossSpectralMatrix(int countChannels,
+                                int segmentLength,
+                                double samplingFrequency) {
+        this.countChannels = countChannels;
+        this.countBins = segmentLength / 2 + 1;
+        this.segmentLength = segmentLength;
+        this.samplingFrequency = samplingFrequency;
+
+        final long countValues = (long) countChannels * (long) (countChannels + 1) / 2L * (long) countBins;
+        if (countValues > MAX_NUMBER_OF_VALUES) {
+            throw new IllegalArgumentException("Too many pairs of channels or frequency bins: " + countValues);
+        }
+
+        final int countPairs = countChannels * (countChannels + 1) / 2;
+        pairFirst = new int[countPairs];
+        pairSecond = new int[countPairs];
+        for (int i = 0; i < countChannels; i++) {
+            for (int j = i; j < countChannels; j++) {
+                int pair = getPairIndex(i, j);
+                pairFirst[pair] = i;
+                pairSecond[pair] = j;
+            }
+        }
+
+        real = new double[countPairs * countBins];
+        imag = new double[countPairs * countBins];
+    }
+
+    /**
+     * Estimate the cross-spectral densities between the rows of a
+     * channel matrix. All the channels must share the same sampling
+     * frequency. The normalization is the same as in "WelchPSD", so
+     * the diagonal of the matrix contains the power spectral density
+     * of each channel.
+     *
+     * @param matrix The decoded channels.
+     * @param length The number of samples to be considered in each
+     * row (at most the number of samples of the shortest channel).
+     * @param samplingFrequency The common sampling frequency.
+     * @param segmentLength The number of samples in each segment
+     * (this is also the size of the FFT).
+     * @param overlap The number of samples shared by two successive
+     * segments (typically half the segment length).
+     * @param window The window function.
+     * @return The cross-spectral matrix.
+     * @throws IllegalArgumentException If the matrix would hold more
+     * than "MAX_NUMBER_OF_VALUES" values.
+     */
+    public static CrossSpectralMatrix compute(final ChannelMatrix matrix,
+                                              int length,
+                                              double samplingFrequency,
+                                              final int segmentLength,
+                                              int overlap,
+                                              WindowFunction window) {
+        if (segmentLength <= 0 ||
+            overlap < 0 ||
+            overlap >= segmentLength ||
+            length < segmentLength ||
+            samplingFrequency <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        for (int row = 0; row < matrix.getNumberOfRows(); row++) {
+            if (matrix.getNumberOfSamples(row) < length) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        final int countChannels = matrix.getNumberOfRows();
+        final CrossSpectralMatrix result = new CrossSpectralMatrix(countChannels, segmentLength, samplingFrequency);
+        final int countBins = result.countBins;
+        final int countPairs = result.pairFirst.length;
+
+        final RealFFTPlan plan = FFTPlanCache.getRealPlan(segmentLength);
+        final int step = segmentLength - overlap;
+        final int countSegments = WelchPSD.getNumberOfSegments(length, segmentLength, overlap);
+        final double[] coefficients = window.getCoefficients(segmentLength);
+        final double[] data = matrix.getData();
+
+        // Spectra of the current batch: "spectraReal[(segment * countChannels + channel) * countBins + k]"
+        // (the batch is shortened so that it doesn't exceed the size of the accumulators)
+        final int batchSize = (int) Math.max(1L, Math.min(Math.min(SEGMENTS_PER_BATCH, countSegments),
+                                                          MAX_NUMBER_OF_VALUES / ((long) countChannels * countBins)));
+        final double[] spectraReal = new double[batchSize * countChannels * countBins];
+        final double[] spectraImag = new double[batchSize * countChannels * countBins];
+
+        for (int first = 0; first < countSegments; first += batchSize) {
+            final int firstSegment = first;
+            final int countInBatch = Math.min(batchSize, countSegments - first);
+
+            // Step 1: FFT of each channel of each segment in the batch
+            ParallelLoop.run(countInBatch * countChannels, (from, to) -> {
+                double[] buffer = plan.getScratchSamples();
+                for (int item = from; item < to; item++) {
+                    final int segment = item / countChannels;
+                    final int channel = item % countChannels;
+                    final int start = matrix.getRowOffset(channel) + (firstSegment + segment) * step;
+                    for (int i = 0; i < segmentLength; i++) {
+                        buffer[i] = data[start + i] * coefficients[i];
+                    }
+
+                    SignalBuffer spectrum = plan.getScratchSpectrum();
+                    plan.forward(buffer, spectrum.getReal(), spectrum.getImag());
+                    spectrum.getValues(0, spectraReal, spectraImag, item * countBins, countBins);
+                }
+            });
+
+            // Step 2: Accumulate "X_i * conj(X_j)" for each pair, by blocks of bins
+            ParallelLoop.run(countPairs, (from, to) -> {
+                for (int block = 0; block < countBins; block += BINS_PER_BLOCK) {
+                    final int blockEnd = Math.min(block + BINS_PER_BLOCK, countBins);
+                    for (int pair = from; pair < to; pair++) {
+                        final int target = pair * countBins;
+                        for (int segment = 0; segment < countInBatch; segment++) {
+                            final int a = (segment * countChannels + result.pairFirst[pair]) * countBins;
+                            final int b = (segment * countChannels + result.pairSecond[pair]) * countBins;
+                            for (int k = block; k < blockEnd; k++) {
+                                final double ar = spectraReal[a + k];
+                                final double ai = spectraImag[a + k];
+                                final double br = spectraReal[b + k];
+                                final double bi = spectraImag[b + k];
+                                result.real[target + k] += ar * br + ai * bi;
+                                result.imag[target + k] += ai * br - ar * bi;
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        double energy = 0;
+        for (double c : coefficients) {
+            energy += c * c;
+        }
+
+        final double normalizationFactor = 1.0 / (samplingFrequency * energy * countSegments);
+        for (int i = 0; i < result.real.length; i++) {
+            result.real[i] *= normalizationFactor;
+            result.imag[i] *= normalizationFactor;
+        }
+
+        result.countSegments = countSegments;
+        return result;
+    }
+
+    /**
+     * Get the number of channels.
+     * @return The number of channels.
+     */
+    public int getNumberOfChannels() {
+        return countChannels;
+    }
+
+    /**
+     * Get the number of frequency bins.
+     * @return The number of bins, i.e. "segmentLength/2+1".
+     */
+    public int getNumberOfBins() {
+        return countBins;
+    }
+
+    /**
+     * Get the number of segments that were averaged.
+     * @return The number of segments.
+     */
+    public int getNumberOfSegments() {
+        return countSegments;
+    }
+
+    /**
+     * Get the frequency of one bin.
+     * @param k The index of the bin.
+     * @return The frequency, in Hertz.
+     */
+    public double getFrequency(int k) {
+        return k * samplingFrequency / segmentLength;
+    }
+
+    /**
+     * Get the index of a pair of channels in the packed upper
+     * triangle of the matrix (row by row).
+     * @param i The first channel.
+     * @param j The second channel (must be larger or equal to "i").
+     * @return The index of the pair.
+     */
+    public int getPairIndex(int i,
+                            int j) {
+        if (i < 0 || j < i || j >= countChannels) {
+            throw new IllegalArgumentException();
+        }
+        return i * countChannels - i * (i - 1) / 2 + (j - i);
+    }
+
+    /**
+     * Get the real part of the cross-spectral density "S_ij" at one bin.
+     * @param i The first channel.
+     * @param j The second channel.
+     * @param k The index of the bin.
+     * @return The real part.
+     */
+    public double getReal(int i,
+                          int j,
+                          int k) {
+        return (i <= j ? real[getPairIndex(i, j) * countBins + k] : real[getPairIndex(j, i) * countBins + k]);
+    }
+
+    /**
+     * Get the imaginary part of the cross-spectral density "S_ij" at
+     * one bin. As the matrix is Hermitian, "S_ji = conj(S_ij)".
+     * @param i The first channel.
+     * @param j The second channel.
+     * @param k The index of the bin.
+     * @return The imaginary part.
+     */
+    public double getImag(int i,
+                          int j,
+                          int k) {
+        return (i <= j ? imag[getPairIndex(i, j) * countBins + k] : -imag[getPairIndex(j, i) * countBins + k]);
+    }
+
+    /**
+     * Compute the magnitude-squared coherence between all the pairs of
+     * channels inside a frequency band. The cross-spectra are summed
+     * over the bins of the band before normalization, i.e.
+     * "|sum(S_ij)|^2 / (sum(S_ii) * sum(S_jj))", which lies in [0,1].
+     *
+     * @param band The frequency band.
+     * @return The coherence of each pair, in the packed upper triangle
+     * (cf. "getPairIndex()"). Its diagonal is 1, except for channels
+     * without any power in the band, whose coherence is 0.
+     */
+    public double[] computeCoherence(FrequencyBand band) {
+        int low = (int) Math.ceil(band.getLow() * segmentLength / samplingFrequency);
+        int high = (int) Math.ceil(band.getHigh() * segmentLength / samplingFrequency);
+        low = Math.max(0, Math.min(low, countBins));
+        high = Math.max(low, Math.min(high, countBins));
+
+        final double[] sumReal = new double[pairFirst.length];
+        final double[] sumImag = new double[pairFirst.length];
+        for (int pair = 0; pair < pairFirst.length; pair++) {
+            for (int k = low; k < high; k++) {
+                sumReal[pair] += real[pair * countBins + k];
+                sumImag[pair] += imag[pair * countBins + k];
+            }
+        }
+
+        final double[] coherence = new double[pairFirst.length];
+        for (int pair = 0; pair < pairFirst.length; pair++) {
+            final double pi = sumReal[getPairIndex(pairFirst[pair], pairFirst[pair])];
+            final double pj = sumReal[getPairIndex(pairSecond[pair], pairSecond[pair])];
+            if (pi > 0 && pj > 0) {
+                coherence[pair] = (sumReal[pair] * sumReal[pair] + sumImag[pair] * sumImag[pair]) / (pi * pj);
+            }
+        }
+
+        return coherence;
+    }
+}
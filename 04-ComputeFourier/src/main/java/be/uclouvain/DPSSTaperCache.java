@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU cache of the DPSS tapers, indexed by their length, their
+ * time-bandwidth product and their number. Computing the tapers is
+ * much more expensive than the tapered FFTs, but the same tapers are
+ * reused by all the channels of a recording that have the same
+ * length. The size of the cache is bounded by the memory that is used
+ * by the tapers, except that the most recently used entry is always
+ * kept: Otherwise, the tapers of a recording that is longer than the
+ * budget would be recomputed by each request. The cache is shared by
+ * the whole application and is thread-safe.
+ */
+public class DPSSTaperCache {
+    /**
+     * Default memory budget of the cache, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 128L * 1024L * 1024L;  // e.g. 7 tapers over 1 hour at 512Hz
+
+    private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private static long memoryUsage = 0;
+    private static long countHits = 0;
+    private static long countMisses = 0;
+
+    private static final class Key {
+        private final int length;
+        private final double bandwidth;
+        private final int countTapers;
+
+        Key(int length,
+            double bandwidth,
+            int countTapers) {
+            this.length = length;
+            this.bandwidth = bandwidth;
+            this.countTapers = countTapers;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return (length == key.length &&
+                    Double.compare(bandwidth, key.bandwidth) == 0 &&
+                    countTapers == key.countTapers);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = length;
+            hash = 31 * hash + Double.hashCode(bandwidth);
+            hash = 31 * hash + countTapers;
+            return hash;
+        }
+    }
+
+    private static final LinkedHashMap<Key, DPSSTapers> tapers = new LinkedHashMap<>(16, 0.75f, true);
+
+    private DPSSTaperCache() {
+    }
+
+    private static void shrink() {
+        Iterator<Map.Entry<Key, DPSSTapers>> it = tapers.entrySet().iterator();
+        while (memoryUsage > memoryBudget && tapers.size() > 1) {
+            memoryUsage -= it.next().getValue().getMemoryUsage();
+            it.remove();
+        }
+    }
+
+    private static synchronized DPSSTapers lookup(Key key) {
+        DPSSTapers value = tapers.get(key);
+        if (value == null) {
+            countMisses++;
+        } else {
+            countHits++;
+        }
+        return value;
+    }
+
+    private static synchronized DPSSTapers store(Key key,
+                                                 DPSSTapers value) {
+        DPSSTapers previous = tapers.get(key);
+        if (previous == null) {
+            tapers.put(key, value);
+            memoryUsage += value.getMemoryUsage();
+            shrink();
+            return value;
+        } else {
+            return previous;  // Another thread has computed the same tapers in the meantime
+        }
+    }
+
+    /**
+     * Get the DPSS tapers with the given parameters, computing them if
+     * they are not in the cache yet.
+     * @param length The length "N" of the tapers.
+     * @param bandwidth The time-bandwidth product "NW".
+     * @param countTapers The number "K" of tapers.
+     * @return The tapers.
+     * @see DPSSTapers#create(int, double, int)
+     */
+    public static DPSSTapers getTapers(int length,
+                                       double bandwidth,
+                                       int countTapers) {
+        Key key = new Key(length, bandwidth, countTapers);
+        DPSSTapers value = lookup(key);
+        if (value == null) {
+            // Compute the tapers outside of the mutex, as this is O(K N)
+            value = store(key, DPSSTapers.create(length, bandwidth, countTapers));
+        }
+        return value;
+    }
+
+    /**
+     * Change the memory budget of the cache. The least recently used
+     * tapers are discarded if needed, except the most recent ones.
+     * @param budget The new budget, in bytes.
+     */
+    public static synchronized void setMemoryBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException();
+        }
+        memoryBudget = budget;
+        shrink();
+    }
+
+    /**
+     * Get the memory budget of the cache.
+     * @return The budget, in bytes.
+     */
+    public static synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get the memory that is used by the cached tapers.
+     * @return The number of bytes.
+     */
+    public static synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Get the number of sets of tapers that are currently cached.
+     * @return The number of entries.
+     */
+    public static synchronized int getSize() {
+        return tapers.size();
+    }
+
+    /**
+     * Get the number of requests that were served from the cache.
+     * @return The number of hits.
+     */
+    public static synchronized long getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * Get the number of requests that required computing new tapers.
+     * @return The number of misses.
+     */
+    public static synchronized long getCountMisses() {
+        return countMisses;
+    }
+
+    /**
+     * Empty the cache and reset the hit/miss counters.
+     */
+    public static synchronized void clear() {
+        tapers.clear();
+        memoryUsage = 0;
+        countHits = 0;
+        countMisses = 0;
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Discrete prolate spheroidal sequences (DPSS, also known as Slepian
+ * sequences), which are the tapers of Thomson's multitaper method
+ * (cf. "MultitaperPSD"). Among the sequences of length "N", the taper
+ * "k" maximizes the fraction of its energy inside the band "[-W,W]",
+ * while being orthogonal to the "k" previous tapers. The half
+ * bandwidth is given by the time-bandwidth product "NW = N * W".
+ *
+ * The tapers are the eigenvectors of the largest eigenvalues of a
+ * symmetric tridiagonal matrix (Percival and Walden, 1993). Each
+ * eigenvalue is isolated by bisection using Sturm sequences, then its
+ * eigenvector is obtained by inverse iteration. This runs in "O(K N)"
+ * but is much slower than one FFT, so the tapers are cached (cf.
+ * "DPSSTaperCache"). The tapers are immutable once created.
+ */
+public class DPSSTapers {
+    private static final int BISECTION_ITERATIONS = 100;
+    private static final int INVERSE_ITERATIONS = 3;
+
+    private final int length;
+    private final double bandwidth;
+    private final int countTapers;
+    private final double[] data;  // "data[k * length + n]"
+
+    private DPSSTapers(int length,
+                       double bandwidth,
+                       int countTapers) {
+        this.length = length;
+        this.bandwidth = bandwidth;
+        this.countTapers = countTapers;
+        this.data = new double[countTapers * length];
+    }
+
+    /**
+     * Get the default number of tapers for a time-bandwidth product,
+     * i.e. "2NW - 1": The concentration of the next tapers in the band
+     * drops quickly.
+     * @param bandwidth The time-bandwidth product "NW".
+     * @return The number of tapers.
+     */
+    public static int getDefaultNumberOfTapers(double bandwidth) {
+        return Math.max(1, (int) Math.floor(2.0 * bandwidth) - 1);
+    }
+
+    /**
+     * Compute the first DPSS tapers.
+     * @param length The length "N" of the tapers.
+     * @param bandwidth The time-bandwidth product "NW" (must be in
+     * "]0,N/2[").
+     * @param countTapers The number "K" of tapers (at most "2NW", as
+     * the next tapers are not concentrated in the band).
+     * @return The tapers, each with a unit energy.
+     */
+    public static DPSSTapers create(int length,
+                                    double bandwidth,
+                                    int countTapers) {
+        if (length <= 0 ||
+            !(bandwidth > 0) ||
+            bandwidth >= length / 2.0 ||
+            countTapers <= 0 ||
+            countTapers > 2.0 * bandwidth ||
+            (long) countTapers * (long) length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+
+        final DPSSTapers tapers = new DPSSTapers(length, bandwidth, countTapers);
+
+        // Tridiagonal matrix whose eigenvectors are the DPSS
+        final double w = bandwidth / length;
+        final double cosine = Math.cos(2.0 * Math.PI * w);
+        final double[] diagonal = new double[length];
+        final double[] offDiagonal = new double[length];  // "offDiagonal[n]" links "n-1" and "n"
+        for (int n = 0; n < length; n++) {
+            final double a = (length - 1 - 2.0 * n) / 2.0;
+            diagonal[n] = a * a * cosine;
+            offDiagonal[n] = n * (double) (length - n) / 2.0;
+        }
+
+        // Gershgorin bounds on the eigenvalues
+        double lower = Double.POSITIVE_INFINITY;
+        double upper = Double.NEGATIVE_INFINITY;
+        for (int n = 0; n < length; n++) {
+            final double radius = offDiagonal[n] + (n + 1 < length ? offDiagonal[n + 1] : 0);
+            lower = Math.min(lower, diagonal[n] - radius);
+            upper = Math.max(upper, diagonal[n] + radius);
+        }
+
+        for (int k = 0; k < countTapers; k++) {
+            // The taper "k" is associated with the "k"-th largest eigenvalue
+            final double eigenvalue = findEigenvalue(diagonal, offDiagonal, length - 1 - k, lower, upper);
+            final int offset = k * length;
+            computeEigenvector(diagonal, offDiagonal, eigenvalue, tapers.data, offset);
+
+            // Orthogonalize against the previous tapers, in case of close eigenvalues
+            for (int j = 0; j < k; j++) {
+                double dot = 0;
+                for (int n = 0; n < length; n++) {
+                    dot += tapers.data[offset + n] * tapers.data[j * length + n];
+                }
+                for (int n = 0; n < length; n++) {
+                    tapers.data[offset + n] -= dot * tapers.data[j * length + n];
+                }
+            }
+
+            normalize(tapers.data, offset, length, k);
+        }
+
+        return tapers;
+    }
+
+    // Number of eigenvalues that are strictly smaller than "x" (Sturm sequence)
+    private static int countEigenvaluesBelow(double[] diagonal,
+                                             double[] offDiagonal,
+                                             double x) {
+        int count = 0;
+        double q = 1;
+        for (int n = 0; n < diagonal.length; n++) {
+            final double previous = (n == 0 ? 0 : offDiagonal[n] * offDiagonal[n] / q);
+            q = diagonal[n] - x - previous;
+            if (q == 0) {
+                q = -Double.MIN_NORMAL;
+            }
+            if (q < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Find the eigenvalue of rank "index" (in increasing order) by bisection
+    private static double findEigenvalue(double[] diagonal,
+                                         double[] offDiagonal,
+                                         int index,
+                                         double lower,
+                                         double upper) {
+        for (int i = 0; i < BISECTION_ITERATIONS && lower < upper; i++) {
+            final double middle = (lower + upper) / 2.0;
+            if (middle <= lower || middle >= upper) {
+                break;  // Machine precision is reached
+            }
+            if (countEigenvaluesBelow(diagonal, offDiagonal, middle) > index) {
+                upper = middle;
+            } else {
+                lower = middle;
+            }
+        }
+        return (lower + upper) / 2.0;
+    }
+
+    // Inverse iteration: Repeatedly solve "(T - lambda * I) y = x", using
+    // a Gaussian elimination with partial pivoting of the tridiagonal system
+    private static void computeEigenvector(double[] diagonal,
+                                           double[] offDiagonal,
+                                           double eigenvalue,
+                                           double[] target,
+                                           int offset) {
+        final int length = diagonal.length;
+        final double[] sub = new double[length];
+        final double[] main = new double[length];
+        final double[] sup1 = new double[length];
+        final double[] sup2 = new double[length];
+        final boolean[] swapped = new boolean[length];
+
+        // LU factorization of the shifted matrix
+        for (int n = 0; n < length; n++) {
+            main[n] = diagonal[n] - eigenvalue;
+            sup1[n] = (n + 1 < length ? offDiagonal[n + 1] : 0);
+            sup2[n] = 0;
+            sub[n] = (n + 1 < length ? offDiagonal[n + 1] : 0);
+        }
+
+        final double epsilon = Math.ulp(1.0) * (Math.abs(eigenvalue) + 1.0);
+
+        for (int n = 0; n + 1 < length; n++) {
+            if (Math.abs(sub[n]) > Math.abs(main[n])) {
+                // Swap rows "n" and "n+1"
+                swapped[n] = true;
+                double tmp = main[n];
+                main[n] = sub[n];
+                sub[n] = tmp;
+
+                tmp = sup1[n];
+                sup1[n] = main[n + 1];
+                main[n + 1] = tmp;
+
+                sup2[n] = sup1[n + 1];
+                sup1[n + 1] = 0;
+            }
+
+            if (main[n] == 0) {
+                main[n] = epsilon;
+            }
+
+            final double factor = sub[n] / main[n];
+            sub[n] = factor;
+            main[n + 1] -= factor * sup1[n];
+            sup1[n + 1] -= factor * sup2[n];
+        }
+
+        if (main[length - 1] == 0) {
+            main[length - 1] = epsilon;
+        }
+
+        // Start from a vector that is not orthogonal to the eigenvector
+        final double[] x = new double[length];
+        for (int n = 0; n < length; n++) {
+            x[n] = 1.0 + 0.01 * Math.sin(n);
+        }
+
+        for (int iteration = 0; iteration < INVERSE_ITERATIONS; iteration++) {
+            // Forward substitution
+            for (int n = 0; n + 1 < length; n++) {
+                if (swapped[n]) {
+                    double tmp = x[n];
+                    x[n] = x[n + 1];
+                    x[n + 1] = tmp;
+                }
+                x[n + 1] -= sub[n] * x[n];
+            }
+
+            // Backward substitution
+            for (int n = length - 1; n >= 0; n--) {
+                double value = x[n];
+                if (n + 1 < length) {
+                    value -= sup1[n] * x[n + 1];
+                }
+                if (n + 2 < length) {
+                    value -= sup2[n] * x[n + 2];
+                }
+                x[n] = value / main[n];
+            }
+
+            double norm = 0;
+            for (int n = 0; n < length; n++) {
+                norm += x[n] * x[n];
+            }
+            norm = Math.sqrt(norm);
+            for (int n = 0; n < length; n++) {
+                x[n] /= norm;
+            }
+        }
+
+        System.arraycopy(x, 0, target, offset, length);
+    }
+
+    // Unit energy, and the usual sign convention: The symmetric tapers
+    // have a positive mean, the antisymmetric tapers start positive
+    private static void normalize(double[] data,
+                                  int offset,
+                                  int length,
+                                  int k) {
+        double energy = 0;
+        double moment = 0;
+        for (int n = 0; n < length; n++) {
+            energy += data[offset + n] * data[offset + n];
+            moment += (k % 2 == 0 ? 1.0 : (length - 1 - 2.0 * n)) * data[offset + n];
+        }
+
+        final double factor = (moment < 0 ? -1.0 : 1.0) / Math.sqrt(energy);
+        for (int n = 0; n < length; n++) {
+            data[offset + n] *= factor;
+        }
+    }
+
+    /**
+     * Get the length of the tapers.
+     * @return The number of samples "N".
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the time-bandwidth product.
+     * @return The product "NW".
+     */
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Get the number of tapers.
+     * @return The number "K" of tapers.
+     */
+    public int getNumberOfTapers() {
+        return countTapers;
+    }
+
+    /**
+     * Get one value of one taper.
+     * @param k The index of the taper.
+     * @param n The index of the sample.
+     * @return The value.
+     */
+    public double getValue(int k,
+                           int n) {
+        if (k < 0 || k >= countTapers ||
+            n < 0 || n >= length) {
+            throw new IllegalArgumentException();
+        }
+        return data[k * length + n];
+    }
+
+    /**
+     * Get a view on the tapers, stored one after the other. This
+     * array must not be modified.
+     * @return The internal array, where "data[k * N + n]" is the
+     * sample "n" of the taper "k".
+     */
+    public double[] getData() {
+        return data;
+    }
+
+    /**
+     * Get an estimate of the memory that is used by the tapers.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage() {
+        return 32 + 8 * (long) data.length;
+    }
+}
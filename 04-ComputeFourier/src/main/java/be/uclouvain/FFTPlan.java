@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Iterative, in-place radix-2 Fast Fourier Transform working on
+ * primitive arrays. The twiddle factors and the bit-reversal
+ * permutation are computed once, when the plan is created, and are
+ * reused by all the transforms of the same size.
+ *
+ * Plans are immutable, except for their scratch buffers that are
+ * private to each thread (cf. "ThreadScratch"): A single plan can
+ * therefore be shared by concurrent requests (cf. "FFTPlanCache").
+ *
+ * Transforms whose size reaches a configurable threshold are computed
+ * in parallel on the "ParallelLoop" pool, using the four-step
+ * decomposition "N = N1 * N2": "N2" FFTs of size "N1" along the
+ * columns, a multiplication by twiddle factors, then "N1" FFTs of
+ * size "N2" along the rows.
+ */
+public class FFTPlan implements ComplexFFT {
+    private final int size;
+    private final int[] bitReversal;
+    private final double[] cosTable;  // cos(2*pi*k/N), for k < N/2
+    private final double[] sinTable;  // sin(2*pi*k/N), for k < N/2
+    private final ThreadScratch<SignalBuffer> scratch;
+    private final ThreadScratch<SignalBuffer> parallelScratch;
+
+    /**
+     * Default size from which the transforms are computed in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 20;
+
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Change the size from which the transforms are computed in
+     * parallel. The parallel mode is only used if the pool of
+     * "ParallelLoop" has more than one thread.
+     * @param threshold The minimum size for the parallel mode (use
+     * "Integer.MAX_VALUE" to disable it).
+     */
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 4) {
+            throw new IllegalArgumentException();
+        }
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Get the size from which the transforms are computed in parallel.
+     * @return The threshold.
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Check whether some integer is a power of 2.
+     * @param n The integer.
+     * @return `true` iff. "n" is a (strictly positive) power of 2.
+     */
+    public static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * Get the smallest power of 2 that is larger or equal to some
+     * integer.
+     * @param n The integer (must be strictly positive).
+     * @return The power of 2.
+     */
+    public static int nextPowerOfTwo(int n) {
+        if (n <= 0 || n > (1 << 30)) {
+            throw new IllegalArgumentException();
+        }
+        return (n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1);
+    }
+
+    /**
+     * Create a plan for transforms of a given size.
+     * @param size The number of items in the transformed vectors.
+     * Must be a power of 2.
+     */
+    public FFTPlan(int size) {
+        if (!isPowerOfTwo(size)) {
+            throw new IllegalArgumentException("N must be a power of 2.");
+        }
+
+        this.size = size;
+
+        int bits = Integer.numberOfTrailingZeros(size);
+        bitReversal = new int[size];
+        for (int i = 1; i < size; i++) {
+            bitReversal[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        cosTable = new double[size / 2];
+        sinTable = new double[size / 2];
+        for (int k = 0; k < size / 2; k++) {
+            double theta = 2.0 * Math.PI * (double) k / (double) size;
+            cosTable[k] = Math.cos(theta);
+            sinTable[k] = Math.sin(theta);
+        }
+
+        scratch = new ThreadScratch<>(16L * size, () -> new SignalBuffer(size));
+        parallelScratch = new ThreadScratch<>(16L * size, () -> new SignalBuffer(size));
+    }
+
+    /**
+     * Get the size of the transforms computed by this plan.
+     * @return The number of items.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get a working buffer whose length is the size of this plan. The
+     * buffer is private to the calling thread and may be reused
+     * across calls (cf. "ThreadScratch"), so its initial content is
+     * undefined.
+     * @return The scratch buffer.
+     */
+    public SignalBuffer getScratchBuffer() {
+        return scratch.get();
+    }
+
+    /**
+     * Compute the forward FFT, in place.
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    public void forward(double[] real,
+                        double[] imag) {
+        transform(real, imag, false);
+    }
+
+    /**
+     * Compute the inverse FFT, in place. The output is scaled by
+     * "1/N", so that "inverse(forward(x)) == x".
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    public void inverse(double[] real,
+                        double[] imag) {
+        transform(real, imag, true);
+
+        final double scaling = 1.0 / (double) size;
+        for (int i = 0; i < size; i++) {
+            real[i] *= scaling;
+            imag[i] *= scaling;
+        }
+    }
+
+    private void transform(double[] real,
+                           double[] imag,
+                           boolean inverse) {
+        if (real.length < size ||
+            imag.length < size) {
+            throw new IllegalArgumentException();
+        }
+
+        // The four-step decomposition is slower than the sequential
+        // transform if there is only one worker thread to run it
+        final long reads;
+        if (size >= parallelThreshold &&
+            ParallelLoop.getPool().getParallelism() > 1) {
+            reads = transformParallel(real, imag, inverse);
+        } else {
+            reads = transformSequential(real, imag, 0, inverse);
+        }
+
+        // Report the work done by the butterflies, for the complexity tests
+        Signal.countBulkReads(reads);
+    }
+
+    private long transformParallel(final double[] real,
+                                   final double[] imag,
+                                   final boolean inverse) {
+        // Four-step decomposition, with "n = N2 * n1 + n2" and "k = k1 + N1 * k2"
+        final int bits = Integer.numberOfTrailingZeros(size);
+        final int n1 = 1 << (bits / 2);
+        final int n2 = size / n1;
+        final FFTPlan columnPlan = FFTPlanCache.getNestedPlan(n1);
+        final FFTPlan rowPlan = FFTPlanCache.getNestedPlan(n2);
+        final double sign = inverse ? 1.0 : -1.0;
+
+        // The intermediate matrix, stored row by row as "tmp[n2 * N1 + k1]"
+        SignalBuffer tmp = parallelScratch.get();
+        final double[] tmpReal = tmp.getReal();
+        final double[] tmpImag = tmp.getImag();
+        final LongAdder reads = new LongAdder();
+
+        // Step 1 and 2: FFT along each column "n2", then multiply by "W_N^(n2 * k1)"
+        ParallelLoop.run(n2, (from, to) -> {
+            long chunkReads = 0;
+            for (int c = from; c < to; c++) {
+                final int offset = c * n1;
+                for (int i = 0; i < n1; i++) {
+                    tmpReal[offset + i] = real[n2 * i + c];
+                    tmpImag[offset + i] = imag[n2 * i + c];
+                }
+
+                chunkReads += columnPlan.transformSequential(tmpReal, tmpImag, offset, inverse);
+
+                for (int k = 1; k < n1; k++) {
+                    final int t = (int) ((long) c * k % size);
+                    final double wr;
+                    final double wi;
+                    if (t < size / 2) {
+                        wr = cosTable[t];
+                        wi = sign * sinTable[t];
+                    } else {
+                        wr = -cosTable[t - size / 2];
+                        wi = -sign * sinTable[t - size / 2];
+                    }
+                    final double re = tmpReal[offset + k];
+                    final double im = tmpImag[offset + k];
+                    tmpReal[offset + k] = re * wr - im * wi;
+                    tmpImag[offset + k] = re * wi + im * wr;
+                    chunkReads++;
+                }
+            }
+            reads.add(chunkReads);
+        });
+
+        // Step 3: FFT along each row "k1", written back with stride "N1"
+        ParallelLoop.run(n1, (from, to) -> {
+            double[] rowReal = new double[n2];
+            double[] rowImag = new double[n2];
+            long chunkReads = 0;
+            for (int k = from; k < to; k++) {
+                for (int i = 0; i < n2; i++) {
+                    rowReal[i] = tmpReal[i * n1 + k];
+                    rowImag[i] = tmpImag[i * n1 + k];
+                }
+
+                chunkReads += rowPlan.transformSequential(rowReal, rowImag, 0, inverse);
+
+                for (int i = 0; i < n2; i++) {
+                    real[k + n1 * i] = rowReal[i];
+                    imag[k + n1 * i] = rowImag[i];
+                }
+            }
+            reads.add(chunkReads);
+        });
+
+        return reads.sum();
+    }
+
+    // Returns the number of items read by the butterflies
+    private long transformSequential(double[] real,
+                                     double[] imag,
+                                     int offset,
+                                     boolean inverse) {
+        for (int i = 1; i < size; i++) {
+            int j = bitReversal[i];
+            if (j > i) {
+                double tmp = real[offset + i];
+                real[offset + i] = real[offset + j];
+                real[offset + j] = tmp;
+                tmp = imag[offset + i];
+                imag[offset + i] = imag[offset + j];
+                imag[offset + j] = tmp;
+            }
+        }
+
+        // The forward transform uses "exp(-i*theta)", the inverse one "exp(i*theta)"
+        final double sign = inverse ? 1.0 : -1.0;
+        long reads = 0;
+
+        for (int length = 2; length <= size; length *= 2) {
+            final int half = length / 2;
+            final int step = size / length;
+
+            for (int start = offset; start < offset + size; start += length) {
+                for (int j = 0; j < half; j++) {
+                    final double wr = cosTable[j * step];
+                    final double wi = sign * sinTable[j * step];
+
+                    final int a = start + j;
+                    final int b = a + half;
+                    final double tr = real[b] * wr - imag[b] * wi;
+                    final double ti = real[b] * wi + imag[b] * wr;
+                    real[b] = real[a] - tr;
+                    imag[b] = imag[a] - ti;
+                    real[a] += tr;
+                    imag[a] += ti;
+                    reads += 2;
+                }
+            }
+        }
+
+        return reads;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Frequency band of interest, such as the clinical EEG rhythms
+ * (delta, theta, alpha, beta and gamma).
+ */
+public class FrequencyBand {
+    private final String name;
+    private final double low;
+    private final double high;
+
+    /**
+     * Create a frequency band.
+     * @param name The name of the band.
+     * @param low The lower bound of the band, in Hertz (inclusive).
+     * @param high The upper bound of the band, in Hertz (exclusive).
+     */
+    public FrequencyBand(String name,
+                         double low,
+                         double high) {
+        if (low < 0 ||
+            high <= low) {
+            throw new IllegalArgumentException("Bad frequency band: " + name);
+        }
+        this.name = name;
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Get the name of the band.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the lower bound of the band.
+     * @return The frequency, in Hertz (inclusive).
+     */
+    public double getLow() {
+        return low;
+    }
+
+    /**
+     * Get the upper bound of the band.
+     * @return The frequency, in Hertz (exclusive).
+     */
+    public double getHigh() {
+        return high;
+    }
+
+    /**
+     * Get the conventional clinical EEG bands.
+     * @return The delta, theta, alpha, beta and gamma bands.
+     */
+    public static FrequencyBand[] getClinicalBands() {
+        return new FrequencyBand[] {
+            new FrequencyBand("delta", 0.5, 4),
+            new FrequencyBand("theta", 4, 8),
+            new FrequencyBand("alpha", 8, 13),
+            new FrequencyBand("beta", 13, 30),
+            new FrequencyBand("gamma", 30, 45)
+        };
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Goertzel algorithm, which evaluates the discrete-time Fourier
+ * transform of a real signal at one frequency using a second-order
+ * recurrence. It runs in O(N) with constant memory and without any
+ * padded buffer, which is much cheaper than a full FFT if only a
+ * few frequencies are of interest.
+ *
+ * The powers are normalized as in "App.computePowerSpectrum()": The
+ * power spectral density at a frequency is "|X(f)|^2 * T / N".
+ *
+ * Each frequency costs one pass over the samples, so the power of a
+ * wide frequency band, which covers many DFT bins, is computed using
+ * one real FFT instead (cf. "computeBandPowers()").
+ */
+public class Goertzel {
+    private Goertzel() {
+    }
+
+    /**
+     * Compute the squared modulus of the Fourier transform of a range
+     * of samples, at one frequency.
+     * @param samples The samples.
+     * @param offset Index of the first sample.
+     * @param length Number of samples.
+     * @param frequency The frequency, expressed in cycles per sample
+     * (i.e. "f / Fs"). It needs not correspond to a DFT bin.
+     * @return The squared modulus "|X(f)|^2".
+     */
+    public static double computePower(double[] samples,
+                                      int offset,
+                                      int length,
+                                      double frequency) {
+        final double coefficient = 2.0 * Math.cos(2.0 * Math.PI * frequency);
+
+        double s1 = 0;
+        double s2 = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final double s = samples[i] + coefficient * s1 - s2;
+            s2 = s1;
+            s1 = s;
+        }
+
+        return s1 * s1 + s2 * s2 - coefficient * s1 * s2;
+    }
+
+    /**
+     * Compute the power spectral density of a range of samples at
+     * one frequency.
+     * @param samples The samples.
+     * @param offset Index of the first sample.
+     * @param length Number of samples.
+     * @param samplingFrequency The sampling frequency.
+     * @param frequency The frequency of interest, in Hertz.
+     * @return The power spectral density.
+     */
+    public static double computeDensity(double[] samples,
+                                        int offset,
+                                        int length,
+                                        double samplingFrequency,
+                                        double frequency) {
+        return computePower(samples, offset, length, frequency / samplingFrequency) / (samplingFrequency * length);
+    }
+
+    private static int getFirstBin(FrequencyBand band,
+                                   double resolution) {
+        return (int) Math.ceil(band.getLow() / resolution);
+    }
+
+    private static int getLastBin(FrequencyBand band,
+                                  int length,
+                                  double resolution) {
+        return Math.min(length / 2, (int) Math.ceil(band.getHigh() / resolution) - 1);
+    }
+
+    /**
+     * Compute the power of a range of samples inside a frequency
+     * band. The result is the mean squared amplitude of the band-pass
+     * component of the signal (taking both the positive and negative
+     * frequencies into account): For instance, a sine wave of
+     * amplitude "A" inside the band has a power of "A^2/2".
+     *
+     * @param samples The samples.
+     * @param offset Index of the first sample.
+     * @param length Number of samples.
+     * @param samplingFrequency The sampling frequency.
+     * @param band The frequency band.
+     * @return The power inside the band.
+     * @see #computeBandPowers(double[], int, int, double, FrequencyBand[], double[])
+     */
+    public static double computeBandPower(double[] samples,
+                                          int offset,
+                                          int length,
+                                          double samplingFrequency,
+                                          FrequencyBand band) {
+        double[] power = new double[1];
+        computeBandPowers(samples, offset, length, samplingFrequency, new FrequencyBand[] { band }, power);
+        return power[0];
+    }
+
+    /**
+     * Compute the power of a range of samples inside several
+     * frequency bands (cf. "computeBandPower()"). The bands that cover
+     * at most "log2(N)" DFT bins are computed by running the Goertzel
+     * algorithm on each of their bins, in "O(N * K)". If some band is
+     * wider, the DFT bins are rather taken from one real FFT of the
+     * samples, which costs "O(N log(N))" whatever the width and the
+     * number of the bands. Both methods give the same powers.
+     *
+     * @param samples The samples.
+     * @param offset Index of the first sample.
+     * @param length Number of samples.
+     * @param samplingFrequency The sampling frequency.
+     * @param bands The frequency bands.
+     * @param target Receives the power inside each band.
+     */
+    public static void computeBandPowers(double[] samples,
+                                         int offset,
+                                         int length,
+                                         double samplingFrequency,
+                                         FrequencyBand[] bands,
+                                         double[] target) {
+        if (length <= 0 ||
+            target.length < bands.length) {
+            throw new IllegalArgumentException();
+        }
+
+        final double resolution = samplingFrequency / length;
+        final int maxGoertzelBins = 32 - Integer.numberOfLeadingZeros(length);  // About log2(N)
+
+        boolean useFFT = false;
+        for (FrequencyBand band : bands) {
+            if (getLastBin(band, length, resolution) - getFirstBin(band, resolution) + 1 > maxGoertzelBins) {
+                useFFT = true;
+            }
+        }
+
+        double[] real = null;
+        double[] imag = null;
+        if (useFFT) {
+            RealFFTPlan plan = FFTPlanCache.getRealPlan(length);
+            double[] buffer = plan.getScratchSamples();
+            System.arraycopy(samples, offset, buffer, 0, length);
+            SignalBuffer spectrum = plan.getScratchSpectrum();
+            real = spectrum.getReal();
+            imag = spectrum.getImag();
+            plan.forward(buffer, real, imag);
+        }
+
+        for (int b = 0; b < bands.length; b++) {
+            final int first = getFirstBin(bands[b], resolution);
+            final int last = getLastBin(bands[b], length, resolution);
+
+            double sum = 0;
+            for (int k = first; k <= last; k++) {
+                double power;
+                if (useFFT) {
+                    power = real[k] * real[k] + imag[k] * imag[k];
+                } else {
+                    power = computePower(samples, offset, length, (double) k / (double) length);
+                }
+
+                // Except for DC and Nyquist, each bin has a mirror in the
+                // negative frequencies
+                if (k == 0 || 2 * k == length) {
+                    sum += power;
+                } else {
+                    sum += 2.0 * power;
+                }
+            }
+
+            target[b] = sum / ((double) length * (double) length);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Arrays;
+
+
+/**
+ * Estimation of the power spectral density using Thomson's multitaper
+ * method: The whole signal is multiplied by "K" orthogonal DPSS
+ * tapers (cf. "DPSSTapers"), and the periodograms of the "K" tapered
+ * signals are averaged. Contrarily to Welch's method, the frequency
+ * resolution is not reduced by segmenting the signal, and the
+ * leakage is kept within the band "[-W,W]".
+ *
+ * The tapers come from "DPSSTaperCache", and the "K" tapered FFTs are
+ * computed in parallel on the "ParallelLoop" pool, using one shared
+ * real FFT plan.
+ */
+public class MultitaperPSD {
+    /**
+     * Default time-bandwidth product "NW".
+     */
+    public static final double DEFAULT_BANDWIDTH = 4;
+
+    private MultitaperPSD() {
+    }
+
+    /**
+     * Estimate the power spectral density of a real signal. The
+     * normalization is the same as in "WelchPSD" (the tapers have a
+     * unit energy).
+     *
+     * @param samples The samples of the signal.
+     * @param length The number of samples to be considered.
+     * @param samplingFrequency The sampling frequency of the signal.
+     * @param bandwidth The time-bandwidth product "NW".
+     * @param countTapers The number "K" of tapers.
+     * @param padding The padding strategy, which gives the size of
+     * the FFT.
+     * @return The "M/2+1" first values of the power spectral density,
+     * where "M" is the padded length, at frequencies "k * Fs / M".
+     */
+    public static double[] compute(final double[] samples,
+                                   final int length,
+                                   double samplingFrequency,
+                                   double bandwidth,
+                                   int countTapers,
+                                   Padding padding) {
+        if (length <= 0 ||
+            samples.length < length ||
+            samplingFrequency <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        final DPSSTapers tapers = DPSSTaperCache.getTapers(length, bandwidth, countTapers);
+        final double[] data = tapers.getData();
+
+        final int paddedLength = padding.getPaddedLength(length);
+        final RealFFTPlan plan = FFTPlanCache.getRealPlan(paddedLength);
+        final int countBins = plan.getNumberOfBins();
+        final double[] psd = new double[countBins];
+
+        ParallelLoop.run(countTapers, (from, to) -> {
+            // Accumulate in a buffer that is private to this range of tapers
+            double[] accumulator = new double[countBins];
+            double[] buffer = plan.getScratchSamples();
+            SignalBuffer spectrum = plan.getScratchSpectrum();
+            double[] real = spectrum.getReal();
+            double[] imag = spectrum.getImag();
+
+            for (int k = from; k < to; k++) {
+                final int offset = k * length;
+                for (int n = 0; n < length; n++) {
+                    buffer[n] = samples[n] * data[offset + n];
+                }
+                Arrays.fill(buffer, length, paddedLength, 0);
+
+                plan.forward(buffer, real, imag);
+
+                for (int i = 0; i < countBins; i++) {
+                    accumulator[i] += real[i] * real[i] + imag[i] * imag[i];
+                }
+            }
+
+            synchronized (psd) {
+                for (int i = 0; i < countBins; i++) {
+                    psd[i] += accumulator[i];
+                }
+            }
+        });
+
+        final double normalizationFactor = 1.0 / (samplingFrequency * countTapers);
+        for (int i = 0; i < countBins; i++) {
+            psd[i] *= normalizationFactor;
+        }
+
+        return psd;
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Strategies to choose the length of the buffer in which a signal is
+ * zero-padded before being transformed by the FFT.
+ */
+public enum Padding {
+    /**
+     * Pad up to the next power of 2 (this is the historical behavior).
+     */
+    POWER_OF_TWO,
+
+    /**
+     * Pad up to the next integer whose only prime factors are 2, 3
+     * and 5, which is never more than a few percents longer than the
+     * signal.
+     */
+    SMOOTH,
+
+    /**
+     * No padding: Transform the exact length of the signal.
+     */
+    NONE;
+
+    /**
+     * Get the length of the padded buffer for a signal.
+     * @param length The number of samples in the signal.
+     * @return The length of the padded buffer.
+     */
+    public int getPaddedLength(int length) {
+        switch (this) {
+            case POWER_OF_TWO:
+                return FFTPlan.nextPowerOfTwo(length);
+            case SMOOTH:
+                return MixedRadixFFTPlan.nextSmoothSize(length);
+            default:
+                return length;
+        }
+    }
+
+    /**
+     * Parse the name of a padding strategy, as used in the REST API:
+     * "power-of-two", "smooth" or "none".
+     * @param name The name.
+     * @return The padding strategy.
+     */
+    public static Padding parse(String name) {
+        switch (name) {
+            case "power-of-two":
+                return POWER_OF_TWO;
+            case "smooth":
+                return SMOOTH;
+            case "none":
+                return NONE;
+            default:
+                throw new IllegalArgumentException("Unknown padding: " + name);
+        }
+    }
+}
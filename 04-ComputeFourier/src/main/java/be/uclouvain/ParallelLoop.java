@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Minimal "parallel for" loop built on top of a "ForkJoinPool". The
+ * range of indices is recursively split into chunks, each chunk
+ * being processed by one call to the body of the loop (which allows
+ * the body to allocate its working buffers once per chunk).
+ */
+public class ParallelLoop {
+    /**
+     * Body of a parallel loop.
+     */
+    public interface Body {
+        /**
+         * Process one chunk of the loop.
+         * @param from The first index of the chunk (inclusive).
+         * @param to The last index of the chunk (exclusive).
+         */
+        void run(int from, int to);
+    }
+
+    private static ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private ParallelLoop() {
+    }
+
+    /**
+     * Change the pool of threads that runs the parallel loops.
+     * @param pool The new pool.
+     */
+    public static synchronized void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException();
+        }
+        ParallelLoop.pool = pool;
+    }
+
+    /**
+     * Get the pool of threads that runs the parallel loops.
+     * @return The pool.
+     */
+    public static synchronized ForkJoinPool getPool() {
+        return pool;
+    }
+
+    private static class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Body body;
+
+        Task(int from, int to, int grain, Body body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+            } else {
+                int middle = from + (to - from) / 2;
+                invokeAll(new Task(from, middle, grain, body),
+                          new Task(middle, to, grain, body));
+            }
+        }
+    }
+
+    /**
+     * Run a loop over the indices "[0, count)" in parallel. The
+     * method returns once all the indices have been processed.
+     * @param count The number of indices.
+     * @param body The body of the loop.
+     */
+    public static void run(int count,
+                           Body body) {
+        ForkJoinPool pool = getPool();
+
+        // Create a few chunks per thread, for load balancing
+        int grain = Math.max(1, count / (4 * pool.getParallelism()));
+
+        if (count <= grain) {
+            if (count > 0) {
+                body.run(0, count);
+            }
+        } else {
+            pool.invoke(new Task(0, count, grain, body));
+        }
+    }
+}
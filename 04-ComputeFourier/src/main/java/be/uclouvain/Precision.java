@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Floating-point precision of the spectral computations. The EDF
+ * samples are 16-bit integers, so their physical values fit exactly
+ * in a float: In single precision, the only additional error comes
+ * from the rounding inside the FFT, which grows like "log2(N)" times
+ * the float epsilon (about 6e-8). Single precision halves the size of
+ * the working arrays, which matters for long recordings.
+ *
+ * Accuracy measured against the double-precision path on the
+ * channels of "test_generator_2.edf", padded to 131072 samples (cf.
+ * "testSinglePrecision" in the "AppTest" of the modules 04 and 05):
+ *
+ * - Periodogram: The largest deviation is between 3e-8 and 4e-7 of
+ *   the peak of the power spectrum, depending on the channel.
+ *
+ * - Ideal band-pass filter (2-20Hz): The largest deviation is below
+ *   6e-5 in physical units, i.e. about 1e-6 of the peak amplitude of
+ *   the filtered channel.
+ *
+ * Both are far below the quantization step of the EDF samples.
+ */
+public enum Precision {
+    /**
+     * Double precision (64-bit floats): This is the default.
+     */
+    DOUBLE,
+
+    /**
+     * Single precision (32-bit floats). The FFT size must be a power
+     * of 2 (cf. "FloatRealFFTPlan").
+     */
+    SINGLE;
+
+    /**
+     * Parse the name of a precision, as used in the REST API:
+     * "double" or "float32".
+     * @param name The name.
+     * @return The precision.
+     */
+    public static Precision parse(String name) {
+        switch (name) {
+            case "double":
+                return DOUBLE;
+            case "float32":
+                return SINGLE;
+            default:
+                throw new IllegalArgumentException("Unknown precision: " + name);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.io.IOException;
+
+
+/**
+ * Short-time Fourier transform of a real signal. The signal is split
+ * into frames of "windowLength" samples whose starts are separated by
+ * "hop" samples. Each frame is tapered by a window function,
+ * zero-padded to "fftSize" samples, and transformed. The power of the
+ * frames is expressed in decibels, with the same normalization as in
+ * "WelchPSD" (i.e. each frame is a modified periodogram).
+ *
+ * The frames are computed by tiles of "TILE_FRAMES" consecutive
+ * frames (cf. "SpectrogramCache"), and the frames of one tile are
+ * computed in parallel on the "ParallelLoop" pool. The object is
+ * immutable and can be shared by concurrent threads.
+ */
+public class STFT {
+    /**
+     * Default number of samples in each frame.
+     */
+    public static final int DEFAULT_WINDOW_LENGTH = 256;
+
+    /**
+     * Number of frames in each tile.
+     */
+    public static final int TILE_FRAMES = 256;
+
+    // Offset that avoids taking the logarithm of zero
+    private static final double EPSILON = 1e-20;
+
+    private final int windowLength;
+    private final int hop;
+    private final int fftSize;
+    private final WindowFunction window;
+    private final double[] coefficients;
+    private final double energy;
+
+    /**
+     * Configure a short-time Fourier transform.
+     * @param windowLength The number of samples in each frame.
+     * @param hop The number of samples between the starts of two
+     * successive frames.
+     * @param fftSize The size of the FFT (larger or equal to
+     * "windowLength").
+     * @param window The window function.
+     */
+    public STFT(int windowLength,
+                int hop,
+                int fftSize,
+                WindowFunction window) {
+        if (windowLength <= 0 ||
+            hop <= 0 ||
+            fftSize < windowLength) {
+            throw new IllegalArgumentException();
+        }
+
+        this.windowLength = windowLength;
+        this.hop = hop;
+        this.fftSize = fftSize;
+        this.window = window;
+        this.coefficients = window.getCoefficients(windowLength);
+
+        double sum = 0;
+        for (double c : coefficients) {
+            sum += c * c;
+        }
+        this.energy = sum;
+    }
+
+    /**
+     * Get the number of samples in each frame.
+     * @return The window length.
+     */
+    public int getWindowLength() {
+        return windowLength;
+    }
+
+    /**
+     * Get the number of samples between two successive frames.
+     * @return The hop.
+     */
+    public int getHop() {
+        return hop;
+    }
+
+    /**
+     * Get the size of the FFT.
+     * @return The size of the FFT.
+     */
+    public int getFFTSize() {
+        return fftSize;
+    }
+
+    /**
+     * Get the window function.
+     * @return The window function.
+     */
+    public WindowFunction getWindow() {
+        return window;
+    }
+
+    /**
+     * Get the number of frequency bins in each frame.
+     * @return The number of bins, i.e. "fftSize/2+1".
+     */
+    public int getNumberOfBins() {
+        return fftSize / 2 + 1;
+    }
+
+    /**
+     * Get the number of complete frames in a signal.
+     * @param length The number of samples in the signal.
+     * @return The number of frames.
+     */
+    public int getNumberOfFrames(int length) {
+        if (length < windowLength) {
+            return 0;
+        } else {
+            return 1 + (length - windowLength) / hop;
+        }
+    }
+
+    /**
+     * Get the number of tiles that are needed to cover a signal.
+     * @param length The number of samples in the signal.
+     * @return The number of tiles.
+     */
+    public int getNumberOfTiles(int length) {
+        return (getNumberOfFrames(length) + TILE_FRAMES - 1) / TILE_FRAMES;
+    }
+
+    /**
+     * Compute a range of frames, given the samples they cover.
+     * @param samples The samples, the first one being the start of the
+     * frame "firstFrame".
+     * @param samplingFrequency The sampling frequency of the signal.
+     * @param firstFrame The index of the first frame.
+     * @param countFrames The number of frames.
+     * @return The tile containing the frames.
+     */
+    public SpectrogramTile compute(final double[] samples,
+                                   double samplingFrequency,
+                                   int firstFrame,
+                                   int countFrames) {
+        if (countFrames > 0 &&
+            samples.length < (countFrames - 1) * hop + windowLength) {
+            throw new IllegalArgumentException();
+        }
+
+        final SpectrogramTile tile = new SpectrogramTile(firstFrame, countFrames, getNumberOfBins());
+        final float[] values = tile.getValues();
+        final RealFFTPlan plan = FFTPlanCache.getRealPlan(fftSize);
+        final int countBins = getNumberOfBins();
+        final double normalizationFactor = 1.0 / (samplingFrequency * energy);
+
+        ParallelLoop.run(countFrames, (from, to) -> {
+            double[] buffer = plan.getScratchSamples();
+            SignalBuffer spectrum = plan.getScratchSpectrum();
+            double[] real = spectrum.getReal();
+            double[] imag = spectrum.getImag();
+
+            for (int frame = from; frame < to; frame++) {
+                final int start = frame * hop;
+                for (int i = 0; i < windowLength; i++) {
+                    buffer[i] = samples[start + i] * coefficients[i];
+                }
+                for (int i = windowLength; i < fftSize; i++) {
+                    buffer[i] = 0;
+                }
+
+                plan.forward(buffer, real, imag);
+
+                final int offset = frame * countBins;
+                for (int k = 0; k < countBins; k++) {
+                    double power = normalizationFactor * (real[k] * real[k] + imag[k] * imag[k]);
+                    values[offset + k] = (float) (10.0 * Math.log10(power + EPSILON));
+                }
+            }
+        });
+
+        return tile;
+    }
+
+    /**
+     * Compute one tile of the spectrogram of one channel of an EDF
+     * file. Only the samples that are covered by the frames of the
+     * tile are decoded.
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param tileIndex The index of the tile.
+     * @return The tile.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     */
+    public SpectrogramTile computeTile(final EDFTimeSeries timeSeries,
+                                       final int channelIndex,
+                                       int tileIndex) throws IOException {
+        final int totalFrames = getNumberOfFrames(timeSeries.getNumberOfSamples(channelIndex));
+        final int firstFrame = tileIndex * TILE_FRAMES;
+        if (tileIndex < 0 ||
+            firstFrame >= totalFrames) {
+            throw new IllegalArgumentException("Bad tile index: " + tileIndex);
+        }
+
+        final int countFrames = Math.min(TILE_FRAMES, totalFrames - firstFrame);
+        final int firstSample = firstFrame * hop;
+        final double[] samples = new double[(countFrames - 1) * hop + windowLength];
+        timeSeries.getPhysicalValues(channelIndex, firstSample, samples, 0, samples.length);
+
+        return compute(samples, timeSeries.getSamplingFrequency(channelIndex), firstFrame, countFrames);
+    }
+}
@@ -30,24 +30,43 @@ package be.uclouvain;
  * This class encodes a vector of complex numbers, that can be used as
  * inputs or outputs of signal processing algorithms.
  *
+ * The samples are stored in a "SignalBuffer" (i.e. as primitive
+ * arrays), this class being an adapter that exposes them as
+ * "ComplexNumber" objects. Performance-sensitive code should work
+ * directly on the arrays returned by "getBuffer()".
+ *
+ * As a consequence, "ComplexNumber" objects are copied in and out of
+ * the signal: "getValue()" returns a new object at each call, and
+ * "setValue()" doesn't keep a reference to its argument. As
+ * "ComplexNumber" is immutable, only the identity of the objects
+ * differs (i.e. items must not be compared using "==").
+ *
  * It also counts the number of read operations applied to all the
  * signals in the application, which is used for unit testing the
  * complexity of algorithms (in production, this mechanism should be
- * removed because of the presence of a mutex).
+ * removed because of the presence of a mutex). The reads that the
+ * FFT engines do on the primitive arrays are counted without the
+ * mutex, separately for each thread (cf. "countBulkReads()").
  */
 public class Signal {
-    private final ComplexNumber[] values;
+    private final SignalBuffer values;
     private static int countReads = 0;
+    private static final ThreadLocal<long[]> countEngineReads = ThreadLocal.withInitial(() -> new long[1]);
 
     /**
      * Create a signal of given length.
      * @param length The number of complex numbers in the signal.
      */
     public Signal(int length) {
-        values = new ComplexNumber[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = new ComplexNumber();
-        }
+        values = new SignalBuffer(length);
+    }
+
+    /**
+     * Create a signal that wraps an existing buffer (no copy is done).
+     * @param buffer The buffer containing the samples.
+     */
+    public Signal(SignalBuffer buffer) {
+        values = buffer;
     }
 
     /**
@@ -55,17 +74,28 @@ public class Signal {
      * @return The number of complex numbers in the signal.
      */
     public int getLength() {
-        return values.length;
+        return values.getLength();
+    }
+
+    /**
+     * Get the primitive buffer that stores the samples of this
+     * signal. Accesses through this buffer are not counted as read
+     * operations.
+     * @return The buffer.
+     */
+    public SignalBuffer getBuffer() {
+        return values;
     }
 
     /**
-     * Set one of the items in the signal.
+     * Set one of the items in the signal. The components of the
+     * complex number are copied into the buffer.
      * @param index The index of the item.
      * @param value The complex number to be stored in the item.
      */
     public void setValue(int index,
                          ComplexNumber value) {
-        values[index] = value;
+        values.set(index, value.getReal(), value.getImag());
     }
 
     /**
@@ -75,7 +105,7 @@ public class Signal {
      */
     public void setValue(int index,
                          double r) {
-        setValue(index, new ComplexNumber(r));
+        values.set(index, r, 0);
     }
 
     /**
@@ -89,17 +119,17 @@ public class Signal {
     public void setValue(int index,
                          double real,
                          double imag) {
-        setValue(index, new ComplexNumber(real, imag));
+        values.set(index, real, imag);
     }
 
     /**
      * Get one complex number stored in the signal.
      * @param index The index of the item of interest.
-     * @return The complex number.
+     * @return A new complex number holding the value of the item.
      */
     public synchronized ComplexNumber getValue(int index) {
         countReads++;
-        return values[index];
+        return new ComplexNumber(values.getReal(index), values.getImag(index));
     }
 
     /**
@@ -107,14 +137,28 @@ public class Signal {
      */
     public static synchronized void resetCounters() {
         countReads = 0;
+        countEngineReads.get()[0] = 0;
+    }
+
+    /**
+     * For unit testing, account for read operations that were done
+     * directly on the primitive arrays by the FFT engines (once per
+     * transform, with the number of items read by the butterflies).
+     * The count is private to the calling thread, so that no mutex
+     * is taken by the engines.
+     * @param count The number of read accesses.
+     */
+    static void countBulkReads(long count) {
+        countEngineReads.get()[0] += count;
     }
 
     /**
      * For unit testing, get the number of read accesses that have
-     * been done on all the "Signal" objects in the application.
+     * been done on all the "Signal" objects in the application, plus
+     * those done by the FFT engines in the calling thread.
      * @return The number of read accesses.
      */
     public static synchronized int getCountReads() {
-        return countReads;
+        return (int) Math.min(Integer.MAX_VALUE, countReads + countEngineReads.get()[0]);
     }
 }
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Sliding discrete Fourier transform of a real signal over a moving
+ * window of fixed length "L". When the window moves forward by one
+ * sample, its spectrum is updated using the recurrence "X_k <- (X_k -
+ * x_old + x_new) * exp(2*i*pi*k/L)", which costs O(L) instead of
+ * O(L * log(L)) for a new FFT.
+ *
+ * Only the "L/2+1" first bins are tracked, as the signal is real. To
+ * bound the accumulation of rounding errors, the spectrum is
+ * recomputed from scratch by the FFT once "L" samples have been
+ * pushed since the last reset, which keeps the amortized cost per
+ * sample at O(L).
+ *
+ * The state is mutable, so one object must not be updated by
+ * concurrent threads.
+ */
+public class SlidingDFT {
+    private final int windowLength;
+    private final RealFFTPlan plan;
+    private final double[] cosTable;  // cos(2*pi*k/L)
+    private final double[] sinTable;  // sin(2*pi*k/L)
+    private final double[] real;
+    private final double[] imag;
+    private final double[] window;  // Circular buffer with the samples of the window
+    private int head;  // Position of the oldest sample in "window"
+    private int countUpdates;
+    private boolean isInitialized;
+
+    /**
+     * Create a sliding DFT.
+     * @param windowLength The number of samples "L" in the window.
+     */
+    public SlidingDFT(int windowLength) {
+        if (windowLength <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.windowLength = windowLength;
+        this.plan = FFTPlanCache.getRealPlan(windowLength);
+
+        final int countBins = plan.getNumberOfBins();
+        cosTable = new double[countBins];
+        sinTable = new double[countBins];
+        for (int k = 0; k < countBins; k++) {
+            double theta = 2.0 * Math.PI * (double) k / (double) windowLength;
+            cosTable[k] = Math.cos(theta);
+            sinTable[k] = Math.sin(theta);
+        }
+
+        real = new double[countBins];
+        imag = new double[countBins];
+        window = new double[windowLength];
+    }
+
+    /**
+     * Get the number of samples in the window.
+     * @return The window length "L".
+     */
+    public int getWindowLength() {
+        return windowLength;
+    }
+
+    /**
+     * Get the number of bins that are tracked.
+     * @return The number of bins, i.e. "L/2+1".
+     */
+    public int getNumberOfBins() {
+        return real.length;
+    }
+
+    /**
+     * Check whether the window has been filled by "reset()".
+     * @return `true` iff. the spectrum is available.
+     */
+    public boolean isInitialized() {
+        return isInitialized;
+    }
+
+    /**
+     * Fill the window with new samples, and compute its spectrum from
+     * scratch using the FFT.
+     * @param samples The array containing the samples.
+     * @param offset Index of the first sample of the window in the array.
+     */
+    public void reset(double[] samples,
+                      int offset) {
+        System.arraycopy(samples, offset, window, 0, windowLength);
+        head = 0;
+        recompute();
+    }
+
+    private void recompute() {
+        double[] buffer = plan.getScratchSamples();
+        for (int i = 0; i < windowLength; i++) {
+            buffer[i] = window[(head + i) % windowLength];
+        }
+        plan.forward(buffer, real, imag);
+        countUpdates = 0;
+        isInitialized = true;
+    }
+
+    /**
+     * Move the window forward by one sample.
+     * @param sample The sample entering the window.
+     */
+    public void push(double sample) {
+        if (!isInitialized) {
+            throw new IllegalStateException("The sliding DFT must be reset first");
+        }
+
+        final double delta = sample - window[head];
+        window[head] = sample;
+        head = (head + 1) % windowLength;
+
+        for (int k = 0; k < real.length; k++) {
+            final double re = real[k] + delta;
+            final double im = imag[k];
+            real[k] = re * cosTable[k] - im * sinTable[k];
+            imag[k] = re * sinTable[k] + im * cosTable[k];
+        }
+
+        countUpdates++;
+        if (countUpdates >= windowLength) {
+            recompute();
+        }
+    }
+
+    /**
+     * Move the window forward by several samples.
+     * @param samples The array containing the samples entering the window.
+     * @param offset Index of the first sample in the array.
+     * @param count The number of samples.
+     */
+    public void push(double[] samples,
+                     int offset,
+                     int count) {
+        for (int i = 0; i < count; i++) {
+            push(samples[offset + i]);
+        }
+    }
+
+    /**
+     * Get the largest move of the window for which the sliding update
+     * is cheaper than a new FFT. Moving the window by "s" samples
+     * costs "s * (L/2+1)" complex rotations, against "O(L log(L))" for
+     * the FFT, so the sliding update only pays off for moves of about
+     * "log2(L)" samples.
+     * @return The maximum number of samples to be pushed, beyond
+     * which "reset()" should be called instead.
+     */
+    public int getMaxSlidingShift() {
+        return Math.max(1, 31 - Integer.numberOfLeadingZeros(windowLength));
+    }
+
+    /**
+     * Get the real component of one bin of the spectrum of the window.
+     * @param k The index of the bin.
+     * @return The real component.
+     */
+    public double getReal(int k) {
+        return real[k];
+    }
+
+    /**
+     * Get the imaginary component of one bin of the spectrum of the window.
+     * @param k The index of the bin.
+     * @return The imaginary component.
+     */
+    public double getImag(int k) {
+        return imag[k];
+    }
+
+    /**
+     * Get the squared modulus of one bin of the spectrum of the window.
+     * @param k The index of the bin.
+     * @return The squared modulus.
+     */
+    public double getPower(int k) {
+        return real[k] * real[k] + imag[k] * imag[k];
+    }
+}
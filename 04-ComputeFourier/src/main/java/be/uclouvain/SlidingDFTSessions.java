@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU registry of the states of the sliding DFTs, indexed by
+ * a session identifier chosen by the client. This allows successive
+ * requests of the same client (e.g. while scrolling through a
+ * recording) to update the spectrum of the previous window, instead
+ * of computing a new FFT. The registry is shared by the whole
+ * application and is thread-safe, but each session must be locked
+ * while it is used.
+ */
+public class SlidingDFTSessions {
+    /**
+     * Default number of sessions that are kept.
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * State of one session.
+     */
+    public static class Session {
+        private final EDFTimeSeries timeSeries;
+        private final int channelIndex;
+        private final SlidingDFT dft;
+        private int start;
+
+        private Session(EDFTimeSeries timeSeries,
+                        int channelIndex,
+                        int windowLength) {
+            this.timeSeries = timeSeries;
+            this.channelIndex = channelIndex;
+            this.dft = new SlidingDFT(windowLength);
+            this.start = -1;
+        }
+
+        private boolean isCompatible(EDFTimeSeries timeSeries,
+                                     int channelIndex,
+                                     int windowLength) {
+            return (this.timeSeries == timeSeries &&
+                    this.channelIndex == channelIndex &&
+                    dft.getWindowLength() == windowLength);
+        }
+
+        /**
+         * Get the sliding DFT of this session.
+         * @return The sliding DFT.
+         */
+        public SlidingDFT getDFT() {
+            return dft;
+        }
+
+        /**
+         * Get the index of the first sample of the current window.
+         * @return The index, or -1 if the window was never filled.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Set the index of the first sample of the current window.
+         * @param start The index.
+         */
+        public void setStart(int start) {
+            this.start = start;
+        }
+    }
+
+    private static int capacity = DEFAULT_CAPACITY;
+
+    private static final LinkedHashMap<String, Session> sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private SlidingDFTSessions() {
+    }
+
+    /**
+     * Get the state of a session. A new state is created if the
+     * session is unknown, or if its previous state was about another
+     * EDF file, channel or window length.
+     * @param id The identifier of the session.
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param windowLength The number of samples in the window.
+     * @return The state of the session.
+     */
+    public static synchronized Session getSession(String id,
+                                                  EDFTimeSeries timeSeries,
+                                                  int channelIndex,
+                                                  int windowLength) {
+        Session session = sessions.get(id);
+        if (session == null ||
+            !session.isCompatible(timeSeries, channelIndex, windowLength)) {
+            session = new Session(timeSeries, channelIndex, windowLength);
+            sessions.put(id, session);
+        }
+        return session;
+    }
+
+    /**
+     * Change the maximum number of sessions. The least recently used
+     * sessions are discarded if needed.
+     * @param capacity The new capacity.
+     */
+    public static synchronized void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        SlidingDFTSessions.capacity = capacity;
+        while (sessions.size() > capacity) {
+            sessions.remove(sessions.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Get the number of sessions that are currently kept.
+     * @return The number of sessions.
+     */
+    public static synchronized int getSize() {
+        return sessions.size();
+    }
+
+    /**
+     * Discard all the sessions.
+     */
+    public static synchronized void clear() {
+        sessions.clear();
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU cache of the tiles of spectrograms, indexed by the EDF
+ * file, the channel, the configuration of the short-time Fourier
+ * transform and the index of the tile. When the user pans the
+ * time-frequency view, the frames that were already computed are not
+ * computed again. The size of the cache is bounded by the memory that
+ * is used by the tiles. The cache is shared by the whole application
+ * and is thread-safe.
+ */
+public class SpectrogramCache {
+    /**
+     * Default memory budget of the cache, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024L * 1024L;
+
+    private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private static long memoryUsage = 0;
+    private static long countHits = 0;
+    private static long countMisses = 0;
+
+    private static final class Key {
+        private final EDFTimeSeries timeSeries;  // Compared by identity
+        private final int channelIndex;
+        private final int windowLength;
+        private final int hop;
+        private final int fftSize;
+        private final WindowFunction window;
+        private final int tileIndex;
+
+        Key(EDFTimeSeries timeSeries,
+            int channelIndex,
+            STFT stft,
+            int tileIndex) {
+            this.timeSeries = timeSeries;
+            this.channelIndex = channelIndex;
+            this.windowLength = stft.getWindowLength();
+            this.hop = stft.getHop();
+            this.fftSize = stft.getFFTSize();
+            this.window = stft.getWindow();
+            this.tileIndex = tileIndex;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return (timeSeries == key.timeSeries &&
+                    channelIndex == key.channelIndex &&
+                    windowLength == key.windowLength &&
+                    hop == key.hop &&
+                    fftSize == key.fftSize &&
+                    window == key.window &&
+                    tileIndex == key.tileIndex);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(timeSeries);
+            hash = 31 * hash + channelIndex;
+            hash = 31 * hash + windowLength;
+            hash = 31 * hash + hop;
+            hash = 31 * hash + fftSize;
+            hash = 31 * hash + window.ordinal();
+            hash = 31 * hash + tileIndex;
+            return hash;
+        }
+    }
+
+    private static final LinkedHashMap<Key, SpectrogramTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private SpectrogramCache() {
+    }
+
+    private static void shrink() {
+        Iterator<Map.Entry<Key, SpectrogramTile>> it = tiles.entrySet().iterator();
+        while (memoryUsage > memoryBudget && it.hasNext()) {
+            memoryUsage -= it.next().getValue().getMemoryUsage();
+            it.remove();
+        }
+    }
+
+    private static synchronized SpectrogramTile lookup(Key key) {
+        SpectrogramTile tile = tiles.get(key);
+        if (tile == null) {
+            countMisses++;
+        } else {
+            countHits++;
+        }
+        return tile;
+    }
+
+    private static synchronized SpectrogramTile store(Key key,
+                                                      SpectrogramTile tile) {
+        SpectrogramTile previous = tiles.get(key);
+        if (previous == null) {
+            tiles.put(key, tile);
+            memoryUsage += tile.getMemoryUsage();
+            shrink();
+            return tile;
+        } else {
+            return previous;  // Another thread has computed the same tile in the meantime
+        }
+    }
+
+    /**
+     * Get one tile of the spectrogram of a channel, computing it if
+     * it is not in the cache yet.
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param stft The configuration of the short-time Fourier transform.
+     * @param tileIndex The index of the tile.
+     * @return The tile.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     */
+    public static SpectrogramTile getTile(EDFTimeSeries timeSeries,
+                                          int channelIndex,
+                                          STFT stft,
+                                          int tileIndex) throws IOException {
+        Key key = new Key(timeSeries, channelIndex, stft, tileIndex);
+        SpectrogramTile tile = lookup(key);
+        if (tile == null) {
+            // Compute the tile outside of the mutex
+            tile = store(key, stft.computeTile(timeSeries, channelIndex, tileIndex));
+        }
+        return tile;
+    }
+
+    /**
+     * Change the memory budget of the cache. The least recently used
+     * tiles are discarded if needed.
+     * @param budget The new budget, in bytes.
+     */
+    public static synchronized void setMemoryBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException();
+        }
+        memoryBudget = budget;
+        shrink();
+    }
+
+    /**
+     * Get the memory budget of the cache.
+     * @return The budget, in bytes.
+     */
+    public static synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get the memory that is used by the cached tiles.
+     * @return The number of bytes.
+     */
+    public static synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Get the number of tiles that are currently cached.
+     * @return The number of tiles.
+     */
+    public static synchronized int getSize() {
+        return tiles.size();
+    }
+
+    /**
+     * Get the number of requests that were served from the cache.
+     * @return The number of hits.
+     */
+    public static synchronized long getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * Get the number of requests that required computing a new tile.
+     * @return The number of misses.
+     */
+    public static synchronized long getCountMisses() {
+        return countMisses;
+    }
+
+    /**
+     * Empty the cache and reset the hit/miss counters. This must be
+     * called when a new EDF file is loaded, so that the tiles of the
+     * previous file can be garbage-collected.
+     */
+    public static synchronized void clear() {
+        tiles.clear();
+        memoryUsage = 0;
+        countHits = 0;
+        countMisses = 0;
+    }
+}
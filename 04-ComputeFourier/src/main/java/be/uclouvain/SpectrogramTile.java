@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Block of consecutive frames of a spectrogram. The power of each
+ * frequency bin is stored in decibels, as single-precision floats in
+ * row-major order (one row per frame), which is 8 times more compact
+ * than the same values as doubles inside JSON objects.
+ */
+public class SpectrogramTile {
+    private final int firstFrame;
+    private final int countFrames;
+    private final int countBins;
+    private final float[] values;
+
+    /**
+     * Create a tile, filled with zeros.
+     * @param firstFrame The index of the first frame in the tile.
+     * @param countFrames The number of frames in the tile.
+     * @param countBins The number of frequency bins in each frame.
+     */
+    public SpectrogramTile(int firstFrame,
+                           int countFrames,
+                           int countBins) {
+        if (firstFrame < 0 ||
+            countFrames < 0 ||
+            countBins < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.firstFrame = firstFrame;
+        this.countFrames = countFrames;
+        this.countBins = countBins;
+        this.values = new float[countFrames * countBins];
+    }
+
+    /**
+     * Get the index of the first frame in the tile.
+     * @return The index of the frame in the whole spectrogram.
+     */
+    public int getFirstFrame() {
+        return firstFrame;
+    }
+
+    /**
+     * Get the number of frames in the tile.
+     * @return The number of frames (rows).
+     */
+    public int getNumberOfFrames() {
+        return countFrames;
+    }
+
+    /**
+     * Get the number of frequency bins in each frame.
+     * @return The number of bins (columns).
+     */
+    public int getNumberOfBins() {
+        return countBins;
+    }
+
+    /**
+     * Get the power of one bin in one frame.
+     * @param frame The index of the frame, relative to the tile.
+     * @param bin The index of the frequency bin.
+     * @return The power, in decibels.
+     */
+    public float getValue(int frame,
+                          int bin) {
+        return values[frame * countBins + bin];
+    }
+
+    /**
+     * Get a view on the content of the tile, stored row by row.
+     * @return The internal array.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    /**
+     * Get an estimate of the memory that is used by this tile.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage() {
+        return 32 + 4 * (long) values.length;
+    }
+
+    /**
+     * Encode the tile as a binary buffer. The buffer starts with 4
+     * big-endian 32-bit integers (the total number of frames in the
+     * spectrogram, the index of the first frame of the tile, the
+     * number of frames in the tile and the number of bins), followed
+     * by the big-endian float32 values, row by row.
+     * @param totalFrames The total number of frames in the spectrogram.
+     * @return The encoded tile.
+     */
+    public byte[] encode(int totalFrames) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 4 * values.length);
+        buffer.putInt(totalFrames);
+        buffer.putInt(firstFrame);
+        buffer.putInt(countFrames);
+        buffer.putInt(countBins);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.function.Supplier;
+
+
+/**
+ * Working buffer of an FFT plan, private to each thread. The plans
+ * are cached (cf. "FFTPlanCache") and shared by all the worker
+ * threads of "ParallelLoop", so the buffers that the threads keep
+ * between two calls must remain small, whatever the size of the
+ * cached plans. Only the buffers whose size is below
+ * "MAX_RETAINED_BYTES" are kept by each thread. Larger buffers are
+ * allocated by each call to "get()", which is negligible in front of
+ * the "O(N log(N))" transform that uses them.
+ *
+ * @param <T> The type of the buffer.
+ */
+public final class ThreadScratch<T> {
+    /**
+     * Maximum size of a buffer that is kept by each thread, in bytes.
+     */
+    public static final long MAX_RETAINED_BYTES = 256L * 1024L;
+
+    private final Supplier<T> factory;
+    private final ThreadLocal<T> retained;  // `null` if the buffer is too large
+
+    /**
+     * Create a working buffer.
+     * @param bytes The size of the buffer, in bytes.
+     * @param factory The function that allocates the buffer.
+     */
+    public ThreadScratch(long bytes,
+                         Supplier<T> factory) {
+        this.factory = factory;
+        this.retained = (bytes <= MAX_RETAINED_BYTES ? ThreadLocal.withInitial(factory) : null);
+    }
+
+    /**
+     * Get the working buffer of the calling thread. Its content is
+     * undefined.
+     * @return The buffer.
+     */
+    public T get() {
+        return (retained == null ? factory.get() : retained.get());
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Estimation of the power spectral density using Welch's method: The
+ * signal is split into overlapping segments of fixed length, each
+ * segment is tapered by a window function, and the periodograms of
+ * the segments are averaged. This reduces the variance of the
+ * estimate, and the cost only depends on the length of the segments
+ * (not on the length of the recording) for each FFT.
+ *
+ * The segments are transformed in parallel on the "ParallelLoop"
+ * pool, using one shared real FFT plan.
+ */
+public class WelchPSD {
+    /**
+     * Default number of samples in each segment.
+     */
+    public static final int DEFAULT_SEGMENT_LENGTH = 1024;
+
+    private WelchPSD() {
+    }
+
+    /**
+     * Get the number of segments that fit in a signal.
+     * @param length The number of samples in the signal.
+     * @param segmentLength The number of samples in each segment.
+     * @param overlap The number of samples shared by two successive segments.
+     * @return The number of segments.
+     */
+    public static int getNumberOfSegments(int length,
+                                          int segmentLength,
+                                          int overlap) {
+        if (length < segmentLength) {
+            return 0;
+        } else {
+            return 1 + (length - segmentLength) / (segmentLength - overlap);
+        }
+    }
+
+    /**
+     * Estimate the power spectral density of a real signal. The
+     * normalization is the same as in "App.computePowerSpectrum()"
+     * (i.e. by "T/N" for a rectangular window), generalized to "T/U",
+     * where "U" is the energy of the window.
+     *
+     * @param samples The samples of the signal.
+     * @param length The number of samples to be considered.
+     * @param samplingFrequency The sampling frequency of the signal.
+     * @param segmentLength The number of samples in each segment
+     * (this is also the size of the FFT).
+     * @param overlap The number of samples shared by two successive
+     * segments (typically half the segment length).
+     * @param window The window function.
+     * @return The "segmentLength/2+1" first values of the power
+     * spectral density, at frequencies "k * Fs / segmentLength".
+     */
+    public static double[] compute(final double[] samples,
+                                   int length,
+                                   double samplingFrequency,
+                                   final int segmentLength,
+                                   int overlap,
+                                   WindowFunction window) {
+        if (segmentLength <= 0 ||
+            overlap < 0 ||
+            overlap >= segmentLength ||
+            length < segmentLength ||
+            samples.length < length ||
+            samplingFrequency <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        final RealFFTPlan plan = FFTPlanCache.getRealPlan(segmentLength);
+        final int step = segmentLength - overlap;
+        final int countSegments = getNumberOfSegments(length, segmentLength, overlap);
+        final int countBins = plan.getNumberOfBins();
+
+        final double[] coefficients = window.getCoefficients(segmentLength);
+        double energy = 0;
+        for (double c : coefficients) {
+            energy += c * c;
+        }
+
+        final double[] psd = new double[countBins];
+
+        ParallelLoop.run(countSegments, (from, to) -> {
+            // Accumulate in a buffer that is private to this range of segments
+            double[] accumulator = new double[countBins];
+            double[] buffer = plan.getScratchSamples();
+            SignalBuffer spectrum = plan.getScratchSpectrum();
+            double[] real = spectrum.getReal();
+            double[] imag = spectrum.getImag();
+
+            for (int segment = from; segment < to; segment++) {
+                final int start = segment * step;
+                for (int i = 0; i < segmentLength; i++) {
+                    buffer[i] = samples[start + i] * coefficients[i];
+                }
+
+                plan.forward(buffer, real, imag);
+
+                for (int k = 0; k < countBins; k++) {
+                    accumulator[k] += real[k] * real[k] + imag[k] * imag[k];
+                }
+            }
+
+            synchronized (psd) {
+                for (int k = 0; k < countBins; k++) {
+                    psd[k] += accumulator[k];
+                }
+            }
+        });
+
+        final double normalizationFactor = 1.0 / (samplingFrequency * energy * countSegments);
+        for (int k = 0; k < countBins; k++) {
+            psd[k] *= normalizationFactor;
+        }
+
+        return psd;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Window functions that taper the segments of a signal before their
+ * Fourier transform, in order to reduce the spectral leakage. The
+ * windows are periodic (i.e. "DFT-even"), as is customary for
+ * spectral analysis.
+ */
+public enum WindowFunction {
+    /**
+     * No tapering.
+     */
+    RECTANGULAR,
+
+    /**
+     * Hann window: "0.5 - 0.5 * cos(2*pi*n/L)".
+     */
+    HANN,
+
+    /**
+     * Hamming window: "0.54 - 0.46 * cos(2*pi*n/L)".
+     */
+    HAMMING,
+
+    /**
+     * Blackman window: "0.42 - 0.5 * cos(2*pi*n/L) + 0.08 * cos(4*pi*n/L)".
+     */
+    BLACKMAN;
+
+    /**
+     * Get the value of the window at some position.
+     * @param n The position, between 0 and "length-1".
+     * @param length The length of the window.
+     * @return The coefficient.
+     */
+    public double getCoefficient(int n,
+                                 int length) {
+        final double theta = 2.0 * Math.PI * (double) n / (double) length;
+        switch (this) {
+            case HANN:
+                return 0.5 - 0.5 * Math.cos(theta);
+            case HAMMING:
+                return 0.54 - 0.46 * Math.cos(theta);
+            case BLACKMAN:
+                return 0.42 - 0.5 * Math.cos(theta) + 0.08 * Math.cos(2.0 * theta);
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Compute all the coefficients of the window.
+     * @param length The length of the window.
+     * @return The coefficients.
+     */
+    public double[] getCoefficients(int length) {
+        double[] coefficients = new double[length];
+        for (int n = 0; n < length; n++) {
+            coefficients[n] = getCoefficient(n, length);
+        }
+        return coefficients;
+    }
+
+    /**
+     * Parse the name of a window function, as used in the REST API:
+     * "rectangular", "hann", "hamming" or "blackman".
+     * @param name The name.
+     * @return The window function.
+     */
+    public static WindowFunction parse(String name) {
+        switch (name) {
+            case "rectangular":
+                return RECTANGULAR;
+            case "hann":
+                return HANN;
+            case "hamming":
+                return HAMMING;
+            case "blackman":
+                return BLACKMAN;
+            default:
+                throw new IllegalArgumentException("Unknown window function: " + name);
+        }
+    }
+}
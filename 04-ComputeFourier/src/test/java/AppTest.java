@@ -5,15 +5,38 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import be.uclouvain.ChannelMatrix;
+import be.uclouvain.ComplexFFT;
 import be.uclouvain.ComplexNumber;
+import be.uclouvain.CrossSpectralMatrix;
+import be.uclouvain.DPSSTaperCache;
+import be.uclouvain.DPSSTapers;
+import be.uclouvain.EDFTimeSeries;
+import be.uclouvain.FFTPlan;
+import be.uclouvain.FFTPlanCache;
+import be.uclouvain.FloatRealFFTPlan;
+import be.uclouvain.FrequencyBand;
+import be.uclouvain.Goertzel;
+import be.uclouvain.MixedRadixFFTPlan;
 import be.uclouvain.HttpToolbox;
 import be.uclouvain.MockHttpExchange;
+import be.uclouvain.MultitaperPSD;
+import be.uclouvain.Padding;
+import be.uclouvain.ParallelLoop;
+import be.uclouvain.RealFFTPlan;
 import be.uclouvain.Signal;
+import be.uclouvain.SignalBuffer;
+import be.uclouvain.SlidingDFT;
+import be.uclouvain.SpectrogramCache;
+import be.uclouvain.WelchPSD;
+import be.uclouvain.WindowFunction;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
 
 @Grade
 @Allow("all")  // Allows the use of "java.lang.Thread" and "java.lang.ClassLoader" for dcm4che/HttpToolbox
@@ -253,6 +276,181 @@ public class AppTest {
         assertEquals(1.0, (double) (fft1 * 8) * Math.log(8 * N) / ((double) fft3 * Math.log(N)), 0.01);
     }
 
+    @Test
+    @Grade(value = 1)
+    public void testFFTPlan() {
+        for (int n = 2; n <= 1024; n *= 2) {
+            Signal source = new Signal(n);
+            for (int i = 0; i < n; i++) {
+                source.setValue(i, Math.cos(i * 0.3) + i % 7, Math.sin(i * 1.1));
+            }
+
+            FFTPlan plan = FFTPlanCache.getPlan(n);
+            assertEquals(n, plan.getSize());
+            SignalBuffer buffer = source.getBuffer().copy(n);
+
+            // The engine counts the items read by its butterflies: "N/2"
+            // butterflies reading 2 items, in each of the "log2(N)" passes
+            Signal.resetCounters();
+            plan.forward(buffer.getReal(), buffer.getImag());
+            assertEquals(n * Integer.numberOfTrailingZeros(n), Signal.getCountReads());
+
+            Signal expected = App.computeDFT(source);
+            for (int k = 0; k < n; k++) {
+                assertEquals(expected.getBuffer().getReal(k), buffer.getReal(k), 0.000001);
+                assertEquals(expected.getBuffer().getImag(k), buffer.getImag(k), 0.000001);
+            }
+
+            plan.inverse(buffer.getReal(), buffer.getImag());
+            compareSignals(source, new Signal(buffer));
+        }
+
+        try {
+            new FFTPlan(12);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // "12 = 4 * 3": Each of the 2 stages reads the 12 items once
+        SignalBuffer buffer = new SignalBuffer(12);
+        Signal.resetCounters();
+        new MixedRadixFFTPlan(12).forward(buffer.getReal(), buffer.getImag());
+        assertEquals(24, Signal.getCountReads());
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testSignalBuffer() {
+        SignalBuffer buffer = new SignalBuffer(5);
+        assertEquals(5, buffer.getLength());
+        for (int i = 0; i < 5; i++) {
+            buffer.set(i, i, -i);
+        }
+
+        // "getValues()" copies a range, and the imaginary part is optional
+        double[] re = new double[4];
+        double[] im = new double[4];
+        buffer.getValues(1, re, im, 1, 3);
+        assertEquals(0, re[0], 0);
+        assertEquals(3, re[3], 0);
+        assertEquals(-2, im[2], 0);
+        buffer.getValues(2, re, null, 0, 2);
+        assertEquals(3, re[1], 0);
+
+        // "setValues()" without an imaginary part stores real numbers
+        buffer.setValues(3, new double[] { 10, 11 }, null, 0, 2);
+        assertEquals(11, buffer.getReal(4), 0);
+        assertEquals(0, buffer.getImag(4), 0);
+        assertEquals(-2, buffer.getImag(2), 0);
+
+        // "copy()" is deep, and can truncate or pad
+        SignalBuffer padded = buffer.copy(7);
+        SignalBuffer truncated = buffer.copy(2);
+        buffer.set(1, 100, 100);
+        assertEquals(7, padded.getLength());
+        assertEquals(1, padded.getReal(1), 0);
+        assertEquals(0, padded.getReal(6), 0);
+        assertEquals(2, truncated.getLength());
+        assertEquals(-1, truncated.getImag(1), 0);
+
+        buffer.clear(1, 3);
+        assertEquals(0, buffer.getReal(1), 0);
+        assertEquals(0, buffer.getImag(2), 0);
+        assertEquals(10, buffer.getReal(3), 0);
+
+        SignalBuffer real = SignalBuffer.fromReal(new double[] { 1, 2 }, 4);
+        assertEquals(4, real.getLength());
+        assertEquals(2, real.getReal(1), 0);
+        assertEquals(0, real.getReal(3), 0);
+
+        try {
+            SignalBuffer.fromReal(new double[] { 1, 2 }, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        try {
+            new SignalBuffer(new double[2], new double[3]);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // "Signal" is an adapter that shares the buffer, and copies the complex numbers
+        Signal signal = new Signal(buffer);
+        assertTrue(signal.getBuffer() == buffer);
+        ComplexNumber z = new ComplexNumber(7, 8);
+        signal.setValue(0, z);
+        assertEquals(7, buffer.getReal(0), 0);
+        assertEquals(8, buffer.getImag(0), 0);
+
+        Signal.resetCounters();
+        ComplexNumber a = signal.getValue(0);
+        ComplexNumber b = signal.getValue(0);
+        assertEquals(2, Signal.getCountReads());
+        assertTrue(a != z);
+        assertTrue(a != b);
+        assertEquals(7, a.getReal(), 0);
+        assertEquals(8, b.getImag(), 0);
+
+        buffer.set(0, 1, 2);
+        assertEquals(7, a.getReal(), 0);  // Not a view on the buffer
+        assertEquals(1, signal.getValue(0).getReal(), 0);
+
+        signal.setValue(4, 5);
+        assertEquals(5, buffer.getReal(4), 0);
+        assertEquals(0, buffer.getImag(4), 0);
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testParallelFFT() {
+        // Force the four-step decomposition on small sizes, with both
+        // even and odd numbers of bits, on a pool with several threads
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelLoop.setPool(pool);
+        try {
+            for (int n = 16; n <= 8192; n *= 2) {
+                SignalBuffer source = new SignalBuffer(n);
+                for (int i = 0; i < n; i++) {
+                    source.set(i, Math.cos(i * 0.3) + i % 7, Math.sin(i * 1.1));
+                }
+
+                FFTPlan plan = FFTPlanCache.getPlan(n);
+                SignalBuffer serial = source.copy(n);
+                plan.forward(serial.getReal(), serial.getImag());
+
+                FFTPlan.setParallelThreshold(16);
+                SignalBuffer parallel = source.copy(n);
+                plan.forward(parallel.getReal(), parallel.getImag());
+                for (int k = 0; k < n; k++) {
+                    assertEquals(serial.getReal(k), parallel.getReal(k), 0.000001 * n);
+                    assertEquals(serial.getImag(k), parallel.getImag(k), 0.000001 * n);
+                }
+
+                plan.inverse(parallel.getReal(), parallel.getImag());
+                for (int i = 0; i < n; i++) {
+                    assertEquals(source.getReal(i), parallel.getReal(i), 0.000001);
+                    assertEquals(source.getImag(i), parallel.getImag(i), 0.000001);
+                }
+
+                // The real-valued transforms go through the complex plan of size "N/2"
+                SignalBuffer spectrum = new SignalBuffer(n / 2 + 1);
+                FFTPlanCache.getRealPlan(n).forward(source.getReal().clone(), spectrum.getReal(), spectrum.getImag());
+                FFTPlan.setParallelThreshold(FFTPlan.DEFAULT_PARALLEL_THRESHOLD);
+                SignalBuffer expected = new SignalBuffer(n / 2 + 1);
+                FFTPlanCache.getRealPlan(n).forward(source.getReal().clone(), expected.getReal(), expected.getImag());
+                for (int k = 0; k <= n / 2; k++) {
+                    assertEquals(expected.getReal(k), spectrum.getReal(k), 0.000001 * n);
+                    assertEquals(expected.getImag(k), spectrum.getImag(k), 0.000001 * n);
+                }
+            }
+        } finally {
+            FFTPlan.setParallelThreshold(FFTPlan.DEFAULT_PARALLEL_THRESHOLD);
+            ParallelLoop.setPool(ForkJoinPool.commonPool());
+            pool.shutdown();
+        }
+    }
+
     @Test
     @Grade(value = 1)
     public void testDC() {
@@ -300,6 +498,98 @@ public class AppTest {
         }
     }
 
+    @Test
+    @Grade(value = 1)
+    public void testRealFFT() {
+        Signal source = getTestSource();
+        Signal fourier = getTestFourier();
+        RealFFTPlan plan = new RealFFTPlan(32);
+        assertEquals(17, plan.getNumberOfBins());
+
+        double[] samples = source.getBuffer().getReal().clone();
+        double[] real = new double[17];
+        double[] imag = new double[17];
+        plan.forward(samples, real, imag);
+        for (int k = 0; k < 17; k++) {
+            assertEquals(fourier.getBuffer().getReal(k), real[k], 0.0000001);
+            assertEquals(fourier.getBuffer().getImag(k), imag[k], 0.0000001);
+        }
+
+        double[] inverse = new double[32];
+        plan.inverse(real, imag, inverse);
+        for (int i = 0; i < 32; i++) {
+            assertEquals(samples[i], inverse[i], 0.0000001);
+        }
+
+        for (int n = 1; n <= 16; n *= 2) {
+            plan = new RealFFTPlan(n);
+            double[] x = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = i * i - 3;
+            }
+            double[] re = new double[n / 2 + 1];
+            double[] im = new double[n / 2 + 1];
+            plan.forward(x, re, im);
+            Signal expected = App.computeDFT(new Signal(SignalBuffer.fromReal(x, n)));
+            for (int k = 0; k <= n / 2; k++) {
+                assertEquals(expected.getBuffer().getReal(k), re[k], 0.0000001);
+                assertEquals(expected.getBuffer().getImag(k), im[k], 0.0000001);
+            }
+            double[] y = new double[n];
+            plan.inverse(re, im, y);
+            for (int i = 0; i < n; i++) {
+                assertEquals(x[i], y[i], 0.0000001);
+            }
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testAnyLengthFFT() {
+        assertEquals(1, MixedRadixFFTPlan.nextSmoothSize(1));
+        assertEquals(7 + 1, MixedRadixFFTPlan.nextSmoothSize(7));
+        assertEquals(135, MixedRadixFFTPlan.nextSmoothSize(129));
+        assertEquals(65610, MixedRadixFFTPlan.nextSmoothSize(65537));
+
+        for (int n = 1; n <= 64; n++) {
+            Signal source = new Signal(n);
+            for (int i = 0; i < n; i++) {
+                source.setValue(i, Math.cos(i * 0.7) + i, Math.sin(i * 1.3));
+            }
+
+            ComplexFFT plan = FFTPlanCache.getAnyLengthPlan(n);
+            assertEquals(n, plan.getSize());
+            SignalBuffer buffer = source.getBuffer().copy(n);
+            plan.forward(buffer.getReal(), buffer.getImag());
+
+            Signal expected = App.computeDFT(source);
+            for (int k = 0; k < n; k++) {
+                assertEquals(expected.getBuffer().getReal(k), buffer.getReal(k), 0.000001);
+                assertEquals(expected.getBuffer().getImag(k), buffer.getImag(k), 0.000001);
+            }
+
+            plan.inverse(buffer.getReal(), buffer.getImag());
+            compareSignals(source, new Signal(buffer));
+
+            RealFFTPlan real = FFTPlanCache.getRealPlan(n);
+            double[] re = new double[n / 2 + 1];
+            double[] im = new double[n / 2 + 1];
+            double[] x = source.getBuffer().getReal().clone();
+            real.forward(x, re, im);
+            expected = App.computeDFT(new Signal(SignalBuffer.fromReal(x, n)));
+            for (int k = 0; k <= n / 2; k++) {
+                assertEquals(expected.getBuffer().getReal(k), re[k], 0.000001);
+                assertEquals(expected.getBuffer().getImag(k), im[k], 0.000001);
+            }
+
+            double[] y = new double[n];
+            real.inverse(re, im, y);
+            for (int i = 0; i < n; i++) {
+                assertEquals(x[i], y[i], 0.000001);
+            }
+        }
+    }
+
     static void testSinglePeak(JSONArray a,
                                 double frequency) {
         // Expected frequencies are from 0Hz to 100Hz, as the sampling frequency is 200Hz for channel 6 ("sine 8 Hz")
@@ -349,4 +639,507 @@ public class AppTest {
         assertEquals(65537, a.length());
         testSinglePeak(a, 1.0);
     }
+
+    @Test
+    @Grade(value = 1)
+    public void testPowerSpectra() throws IOException, URISyntaxException {
+        AppLauncher app = new AppLauncher();
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectra", MockHttpExchange.stringToBytes("{}")));
+
+        final byte[] edf = HttpToolbox.readResource("/test_generator_2.edf");
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", edf);
+
+        JSONObject spectra = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-power-spectra", MockHttpExchange.stringToBytes("{}")));
+        assertEquals(65537, spectra.getJSONArray("sine 8 Hz").length());
+        testSinglePeak(spectra.getJSONArray("sine 8 Hz"), 8.0);
+        testSinglePeak(spectra.getJSONArray("sine 1 Hz"), 1.0);
+
+        JSONArray a = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                app, "/compute-power-spectrum", MockHttpExchange.stringToBytes("{\"channel\":6}")));
+        JSONArray b = spectra.getJSONArray("sine 8 Hz");
+        for (int i = 0; i < a.length(); i++) {
+            assertEquals(a.getJSONObject(i).getDouble("y"), b.getJSONObject(i).getDouble("y"), 0.0000001);
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testResampledPowerSpectrum() throws IOException, URISyntaxException {
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+
+        // Channel 6 is sampled at 200Hz: Downsample it to 50Hz
+        JSONArray a = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                app, "/compute-power-spectrum", MockHttpExchange.stringToBytes("{\"channel\":6,\"targetRate\":50}")));
+        assertEquals(25.0, a.getJSONObject(a.length() - 1).getDouble("x"), 0.000001);
+
+        int peak = 0;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.getJSONObject(i).getDouble("y") > a.getJSONObject(peak).getDouble("y")) {
+                peak = i;
+            }
+        }
+        assertEquals(8.0, a.getJSONObject(peak).getDouble("x"), 0.01);
+
+        // Rates above the sampling frequency leave the channel untouched
+        a = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                app, "/compute-power-spectrum", MockHttpExchange.stringToBytes("{\"channel\":6,\"targetRate\":1000}")));
+        assertEquals(65537, a.length());
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"targetRate\":0}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"targetRate\":\"nope\"}")));
+
+        // The other estimators don't resample the channel
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"targetRate\":50,\"method\":\"welch\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"targetRate\":50,\"method\":\"multitaper\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"padding\":\"none\",\"method\":\"welch\"}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testSinglePrecision() throws IOException, URISyntaxException {
+        Signal source = getTestSource();
+        Signal fourier = getTestFourier();
+        FloatRealFFTPlan plan = FFTPlanCache.getFloatRealPlan(32);
+        assertEquals(17, plan.getNumberOfBins());
+
+        float[] samples = new float[32];
+        for (int i = 0; i < 32; i++) {
+            samples[i] = (float) source.getBuffer().getReal(i);
+        }
+        float[] real = new float[17];
+        float[] imag = new float[17];
+        plan.forward(samples, real, imag);
+        for (int k = 0; k < 17; k++) {
+            assertEquals(fourier.getBuffer().getReal(k), real[k], 0.0001);
+            assertEquals(fourier.getBuffer().getImag(k), imag[k], 0.0001);
+        }
+
+        float[] inverse = new float[32];
+        plan.inverse(real, imag, inverse);
+        for (int i = 0; i < 32; i++) {
+            assertEquals(samples[i], inverse[i], 0.00001);
+        }
+
+        // Compare with the double-precision periodogram on the 8 channels
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        for (int channel = 0; channel < 8; channel++) {
+            JSONArray a = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                    app, "/compute-power-spectrum", MockHttpExchange.stringToBytes("{\"channel\":" + channel + "}")));
+            JSONArray b = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                    app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                        "{\"channel\":" + channel + ",\"precision\":\"float32\"}")));
+            assertEquals(a.length(), b.length());
+
+            double peak = 0;
+            for (int i = 0; i < a.length(); i++) {
+                peak = Math.max(peak, a.getJSONObject(i).getDouble("y"));
+            }
+            for (int i = 0; i < a.length(); i++) {
+                assertEquals(a.getJSONObject(i).getDouble("x"), b.getJSONObject(i).getDouble("x"), 0.000001);
+                assertEquals(a.getJSONObject(i).getDouble("y"), b.getJSONObject(i).getDouble("y"), peak * 0.000001);
+            }
+        }
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"precision\":\"float32\",\"padding\":\"smooth\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"precision\":\"float32\",\"method\":\"welch\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"precision\":\"half\"}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testWelch() throws IOException, URISyntaxException {
+        // Sine of amplitude 2 at 10Hz, sampled at 100Hz: Its power is 2 (i.e. "2^2/2"),
+        // the half of which lies in the positive frequencies
+        final double[] samples = new double[10000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 2.0 * Math.sin(2.0 * Math.PI * 10.0 * i / 100.0);
+        }
+
+        assertEquals(99, WelchPSD.getNumberOfSegments(10000, 200, 100));
+
+        for (WindowFunction window : WindowFunction.values()) {
+            double[] psd = WelchPSD.compute(samples, samples.length, 100, 200, 100, window);
+            assertEquals(101, psd.length);
+
+            int peak = 0;
+            double power = 0;
+            for (int k = 0; k < psd.length; k++) {
+                if (psd[k] > psd[peak]) {
+                    peak = k;
+                }
+                power += psd[k] * 100.0 / 200.0;
+            }
+            assertEquals(20, peak);  // 10Hz
+            assertEquals(1.0, power, 0.01);
+        }
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        JSONArray a = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"method\":\"welch\",\"segmentLength\":400,\"window\":\"blackman\"}")));
+        assertEquals(201, a.length());
+        for (int i = 0; i < a.length(); i++) {
+            double x = a.getJSONObject(i).getDouble("x");
+            assertEquals(0.5 * i, x, 0.000001);
+            if (Math.abs(x - 8.0) >= 2) {
+                assertTrue(a.getJSONObject(i).getDouble("y") < 0.001 * a.getJSONObject(16).getDouble("y"));
+            }
+        }
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"method\":\"welch\",\"window\":\"nope\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"method\":\"nope\"}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testSpectrogram() throws IOException, URISyntaxException {
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+
+        final String request = "{\"channel\":6,\"windowLength\":400,\"hop\":200,\"tile\":1}";
+        ByteBuffer tile = ByteBuffer.wrap(MockHttpExchange.executePostAsBytes(
+                app, "/compute-spectrogram", MockHttpExchange.stringToBytes(request)));
+        assertEquals(599, tile.getInt());  // "1 + (120000 - 400) / 200" frames in the channel
+        assertEquals(256, tile.getInt());
+        assertEquals(256, tile.getInt());
+        assertEquals(201, tile.getInt());
+        assertEquals(16 + 4 * 256 * 201, tile.capacity());
+
+        for (int frame = 0; frame < 256; frame++) {
+            int peak = 0;
+            float peakValue = Float.NEGATIVE_INFINITY;
+            for (int bin = 0; bin < 201; bin++) {
+                float value = tile.getFloat();
+                if (value > peakValue) {
+                    peak = bin;
+                    peakValue = value;
+                }
+            }
+            assertEquals(16, peak);  // 8Hz with a resolution of 0.5Hz
+        }
+
+        assertEquals(1, SpectrogramCache.getCountMisses());
+        MockHttpExchange.executePostAsBytes(app, "/compute-spectrogram", MockHttpExchange.stringToBytes(request));
+        assertEquals(1, SpectrogramCache.getCountMisses());
+        assertEquals(1, SpectrogramCache.getCountHits());
+
+        tile = ByteBuffer.wrap(MockHttpExchange.executePostAsBytes(
+                app, "/compute-spectrogram", MockHttpExchange.stringToBytes("{\"channel\":6,\"windowLength\":400,\"hop\":200,\"tile\":2}")));
+        tile.getInt();
+        assertEquals(512, tile.getInt());
+        assertEquals(87, tile.getInt());  // Last, partial tile
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-spectrogram", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"windowLength\":400,\"hop\":200,\"tile\":3}")));
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/compute-spectrogram", MockHttpExchange.stringToBytes(
+                    "{\"channel\":66}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testGoertzel() throws IOException, URISyntaxException {
+        // The Goertzel algorithm gives the same power as the FFT on the DFT bins
+        final double[] samples = new double[64];
+        Signal signal = new Signal(64);
+        for (int i = 0; i < 64; i++) {
+            samples[i] = Math.cos(0.3 * i) + 0.5 * Math.sin(1.7 * i + 0.2);
+            signal.setValue(i, samples[i]);
+        }
+        Signal fourier = App.computeFFT(signal);
+        for (int k = 0; k < 64; k++) {
+            ComplexNumber c = fourier.getValue(k);
+            assertEquals(c.getReal() * c.getReal() + c.getImag() * c.getImag(),
+                         Goertzel.computePower(samples, 0, 64, k / 64.0), 0.000001);
+        }
+
+        // A sine of amplitude 3 at 10Hz only has power in the alpha band
+        final double[] sine = new double[1000];
+        for (int i = 0; i < sine.length; i++) {
+            sine[i] = 3.0 * Math.sin(2.0 * Math.PI * 10.0 * i / 250.0);
+        }
+        for (FrequencyBand band : FrequencyBand.getClinicalBands()) {
+            double power = Goertzel.computeBandPower(sine, 0, 1000, 250, band);
+            assertEquals(band.getName().equals("alpha") ? 4.5 : 0, power, 0.000001);
+        }
+
+        // The narrow bands (Goertzel on each bin) and the wide band (one FFT) are consistent
+        final double[] noise = new double[1000];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = Math.sin(0.37 * i) + Math.cos(2.1 * i * i / 1000.0) + (i % 13) / 13.0;
+        }
+        FrequencyBand[] narrow = new FrequencyBand[5];
+        for (int i = 0; i < 5; i++) {
+            narrow[i] = new FrequencyBand("narrow", 8 + i, 9 + i);  // 4 bins
+        }
+        double[] narrowPowers = new double[5];
+        Goertzel.computeBandPowers(noise, 0, 1000, 250, narrow, narrowPowers);
+        double sum = 0;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Goertzel.computeBandPower(noise, 0, 1000, 250, narrow[i]), narrowPowers[i], 0.000001);
+            sum += narrowPowers[i];
+        }
+        assertTrue(sum > 0.001);
+        assertEquals(sum, Goertzel.computeBandPower(noise, 0, 1000, 250, new FrequencyBand("alpha", 8, 13)), 0.000001);
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        JSONObject response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-band-power", MockHttpExchange.stringToBytes("{\"channels\":[5,6],\"epochDuration\":4}")));
+        JSONObject powers = response.getJSONObject("sine 8 Hz");
+        assertEquals(150, powers.getJSONArray("epochs").length());  // 600 seconds
+        JSONObject average = powers.getJSONObject("average");
+        assertTrue(average.getDouble("alpha") > 1000 * average.getDouble("theta"));
+        assertTrue(average.getDouble("alpha") > 1000 * average.getDouble("beta"));
+        average = response.getJSONObject("sine 1 Hz").getJSONObject("average");
+        assertTrue(average.getDouble("delta") > 1000 * average.getDouble("alpha"));
+
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/compute-band-power", MockHttpExchange.stringToBytes(
+                    "{\"channels\":[66]}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-band-power", MockHttpExchange.stringToBytes(
+                    "{\"channels\":[5,6,5]}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testCoherence() throws IOException, URISyntaxException {
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        final int noise = edf.lookupChannelIndex("noise");
+        final int sine = edf.lookupChannelIndex("sine 8 Hz");
+
+        CrossSpectralMatrix matrix = App.computeCrossSpectralMatrix(edf, new int[] { noise, sine, sine }, 256, WindowFunction.HANN);
+        assertEquals(3, matrix.getNumberOfChannels());
+        assertEquals(129, matrix.getNumberOfBins());
+        assertEquals(5, matrix.getPairIndex(2, 2));
+
+        try {
+            // 3 rows of 2^30 samples cannot be indexed by an "int"
+            ChannelMatrix.decode(edf, new int[] { noise, sine, sine }, 1 << 30);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // 5050 pairs of 4097 bins exceed the size of the accumulators
+        final int[] many = new int[100];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = sine;
+        }
+        ChannelMatrix first = ChannelMatrix.decodeFirstSamples(edf, many, 8192);
+        assertEquals(8192, first.getRowLength());
+        assertEquals(8192, first.getNumberOfSamples(99));
+        assertEquals(edf.getChannel(sine).getPhysicalValue(edf.getDigitalValue(sine, 8191)),
+                     first.getData()[first.getRowOffset(99) + 8191], 0.000001);
+        try {
+            CrossSpectralMatrix.compute(first, 8192, 200, 8192, 4096, WindowFunction.HANN);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // The diagonal contains the Welch estimate of the power spectral density
+        final double[] samples = new double[edf.getNumberOfSamples(sine)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = edf.getChannel(sine).getPhysicalValue(edf.getDigitalValue(sine, i));
+        }
+        final double[] psd = WelchPSD.compute(samples, samples.length, 200, 256, 128, WindowFunction.HANN);
+        for (int k = 0; k < psd.length; k++) {
+            assertEquals(psd[k], matrix.getReal(1, 1, k), 0.000001 * (1 + psd[k]));
+            assertEquals(0, matrix.getImag(1, 1, k), 0.000001 * (1 + psd[k]));
+            assertEquals(matrix.getImag(0, 1, k), -matrix.getImag(1, 0, k), 0);
+        }
+
+        FrequencyBand alpha = new FrequencyBand("alpha", 8, 13);
+        double[] coherence = matrix.computeCoherence(alpha);
+        assertEquals(6, coherence.length);
+        assertEquals(1, coherence[matrix.getPairIndex(0, 0)], 0.000001);
+        assertEquals(1, coherence[matrix.getPairIndex(1, 2)], 0.000001);
+        assertTrue(coherence[matrix.getPairIndex(0, 1)] < 0.1);
+
+        AppLauncher app = new AppLauncher();
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/compute-coherence", MockHttpExchange.stringToBytes("{}")));
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+
+        JSONObject response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-coherence", MockHttpExchange.stringToBytes("{}")));
+        assertEquals(11, response.getJSONArray("channels").length());
+        assertEquals(5, response.getJSONObject("coherence").length());
+        assertEquals(66, response.getJSONObject("coherence").getJSONArray("alpha").length());
+
+        response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-coherence", MockHttpExchange.stringToBytes(
+                    "{\"channels\":[" + noise + "," + sine + "],\"bands\":[{\"name\":\"alpha\",\"low\":8,\"high\":13}]}")));
+        JSONArray values = response.getJSONObject("coherence").getJSONArray("alpha");
+        assertEquals(3, values.length());
+        assertEquals(coherence[matrix.getPairIndex(0, 1)], values.getDouble(1), 0.0001);
+
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/compute-coherence", MockHttpExchange.stringToBytes(
+                    "{\"channels\":[" + noise + ",66]}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-coherence", MockHttpExchange.stringToBytes(
+                    "{\"channels\":[" + noise + ",11]}")));  // The annotations are sampled at another frequency
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-coherence", MockHttpExchange.stringToBytes(
+                    "{\"channels\":[" + noise + "," + noise + "]}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testMultitaper() throws IOException, URISyntaxException {
+        assertEquals(7, DPSSTapers.getDefaultNumberOfTapers(4));
+
+        // The tapers are orthonormal, and concentrated in "[-W,W]"
+        DPSSTapers tapers = DPSSTapers.create(256, 4, 7);
+        final double w = 4.0 / 256.0;
+        for (int k = 0; k < 7; k++) {
+            for (int j = 0; j <= k; j++) {
+                double dot = 0;
+                for (int n = 0; n < 256; n++) {
+                    dot += tapers.getValue(k, n) * tapers.getValue(j, n);
+                }
+                assertEquals(j == k ? 1 : 0, dot, 0.000001);
+            }
+
+            double concentration = 0;
+            for (int n = 0; n < 256; n++) {
+                for (int m = 0; m < 256; m++) {
+                    double kernel = (n == m ? 2.0 * w : Math.sin(2.0 * Math.PI * w * (n - m)) / (Math.PI * (n - m)));
+                    concentration += tapers.getValue(k, n) * tapers.getValue(k, m) * kernel;
+                }
+            }
+            assertTrue(concentration > 0.9);
+        }
+        assertTrue(tapers.getValue(0, 128) > 0);
+        assertEquals(tapers.getValue(0, 10), tapers.getValue(0, 245), 0.000001);  // Symmetric
+        assertEquals(tapers.getValue(1, 10), -tapers.getValue(1, 245), 0.000001);  // Antisymmetric
+
+        // Sine of amplitude 2 at 10Hz, sampled at 100Hz: Its power is 2, the half of which
+        // lies in the positive frequencies
+        final double[] samples = new double[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 2.0 * Math.sin(2.0 * Math.PI * 10.0 * i / 100.0);
+        }
+
+        DPSSTaperCache.clear();
+        double[] psd = MultitaperPSD.compute(samples, samples.length, 100, 4, 7, Padding.NONE);
+        assertEquals(501, psd.length);
+        assertEquals(1, DPSSTaperCache.getCountMisses());
+        MultitaperPSD.compute(samples, samples.length, 100, 4, 7, Padding.POWER_OF_TWO);
+        assertEquals(1, DPSSTaperCache.getCountHits());
+        assertEquals(1, DPSSTaperCache.getSize());
+
+        // The most recent tapers are kept, even if they exceed the budget
+        try {
+            DPSSTaperCache.setMemoryBudget(1024);
+            assertEquals(1, DPSSTaperCache.getSize());
+            MultitaperPSD.compute(samples, samples.length, 100, 3, 5, Padding.NONE);
+            assertEquals(1, DPSSTaperCache.getSize());
+            MultitaperPSD.compute(samples, samples.length, 100, 3, 5, Padding.NONE);
+            assertEquals(2, DPSSTaperCache.getCountHits());
+        } finally {
+            DPSSTaperCache.setMemoryBudget(DPSSTaperCache.DEFAULT_MEMORY_BUDGET);
+        }
+
+        // At most "2NW" tapers
+        DPSSTapers.create(256, 4, 8);
+        try {
+            DPSSTapers.create(256, 4, 9);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        int peak = 0;
+        double power = 0;
+        for (int k = 0; k < psd.length; k++) {
+            if (psd[k] > psd[peak]) {
+                peak = k;
+            }
+            power += psd[k] * 100.0 / 1000.0;
+        }
+        assertEquals(100, peak);  // 10Hz
+        assertEquals(1.0, power, 0.01);
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        JSONArray a = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"method\":\"multitaper\",\"bandwidth\":2,\"tapers\":3}")));
+        testSinglePeak(a, 8.0);
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"method\":\"multitaper\",\"bandwidth\":-1}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-power-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"channel\":6,\"method\":\"multitaper\",\"bandwidth\":2,\"tapers\":100000000}")));
+        JSONObject statistics = MockHttpExchange.executeGetAsJsonObject(app, "/dpss-cache");
+        assertEquals(DPSSTaperCache.getSize(), statistics.getInt("size"));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testSlidingDFT() throws IOException, URISyntaxException {
+        final double[] samples = new double[500];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Math.sin(0.05 * i * i / 100.0) + 0.1 * (i % 7);
+        }
+
+        // Slide over more than one window, so that the periodic
+        // recomputation is exercised
+        SlidingDFT dft = new SlidingDFT(48);
+        dft.reset(samples, 0);
+        for (int start = 1; start + 48 <= samples.length; start++) {
+            dft.push(samples[start + 47]);
+
+            Signal window = new Signal(48);
+            for (int i = 0; i < 48; i++) {
+                window.setValue(i, samples[start + i]);
+            }
+            SignalBuffer expected = App.computeDFT(window).getBuffer();
+            for (int k = 0; k < dft.getNumberOfBins(); k++) {
+                assertEquals(expected.getReal(k), dft.getReal(k), 0.000001);
+                assertEquals(expected.getImag(k), dft.getImag(k), 0.000001);
+            }
+        }
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+
+        JSONObject first = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-windowed-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"session\":\"a\",\"channel\":6,\"start\":1000,\"windowLength\":400}")));
+        assertEquals(-1, first.getInt("slid"));
+        assertEquals(201, first.getJSONArray("spectrum").length());
+
+        assertEquals(8, new SlidingDFT(400).getMaxSlidingShift());
+        JSONObject second = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-windowed-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"session\":\"a\",\"channel\":6,\"start\":1005,\"windowLength\":400}")));
+        assertEquals(5, second.getInt("slid"));
+
+        JSONObject fresh = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-windowed-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"session\":\"b\",\"channel\":6,\"start\":1005,\"windowLength\":400}")));
+        assertEquals(-1, fresh.getInt("slid"));
+        for (int k = 0; k < 201; k++) {
+            assertEquals(fresh.getJSONArray("spectrum").getJSONObject(k).getDouble("y"),
+                         second.getJSONArray("spectrum").getJSONObject(k).getDouble("y"), 0.000001);
+        }
+
+        // Moving by more than "log2(L)" samples is cheaper with a new FFT
+        JSONObject moved = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/compute-windowed-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"session\":\"a\",\"channel\":6,\"start\":1055,\"windowLength\":400}")));
+        assertEquals(-1, moved.getInt("slid"));
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/compute-windowed-spectrum", MockHttpExchange.stringToBytes(
+                    "{\"session\":\"a\",\"channel\":6,\"start\":119900,\"windowLength\":400}")));
+    }
 }
@@ -1,8 +1,28 @@
+import be.uclouvain.ChannelMatrix;
 import be.uclouvain.ComplexNumber;
 import be.uclouvain.EDFTimeSeries;
+import be.uclouvain.FFTPlan;
+import be.uclouvain.FFTPlanCache;
+import be.uclouvain.FIRDesign;
+import be.uclouvain.FilterMask;
+import be.uclouvain.FilterMaskCache;
+import be.uclouvain.FilterMode;
+import be.uclouvain.FloatRealFFTPlan;
+import be.uclouvain.IIRFilter;
+import be.uclouvain.LiftingDWT;
+import be.uclouvain.OverlapSaveFilter;
+import be.uclouvain.Padding;
+import be.uclouvain.ParallelLoop;
+import be.uclouvain.Precision;
+import be.uclouvain.RealFFTPlan;
 import be.uclouvain.Signal;
+import be.uclouvain.SignalBuffer;
+import be.uclouvain.Wavelet;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 /**
  * Your task is to implement this class, by developing methods that
  * will be deployed as routes in the REST API of the Web application.
@@ -35,34 +55,14 @@ public class App {
             return source;
         }
 
-        if (! (N > 0 && (N & (N - 1)) == 0)) {
+        if (!FFTPlan.isPowerOfTwo(N)) {
             throw new IllegalArgumentException("N must be a power of 2.");
         }
 
-        Signal even_signal = new Signal(N / 2);
-        Signal odd_signal = new Signal(N / 2);
-
-        for (int m = 0; m < N / 2; m++) {
-            even_signal.setValue(m, source.getValue(m * 2));
-            odd_signal.setValue(m, source.getValue(m * 2 + 1));
-        }
-
-        Signal even_fft = computeFFT(even_signal);
-        Signal odd_fft = computeFFT(odd_signal);
-
-        Signal result = new Signal(N);
-        for (int k = 0; k < N / 2; k++) {
-            double theta = -2 * Math.PI * k / N;
-            ComplexNumber exp = exp_img(new ComplexNumber(0, theta));
-
-            ComplexNumber evenValue = even_fft.getValue(k);
-            ComplexNumber oddValue = multi_img(odd_fft.getValue(k), exp);
-
-            result.setValue(k, add_img(evenValue, oddValue));
-            result.setValue(k + N / 2, subs_img(evenValue, oddValue));
-        }
-
-        return result;
+        // Iterative, in-place transform on a copy of the primitive arrays
+        SignalBuffer result = source.getBuffer().copy(N);
+        FFTPlanCache.getPlan(N).forward(result.getReal(), result.getImag());
+        return new Signal(result);
     }
 
     public static ComplexNumber add_img(ComplexNumber a, ComplexNumber b){
@@ -136,24 +136,13 @@ public class App {
     public static Signal computeInverseFFT(Signal source) {
         int N = source.getLength();
 
-        Signal result = new Signal(N);
-
-        for (int i = 0; i < N; i++){
-            result.setValue(i, conjugate(source.getValue(i)));
-        }
-
-        result = computeFFT(result);
-
-        for (int i = 0; i < N; i++){
-            result.setValue(i, divide(result.getValue(i), new ComplexNumber(N, 0)));
-        }
-
-        for (int i = 0; i < N; i++){
-            result.setValue(i, conjugate(result.getValue(i)));
+        if ((N == 0) || (N == 1)) {
+            return source;
         }
 
-        return result;
-
+        SignalBuffer result = source.getBuffer().copy(N);
+        FFTPlanCache.getPlan(N).inverse(result.getReal(), result.getImag());
+        return new Signal(result);
     }
 
 
@@ -218,57 +207,11 @@ public class App {
                                       double highpassCutoff,
                                       boolean hasLowpass,
                                       double lowpassCutoff) {
+        // The ideal masks are cached as intervals of bins in the pass
+        // band, so that repeated requests don't scan the "N" bins again
         Signal result = new Signal(N);
-
-        if (!hasHighpass && !hasLowpass){
-            for (int i = 0; i < N; i++){
-                result.setValue(i, 1);
-            }
-
-            //gain = 100%
-        } else if (hasHighpass && hasLowpass){
-            if (highpassCutoff > lowpassCutoff){
-                //gain = 0
-                for (int i = 0; i < N; i++){
-                    result.setValue(i, 0);
-                }
-            } else {
-                for (int k = 0; k < N; k++){
-
-                    if ((Math.abs(getFrequency(k, N, Fs)) <= lowpassCutoff) && (Math.abs(getFrequency(k, N, Fs)) >= highpassCutoff)) {
-                        result.setValue(k, 1);
-                    } else  {
-                        result.setValue(k, 0);
-                    }
-
-                }
-
-            }
-            // gain = 100 in [highpass,lowpass] and 0 otherwise
-        } else if (hasHighpass){
-
-            for (int k = 0; k < N; k++){
-
-                if (Math.abs(getFrequency(k, N, Fs)) > highpassCutoff) {
-                    result.setValue(k, 1);
-                } else {
-                    result.setValue(k, 0);
-                }
-
-            }
-
-        } else {
-            for (int k = 0; k < N; k++){
-
-                if (Math.abs(getFrequency(k, N, Fs)) < lowpassCutoff) {
-                    result.setValue(k, 1);
-                } else {
-                    result.setValue(k, 0);
-                }
-
-            }
-        }
-
+        FilterMaskCache.getMask(N, Fs, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff)
+            .fill(result.getBuffer().getReal());
         return result;
     }
     
@@ -301,44 +244,659 @@ public class App {
                                 double highpassCutoff,
                                 boolean hasLowpass,
                                 double lowpassCutoff) throws IOException {
+        return filter(timeSeries, channelIndex, hasHighpass, highpassCutoff,
+                      hasLowpass, lowpassCutoff, Padding.POWER_OF_TWO);
+    }
+
+
+    /**
+     * Variant of "filter()" where the length of the zero-padded
+     * buffer can be chosen. With "Padding.SMOOTH" or "Padding.NONE",
+     * the FFT is not restricted to powers of 2, which avoids nearly
+     * doubling the transform size for channels whose length is just
+     * above a power of 2.
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param padding The padding strategy.
+     * @return The filtered EEG channel.
+     * @see #filter(EDFTimeSeries, int, boolean, double, boolean, double)
+     **/
+    public static Signal filter(EDFTimeSeries timeSeries,
+                                int channelIndex,
+                                boolean hasHighpass,
+                                double highpassCutoff,
+                                boolean hasLowpass,
+                                double lowpassCutoff,
+                                Padding padding) throws IOException {
 
         if (timeSeries == null) {
             throw new IllegalArgumentException("timeSeries is null");
         } else if (timeSeries.getNumberOfChannels() < channelIndex) {
             throw new IllegalArgumentException("timeSeries is null");
         } else {
-            EDFTimeSeries.Channel channel = timeSeries.getChannel(channelIndex);
-
             int N = timeSeries.getNumberOfSamples(channelIndex);
 
-            int new_N = N;
-            while (!(new_N > 0 && (new_N & (new_N - 1)) == 0)) {
-                new_N++;
-            }
-            Signal signal = new Signal(new_N);
+            int new_N = padding.getPaddedLength(Math.max(N, 1));
             double frequency = timeSeries.getSamplingFrequency(channelIndex);
-            Signal filter = createFilter(new_N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+            FilterMask mask = FilterMaskCache.getMask(new_N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+
+            // The channel is real-valued, so only the "new_N/2+1"
+            // first bins of its (Hermitian) spectrum are computed and
+            // filtered. The padded signal is processed in the scratch
+            // buffers of the FFT plan, which are reused across calls.
+            RealFFTPlan plan = FFTPlanCache.getRealPlan(new_N);
+            double[] samples = plan.getScratchSamples();
+            timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+            Arrays.fill(samples, N, new_N, 0);
+
+            SignalBuffer spectrum = plan.getScratchSpectrum();
+            double[] spectrumReal = spectrum.getReal();
+            double[] spectrumImag = spectrum.getImag();
+            plan.forward(samples, spectrumReal, spectrumImag);
+
+            // The ideal filter is real-valued, so the bins are either kept or zeroed
+            mask.apply(spectrumReal, spectrumImag, plan.getNumberOfBins());
+
+            plan.inverse(spectrumReal, spectrumImag, samples);
+
+            SignalBuffer final_signal = new SignalBuffer(N);
+            System.arraycopy(samples, 0, final_signal.getReal(), 0, N);
+
+            return new Signal(final_signal);
+        }
+    }
+
+
+    /**
+     * Variant of "filter()" whose FFT can be computed in single
+     * precision (cf. "Precision"). In this case, the padded length must
+     * be a power of 2. The filtered samples are returned as a regular
+     * "Signal", but the working arrays only use half of the memory.
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param padding The padding strategy.
+     * @param precision The precision of the FFT.
+     * @return The filtered EEG channel.
+     * @see #filter(EDFTimeSeries, int, boolean, double, boolean, double, Padding)
+     **/
+    public static Signal filter(EDFTimeSeries timeSeries,
+                                int channelIndex,
+                                boolean hasHighpass,
+                                double highpassCutoff,
+                                boolean hasLowpass,
+                                double lowpassCutoff,
+                                Padding padding,
+                                Precision precision) throws IOException {
+        if (precision == Precision.DOUBLE) {
+            return filter(timeSeries, channelIndex, hasHighpass, highpassCutoff,
+                          hasLowpass, lowpassCutoff, padding);
+        }
+
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("timeSeries is null");
+        } else if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+            throw new IllegalArgumentException("Bad channel index: " + channelIndex);
+        }
+
+        int N = timeSeries.getNumberOfSamples(channelIndex);
+        double frequency = timeSeries.getSamplingFrequency(channelIndex);
+
+        FloatRealFFTPlan plan = getSinglePrecisionPlan(padding.getPaddedLength(Math.max(N, 1)));
+
+        // The physical values are floats, so they are stored without rounding
+        float[] samples = plan.getScratchSamples();
+        timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+
+        return filterSinglePrecision(plan, samples, N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+    }
+
+    /**
+     * Variant of "filter()" applying the ideal filter in single
+     * precision to samples that are already decoded (cf. above).
+     *
+     * @param samples The samples to be filtered (not modified).
+     * @param length The number of samples to be filtered.
+     * @param frequency The sampling frequency of the samples.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param padding The padding strategy.
+     * @return The filtered samples.
+     * @see #filter(EDFTimeSeries, int, boolean, double, boolean, double, Padding, Precision)
+     **/
+    public static Signal filterSinglePrecision(double[] samples,
+                                               int length,
+                                               double frequency,
+                                               boolean hasHighpass,
+                                               double highpassCutoff,
+                                               boolean hasLowpass,
+                                               double lowpassCutoff,
+                                               Padding padding) {
+        if (length < 0 ||
+            length > samples.length ||
+            !(frequency > 0)) {
+            throw new IllegalArgumentException();
+        }
+
+        FloatRealFFTPlan plan = getSinglePrecisionPlan(padding.getPaddedLength(Math.max(length, 1)));
+
+        float[] padded = plan.getScratchSamples();
+        for (int i = 0; i < length; i++) {
+            padded[i] = (float) samples[i];
+        }
+
+        return filterSinglePrecision(plan, padded, length, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+    }
+
+    private static FloatRealFFTPlan getSinglePrecisionPlan(int paddedLength) {
+        if (paddedLength < 2 ||
+            !FFTPlan.isPowerOfTwo(paddedLength)) {
+            throw new IllegalArgumentException("Single precision requires a power-of-two padding");
+        }
+        return FFTPlanCache.getFloatRealPlan(paddedLength);
+    }
+
+    // The "N" first items of "samples" (a scratch array of the plan) must have been filled by the caller
+    private static Signal filterSinglePrecision(FloatRealFFTPlan plan,
+                                                float[] samples,
+                                                int N,
+                                                double frequency,
+                                                boolean hasHighpass,
+                                                double highpassCutoff,
+                                                boolean hasLowpass,
+                                                double lowpassCutoff) {
+        int new_N = plan.getSize();
+        FilterMask mask = FilterMaskCache.getMask(new_N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+
+        Arrays.fill(samples, N, new_N, 0);
+
+        float[] spectrumReal = plan.getScratchReal();
+        float[] spectrumImag = plan.getScratchImag();
+        plan.forward(samples, spectrumReal, spectrumImag);
+        mask.apply(spectrumReal, spectrumImag, plan.getNumberOfBins());
+        plan.inverse(spectrumReal, spectrumImag, samples);
+
+        SignalBuffer final_signal = new SignalBuffer(N);
+        double[] target = final_signal.getReal();
+        for (int i = 0; i < N; i++) {
+            target[i] = samples[i];
+        }
+
+        return new Signal(final_signal);
+    }
+
+
+    /**
+     * Variant of "filter()" where the filtering algorithm can be
+     * chosen. "FilterMode.IDEAL" corresponds to the ideal filter in
+     * the frequency domain. "FilterMode.IIR" and
+     * "FilterMode.ZERO_PHASE" apply a Butterworth filter in the time
+     * domain, in place on the decoded channel: This runs in O(N) and
+     * doesn't need any padded buffer, which makes it suitable for
+     * very long recordings. "FilterMode.FIR" applies a linear-phase
+     * FIR filter by blocks (cf. "filterStream()").
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param mode The filtering algorithm.
+     * @param order The order of the Butterworth or FIR filters
+     * (ignored by "FilterMode.IDEAL").
+     * @param padding The padding strategy (only used by "FilterMode.IDEAL").
+     * @return The filtered EEG channel.
+     * @see IIRFilter
+     **/
+    public static Signal filter(EDFTimeSeries timeSeries,
+                                int channelIndex,
+                                boolean hasHighpass,
+                                double highpassCutoff,
+                                boolean hasLowpass,
+                                double lowpassCutoff,
+                                FilterMode mode,
+                                int order,
+                                Padding padding) throws IOException {
+        if (mode == FilterMode.IDEAL) {
+            return filter(timeSeries, channelIndex, hasHighpass, highpassCutoff,
+                          hasLowpass, lowpassCutoff, padding);
+        }
+
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("timeSeries is null");
+        } else if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+            throw new IllegalArgumentException("Bad channel index: " + channelIndex);
+        }
+
+        int N = timeSeries.getNumberOfSamples(channelIndex);
+        double frequency = timeSeries.getSamplingFrequency(channelIndex);
+
+        if (mode == FilterMode.FIR) {
+            final SignalBuffer result = new SignalBuffer(N);
+            final int[] position = new int[1];
+            filterStream(timeSeries, channelIndex, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff,
+                         order, 0, (samples, offset, count) -> {
+                             System.arraycopy(samples, offset, result.getReal(), position[0], count);
+                             position[0] += count;
+                         });
+            return new Signal(result);
+        }
+
+        IIRFilter iir = IIRFilter.createButterworth(frequency, hasHighpass, highpassCutoff,
+                                                    hasLowpass, lowpassCutoff, order);
+
+        SignalBuffer result = new SignalBuffer(N);
+        double[] samples = result.getReal();
 
-            for (int i = 0; i < N; i++) {
-                signal.setValue(i, channel.getPhysicalValue(timeSeries.getDigitalValue(channelIndex, i)));
+        // The filter runs in place on the decoded channel
+        timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+        if (mode == FilterMode.ZERO_PHASE) {
+            iir.filtfilt(samples, 0, N);
+        } else {
+            iir.filter(samples, 0, N);
+        }
+
+        return new Signal(result);
+    }
+
+    /**
+     * Variant of "filter()" working on samples that are already
+     * decoded, for instance after the channel has been resampled (cf.
+     * "PolyphaseResampler"). The same algorithms as for the EDF
+     * channels are available.
+     *
+     * @param samples The samples to be filtered (not modified).
+     * @param length The number of samples to be filtered.
+     * @param frequency The sampling frequency of the samples.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param mode The filtering algorithm.
+     * @param order The order of the Butterworth or FIR filters
+     * (ignored by "FilterMode.IDEAL").
+     * @param padding The padding strategy (only used by "FilterMode.IDEAL").
+     * @return The filtered samples.
+     * @throws IOException Never thrown, but required by the FIR consumer.
+     * @see #filter(EDFTimeSeries, int, boolean, double, boolean, double, FilterMode, int, Padding)
+     **/
+    public static Signal filter(double[] samples,
+                                int length,
+                                double frequency,
+                                boolean hasHighpass,
+                                double highpassCutoff,
+                                boolean hasLowpass,
+                                double lowpassCutoff,
+                                FilterMode mode,
+                                int order,
+                                Padding padding) throws IOException {
+        if (length < 0 ||
+            length > samples.length ||
+            !(frequency > 0)) {
+            throw new IllegalArgumentException();
+        }
+
+        final SignalBuffer result = new SignalBuffer(length);
+
+        switch (mode) {
+            case IDEAL: {
+                int new_N = padding.getPaddedLength(Math.max(length, 1));
+                FilterMask mask = FilterMaskCache.getMask(new_N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+
+                RealFFTPlan plan = FFTPlanCache.getRealPlan(new_N);
+                double[] padded = plan.getScratchSamples();
+                System.arraycopy(samples, 0, padded, 0, length);
+                Arrays.fill(padded, length, new_N, 0);
+
+                SignalBuffer spectrum = plan.getScratchSpectrum();
+                plan.forward(padded, spectrum.getReal(), spectrum.getImag());
+                mask.apply(spectrum.getReal(), spectrum.getImag(), plan.getNumberOfBins());
+                plan.inverse(spectrum.getReal(), spectrum.getImag(), padded);
+
+                System.arraycopy(padded, 0, result.getReal(), 0, length);
+                break;
             }
-            for (int j = N; j < new_N; j++) {
-                signal.setValue(j, new ComplexNumber(0, 0));
+
+            case FIR: {
+                double[] kernel = FIRDesign.createKernel(frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff, order);
+                final int[] position = new int[1];
+                OverlapSaveFilter fir = new OverlapSaveFilter(
+                    kernel, OverlapSaveFilter.getDefaultFFTSize(kernel.length), (block, offset, count) -> {
+                        System.arraycopy(block, offset, result.getReal(), position[0], count);
+                        position[0] += count;
+                    });
+                fir.push(samples, 0, length);
+                fir.flush();
+                break;
             }
 
-            signal = computeFFT(signal);
+            default: {
+                IIRFilter iir = IIRFilter.createButterworth(frequency, hasHighpass, highpassCutoff,
+                                                            hasLowpass, lowpassCutoff, order);
+                double[] filtered = result.getReal();
+                System.arraycopy(samples, 0, filtered, 0, length);
+                if (mode == FilterMode.ZERO_PHASE) {
+                    iir.filtfilt(filtered, 0, length);
+                } else {
+                    iir.filter(filtered, 0, length);
+                }
+                break;
+            }
+        }
+
+        return new Signal(result);
+    }
+
+    /**
+     * Filter one channel by blocks, using a linear-phase FIR filter
+     * and the overlap-save method. The data records of the EDF file
+     * are consumed one after the other, and each filtered block is
+     * passed to "consumer" as soon as it is available. The memory
+     * only depends on the size of the FFT, not on the length of the
+     * channel.
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param order The order of the FIR filter (must be even).
+     * @param fftSize The size of the FFT, or 0 to use the default size.
+     * @param consumer The callback receiving the filtered blocks.
+     * @throws IOException If the file doesn't follow the EDF
+     * specification, or if the consumer failed.
+     * @see FIRDesign
+     * @see OverlapSaveFilter
+     **/
+    public static void filterStream(EDFTimeSeries timeSeries,
+                                    int channelIndex,
+                                    boolean hasHighpass,
+                                    double highpassCutoff,
+                                    boolean hasLowpass,
+                                    double lowpassCutoff,
+                                    int order,
+                                    int fftSize,
+                                    OverlapSaveFilter.BlockConsumer consumer) throws IOException {
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("timeSeries is null");
+        } else if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+            throw new IllegalArgumentException("Bad channel index: " + channelIndex);
+        }
+
+        EDFTimeSeries.Channel channel = timeSeries.getChannel(channelIndex);
+        double frequency = timeSeries.getSamplingFrequency(channelIndex);
+
+        double[] kernel = FIRDesign.createKernel(frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff, order);
+        OverlapSaveFilter filter = new OverlapSaveFilter(
+            kernel, (fftSize == 0 ? OverlapSaveFilter.getDefaultFFTSize(kernel.length) : fftSize), consumer);
+
+        int samplesInRecord = channel.getNumberOfSamplesInRecord();
+        int numberOfRecords = (samplesInRecord == 0 ? 0 : timeSeries.getNumberOfSamples(channelIndex) / samplesInRecord);
+        double[] record = new double[samplesInRecord];
+
+        // Bypass "ChannelColumnCache", which would hold the whole channel in memory
+        for (int r = 0; r < numberOfRecords; r++) {
+            timeSeries.decodePhysicalValues(channelIndex, r * samplesInRecord, record, 0, samplesInRecord);
+            filter.push(record, 0, samplesInRecord);
+        }
+
+        filter.flush();
+    }
+
+    /**
+     * Apply the same ideal filter to several channels at once. The
+     * channels are decoded into one contiguous matrix per padded
+     * length (cf. "ChannelMatrix"), then each row is filtered in
+     * parallel using one shared FFT plan, whose scratch buffers are
+     * private to each worker thread.
+     *
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest (must
+     * be distinct).
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param padding The padding strategy.
+     * @return The filtered EEG channels, in the same order as "channels".
+     * @see #filter(EDFTimeSeries, int, boolean, double, boolean, double, Padding)
+     **/
+    public static Signal[] filter(EDFTimeSeries timeSeries,
+                                  int[] channels,
+                                  boolean hasHighpass,
+                                  double highpassCutoff,
+                                  boolean hasLowpass,
+                                  double lowpassCutoff,
+                                  Padding padding) throws IOException {
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("timeSeries is null");
+        }
 
-            for (int k = 0; k < new_N; k++) {
-                signal.setValue(k, multi_img(filter.getValue(k), signal.getValue(k)));
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] < 0 || channels[i] >= timeSeries.getNumberOfChannels()) {
+                throw new IllegalArgumentException("Bad channel index: " + channels[i]);
             }
+            if (positions.put(channels[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate channel index: " + channels[i]);
+            }
+        }
+
+        final Signal[] result = new Signal[channels.length];
 
-            signal = computeInverseFFT(signal);
-            Signal final_signal = new Signal(N);
-            for (int z = 0; z < N; z++) {
-                final_signal.setValue(z, signal.getValue(z).getReal());
+        for (Map.Entry<Integer, int[]> group : ChannelMatrix.groupByPaddedLength(timeSeries, channels, padding).entrySet()) {
+            final int new_N = group.getKey();
+            final ChannelMatrix matrix = ChannelMatrix.decode(timeSeries, group.getValue(), new_N);
+            final RealFFTPlan plan = FFTPlanCache.getRealPlan(new_N);
+
+            final FilterMask[] masks = new FilterMask[matrix.getNumberOfRows()];
+            for (int row = 0; row < masks.length; row++) {
+                double frequency = timeSeries.getSamplingFrequency(matrix.getChannelIndex(row));
+                masks[row] = FilterMaskCache.getMask(new_N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
             }
 
-            return final_signal;
+            final int[] targets = new int[matrix.getNumberOfRows()];
+            for (int row = 0; row < targets.length; row++) {
+                targets[row] = positions.get(matrix.getChannelIndex(row));
+            }
+
+            ParallelLoop.run(matrix.getNumberOfRows(), (from, to) -> {
+                double[] samples = plan.getScratchSamples();
+                SignalBuffer spectrum = plan.getScratchSpectrum();
+                double[] spectrumReal = spectrum.getReal();
+                double[] spectrumImag = spectrum.getImag();
+
+                for (int row = from; row < to; row++) {
+                    System.arraycopy(matrix.getData(), matrix.getRowOffset(row), samples, 0, new_N);
+                    plan.forward(samples, spectrumReal, spectrumImag);
+
+                    masks[row].apply(spectrumReal, spectrumImag, plan.getNumberOfBins());
+
+                    plan.inverse(spectrumReal, spectrumImag, samples);
+
+                    int N = matrix.getNumberOfSamples(row);
+                    SignalBuffer filtered = new SignalBuffer(N);
+                    System.arraycopy(samples, 0, filtered.getReal(), 0, N);
+                    result[targets[row]] = new Signal(filtered);
+                }
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute the analytic signal "x + i * H(x)" of a real-valued
+     * signal, where "H" is the Hilbert transform. In the frequency
+     * domain, the positive frequencies are doubled and the negative
+     * frequencies are zeroed, which only needs one FFT and one
+     * inverse FFT. The modulus of the analytic signal is the
+     * amplitude envelope of the signal, and its argument is the
+     * instantaneous phase.
+     *
+     * N must be a power of 2. If it is not the case, an
+     * "IllegalArgumentException" must be thrown.
+     *
+     * @param source The input signal in the time domain (only its
+     * real components are used).
+     * @return The analytic signal, of the same size.
+     * @see #computeAnalyticSignal(EDFTimeSeries, int, boolean, double, boolean, double)
+     **/
+    public static Signal computeAnalyticSignal(Signal source) {
+        SignalBuffer real = source.getBuffer().copy(source.getLength());
+        Arrays.fill(real.getImag(), 0);
+
+        Signal spectrum = computeFFT(new Signal(real));
+        applyHilbertWeights(spectrum.getBuffer(), null);
+        return computeInverseFFT(spectrum);
+    }
+
+    // Double the positive frequencies and zero the negative ones. The
+    // DC and Nyquist bins are kept as such. If "mask" is provided,
+    // the ideal filter is applied in the same pass.
+    private static void applyHilbertWeights(SignalBuffer spectrum,
+                                            FilterMask mask) {
+        final int N = spectrum.getLength();
+        final double[] real = spectrum.getReal();
+        final double[] imag = spectrum.getImag();
+
+        if (mask != null) {
+            mask.apply(real, imag, N / 2 + 1);
+        }
+
+        for (int k = 1; k < (N + 1) / 2; k++) {
+            real[k] *= 2.0;
+            imag[k] *= 2.0;
+        }
+
+        spectrum.clear(N / 2 + 1, N);
+    }
+
+    /**
+     * Compute the analytic signal of one channel in some EEG time
+     * series, possibly after an ideal band-pass filter (which is
+     * applied on the same spectrum, hence without any additional
+     * FFT). The envelope and the phase only make sense for narrow
+     * frequency bands, such as the clinical EEG bands.
+     *
+     * The channel is padded with zeros until its length corresponds
+     * to a power of 2, and the output is cropped to the original
+     * length of the channel. The output is not decimated, so it has
+     * the sampling frequency of the channel even if the band is
+     * narrow: Use "PolyphaseResampler" on its real and imaginary
+     * parts to get a downsampled envelope (as done by the "/envelope"
+     * route).
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @return The analytic signal of the (filtered) channel, at the
+     * sampling frequency of the channel.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     * @see #computeAnalyticSignal(Signal)
+     **/
+    public static Signal computeAnalyticSignal(EDFTimeSeries timeSeries,
+                                               int channelIndex,
+                                               boolean hasHighpass,
+                                               double highpassCutoff,
+                                               boolean hasLowpass,
+                                               double lowpassCutoff) throws IOException {
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("timeSeries is null");
+        } else if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+            throw new IllegalArgumentException("Bad channel index: " + channelIndex);
+        }
+
+        int N = timeSeries.getNumberOfSamples(channelIndex);
+        int new_N = Padding.POWER_OF_TWO.getPaddedLength(Math.max(N, 1));
+        double frequency = timeSeries.getSamplingFrequency(channelIndex);
+
+        Signal padded = new Signal(new_N);
+        double[] samples = padded.getBuffer().getReal();
+        timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, N);
+
+        FilterMask mask = null;
+        if (hasHighpass || hasLowpass) {
+            mask = FilterMaskCache.getMask(new_N, frequency, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+        }
+
+        Signal spectrum = computeFFT(padded);
+        applyHilbertWeights(spectrum.getBuffer(), mask);
+        return new Signal(computeInverseFFT(spectrum).getBuffer().copy(N));
+    }
+
+    /**
+     * Decode one channel and compute its multi-level discrete wavelet
+     * transform (cf. "LiftingDWT"). No padding is needed, whatever the
+     * length of the channel, and the transform runs in O(N).
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param wavelet The wavelet.
+     * @param levels The number of levels.
+     * @return The coefficients, in the interleaved layout of "LiftingDWT".
+     * @throws IOException If the file doesn't follow the EDF specification.
+     **/
+    public static double[] computeWaveletTransform(EDFTimeSeries timeSeries,
+                                                   int channelIndex,
+                                                   Wavelet wavelet,
+                                                   int levels) throws IOException {
+        double[] samples = decodeChannel(timeSeries, channelIndex);
+        LiftingDWT.forward(samples, samples.length, wavelet, levels);
+        return samples;
+    }
+
+    /**
+     * Denoise one channel by soft thresholding of its wavelet
+     * coefficients (cf. "LiftingDWT.denoise()"). This is a cheaper
+     * alternative to the FFT-based filters on long recordings, as it
+     * runs in O(N) and preserves the transients of the signal.
+     *
+     * @param timeSeries The EEG data.
+     * @param channelIndex The index of the channel of interest.
+     * @param wavelet The wavelet.
+     * @param levels The number of levels.
+     * @param threshold The threshold, or a negative value to estimate
+     * it from the finest detail coefficients.
+     * @return The denoised EEG channel.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     **/
+    public static Signal denoise(EDFTimeSeries timeSeries,
+                                 int channelIndex,
+                                 Wavelet wavelet,
+                                 int levels,
+                                 double threshold) throws IOException {
+        double[] samples = decodeChannel(timeSeries, channelIndex);
+        LiftingDWT.denoise(samples, samples.length, wavelet, levels, threshold);
+        return new Signal(new SignalBuffer(samples, new double[samples.length]));
+    }
+
+    private static double[] decodeChannel(EDFTimeSeries timeSeries,
+                                          int channelIndex) throws IOException {
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("timeSeries is null");
+        } else if (channelIndex < 0 || channelIndex >= timeSeries.getNumberOfChannels()) {
+            throw new IllegalArgumentException("Bad channel index: " + channelIndex);
         }
+
+        double[] samples = new double[timeSeries.getNumberOfSamples(channelIndex)];
+        timeSeries.getPhysicalValues(channelIndex, 0, samples, 0, samples.length);
+        return samples;
     }
 }
@@ -1,13 +1,32 @@
+import be.uclouvain.ChannelColumnCache;
 import be.uclouvain.EDFTimeSeries;
+import be.uclouvain.FFTPlanCache;
+import be.uclouvain.FIRDesign;
+import be.uclouvain.FilterMaskCache;
+import be.uclouvain.FilterMode;
 import be.uclouvain.HttpToolbox;
+import be.uclouvain.IIRFilter;
+import be.uclouvain.LiftingDWT;
+import be.uclouvain.OverlapSaveFilter;
+import be.uclouvain.Padding;
+import be.uclouvain.PolyphaseResampler;
+import be.uclouvain.Precision;
 import be.uclouvain.Signal;
+import be.uclouvain.SignalBuffer;
+import be.uclouvain.Wavelet;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.json.JSONException;
 import org.json.JSONArray;
@@ -17,8 +36,15 @@ public class AppLauncher implements HttpHandler {
     private EDFTimeSeries timeSeries;
     
     public static void main(String[] args) throws IOException {
+        AppLauncher launcher = new AppLauncher();
+        if (args.length > 0) {
+            // Recordings that are too large to be uploaded can be
+            // mapped from the filesystem when the server starts
+            launcher.timeSeries = EDFTimeSeries.mapFile(args[0]);
+        }
+
         HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
-        server.createContext("/", new AppLauncher());
+        server.createContext("/", launcher);
         server.setExecutor(null); // creates a default executor
         server.start();
     }
@@ -29,7 +55,7 @@ public class AppLauncher implements HttpHandler {
         for (int i = 0; i < signal.getLength(); i++) {
             JSONObject item = new JSONObject();
             item.put("x", (double) i * samplingTime);
-            item.put("y", signal.getValue(i).getReal());
+            item.put("y", signal.getBuffer().getReal(i));
             jsonSignal.put(item);
         }
 
@@ -40,19 +66,68 @@ public class AppLauncher implements HttpHandler {
                                            int channelIndex) throws IOException {
         final int numberOfSamples = timeSeries.getNumberOfSamples(channelIndex);
         final double samplingTime = 1.0 / (double) timeSeries.getSamplingFrequency(channelIndex);
-        final EDFTimeSeries.Channel channel = timeSeries.getChannel(channelIndex);
+        final float[] values = timeSeries.getPhysicalValues(channelIndex);
         
         JSONArray jsonSignal = new JSONArray();
         for (int i = 0; i < numberOfSamples; i++) {
             JSONObject item = new JSONObject();
             item.put("x", (double) i * samplingTime);
-            item.put("y", channel.getPhysicalValue(timeSeries.getDigitalValue(channelIndex, i)));
+            item.put("y", values[i]);
             jsonSignal.put(item);
         }
 
         return jsonSignal;
     }
 
+    // The envelope and the phase are sent as single-precision values,
+    // which is more than enough for display and halves the payload
+    private static JSONObject analyticSignalToJson(Signal analytic,
+                                                   double samplingFrequency,
+                                                   double targetRate) {
+        double[] real = analytic.getBuffer().getReal();
+        double[] imag = analytic.getBuffer().getImag();
+        int length = analytic.getLength();
+
+        // The real and imaginary parts are resampled separately, as
+        // the phase cannot be interpolated across its wrap-arounds
+        if (targetRate > 0 &&
+            targetRate < samplingFrequency) {
+            PolyphaseResampler resampler = PolyphaseResampler.create(samplingFrequency, targetRate);
+            real = resampler.process(real, length);
+            imag = resampler.process(imag, length);
+            length = real.length;
+            samplingFrequency = resampler.getOutputRate(samplingFrequency);
+        }
+
+        JSONArray envelope = new JSONArray();
+        JSONArray phase = new JSONArray();
+        for (int i = 0; i < length; i++) {
+            envelope.put((float) Math.hypot(real[i], imag[i]));
+            phase.put((float) Math.atan2(imag[i], real[i]));
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("samplingFrequency", samplingFrequency);
+        result.put("envelope", envelope);
+        result.put("phase", phase);
+        return result;
+    }
+
+    // The wavelet coefficients are sent as single-precision values
+    private static JSONObject coefficientsToJson(double[] coefficients,
+                                                 int count,
+                                                 double samplingFrequency) {
+        JSONArray values = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            values.put((float) coefficients[i]);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("samplingFrequency", samplingFrequency);
+        result.put("values", values);
+        return result;
+    }
+
     public void handle(HttpExchange exchange) throws IOException {
         String uri = exchange.getRequestURI().normalize().toString();
 
@@ -95,6 +170,7 @@ public class AppLauncher implements HttpHandler {
                     synchronized(this) {
                         byte[] body = HttpToolbox.getMultipartFile(exchange, "data");
                         timeSeries = new EDFTimeSeries(body);
+                        ChannelColumnCache.clear();
 
                         for (int i = 0; i < timeSeries.getNumberOfChannels(); i++) {
                             String label = timeSeries.getChannel(i).getLabel();
@@ -117,17 +193,66 @@ public class AppLauncher implements HttpHandler {
                         final boolean hasHighpass = request.getBoolean("hasHighpass");
                         final double lowpassCutoff = request.getDouble("lowpass");
                         final double highpassCutoff = request.getDouble("highpass");
+                        final Padding padding = Padding.parse(request.optString("padding", "power-of-two"));
+                        final FilterMode mode = FilterMode.parse(request.optString("mode", "ideal"));
+                        final int order = request.optInt("order", (mode == FilterMode.FIR ?
+                                                                   FIRDesign.DEFAULT_ORDER : IIRFilter.DEFAULT_ORDER));
+                        final Precision precision = Precision.parse(request.optString("precision", "double"));
+                        if (precision == Precision.SINGLE && mode != FilterMode.IDEAL) {
+                            throw new IllegalArgumentException("Single precision is only available for the ideal filter");
+                        }
+
+                        final double targetRate = request.optDouble("targetRate", 0);
+                        if (request.has("targetRate") && !(targetRate > 0)) {
+                            throw new IllegalArgumentException("Bad target rate");
+                        }
 
                         if (timeSeries == null ||
+                            channelIndex < 0 ||
                             channelIndex >= timeSeries.getNumberOfChannels()) {
                             HttpToolbox.sendNotFound(exchange);
+                        } else if (targetRate > 0 &&
+                                   targetRate < timeSeries.getSamplingFrequency(channelIndex)) {
+                            // Resample the channel before filtering it, which
+                            // shrinks both the computations and the response
+                            JSONObject response = new JSONObject();
+
+                            synchronized (this) {
+                                final double frequency = timeSeries.getSamplingFrequency(channelIndex);
+                                final int numberOfSamples = timeSeries.getNumberOfSamples(channelIndex);
+                                double[] decoded = new double[numberOfSamples];
+                                timeSeries.getPhysicalValues(channelIndex, 0, decoded, 0, numberOfSamples);
+
+                                PolyphaseResampler resampler = PolyphaseResampler.create(frequency, targetRate);
+                                double[] resampled = resampler.process(decoded, numberOfSamples);
+                                double outputRate = resampler.getOutputRate(frequency);
+
+                                Signal filtered;
+                                if (precision == Precision.SINGLE) {
+                                    filtered = App.filterSinglePrecision(resampled, resampled.length, outputRate, hasHighpass, highpassCutoff,
+                                                                         hasLowpass, lowpassCutoff, padding);
+                                } else {
+                                    filtered = App.filter(resampled, resampled.length, outputRate, hasHighpass, highpassCutoff,
+                                                          hasLowpass, lowpassCutoff, mode, order, padding);
+                                }
+
+                                response.put("source", signalToJson(new Signal(new SignalBuffer(resampled, new double[resampled.length])),
+                                                                    1.0 / outputRate));
+                                response.put("filtered", signalToJson(filtered, 1.0 / outputRate));
+                            }
+
+                            HttpToolbox.sendResponse(exchange, response);
                         } else {
                             final double samplingTime = 1.0 / timeSeries.getSamplingFrequency(channelIndex);
 
                             Signal filtered;
                             
                             synchronized (this) {
-                                filtered = App.filter(timeSeries, channelIndex, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+                                if (precision == Precision.SINGLE) {
+                                    filtered = App.filter(timeSeries, channelIndex, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff, padding, precision);
+                                } else {
+                                    filtered = App.filter(timeSeries, channelIndex, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff, mode, order, padding);
+                                }
                             }
                             
                             JSONObject response = new JSONObject();
@@ -135,12 +260,276 @@ public class AppLauncher implements HttpHandler {
                             response.put("filtered", signalToJson(filtered, samplingTime));
                             HttpToolbox.sendResponse(exchange, response);
                         }
-                    } catch (JSONException | IOException e) {
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
                         HttpToolbox.sendBadRequest(exchange);
                     }
                 }
                 break;
                 
+            case "/filter-stream":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        final JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        final int channelIndex = request.getInt("channel");
+                        final boolean hasLowpass = request.getBoolean("hasLowpass");
+                        final boolean hasHighpass = request.getBoolean("hasHighpass");
+                        final double lowpassCutoff = request.getDouble("lowpass");
+                        final double highpassCutoff = request.getDouble("highpass");
+                        final int order = request.optInt("order", FIRDesign.DEFAULT_ORDER);
+                        final int fftSize = request.optInt("fftSize", 0);
+
+                        // Only the access to the current EDF file needs the
+                        // lock: The file is immutable, and holding the lock
+                        // while writing to a slow client would block every route
+                        final EDFTimeSeries series;
+                        synchronized (this) {
+                            series = timeSeries;
+                        }
+
+                        if (series == null ||
+                            channelIndex < 0 ||
+                            channelIndex >= series.getNumberOfChannels()) {
+                            HttpToolbox.sendNotFound(exchange);
+                        } else {
+                            // Validate the arguments before the headers are sent
+                            final double samplingTime = 1.0 / series.getSamplingFrequency(channelIndex);
+                            final double[] kernel = FIRDesign.createKernel(
+                                series.getSamplingFrequency(channelIndex), hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff, order);
+                            if (fftSize != 0 &&
+                                fftSize <= kernel.length) {
+                                throw new IllegalArgumentException("The FFT must be longer than the kernel");
+                            }
+
+                            // The filtered samples are sent as a JSON array, using
+                            // chunked transfer encoding, while they are produced
+                            exchange.getResponseHeaders().set("Content-Type", "application/json");
+                            exchange.sendResponseHeaders(200, 0);
+
+                            try (OutputStream os = exchange.getResponseBody();
+                                 Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+                                final long[] position = new long[1];
+                                writer.write("[");
+
+                                App.filterStream(series, channelIndex, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff,
+                                                 order, fftSize, (samples, offset, count) -> {
+                                                     for (int i = 0; i < count; i++) {
+                                                         JSONObject item = new JSONObject();
+                                                         item.put("x", (double) position[0] * samplingTime);
+                                                         item.put("y", samples[offset + i]);
+                                                         writer.write(position[0] == 0 ? "\n" : ",\n");
+                                                         writer.write(item.toString());
+                                                         position[0]++;
+                                                     }
+                                                     writer.flush();
+                                                 });
+
+                                writer.write("\n]\n");
+                            } catch (IOException | RuntimeException e) {
+                                // The headers are already sent, so no error status can be
+                                // reported anymore: Abort the response, which leaves the
+                                // client with a truncated JSON array
+                                exchange.close();
+                            }
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/filter-all":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        final JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        final boolean hasLowpass = request.getBoolean("hasLowpass");
+                        final boolean hasHighpass = request.getBoolean("hasHighpass");
+                        final double lowpassCutoff = request.getDouble("lowpass");
+                        final double highpassCutoff = request.getDouble("highpass");
+                        final Padding padding = Padding.parse(request.optString("padding", "power-of-two"));
+
+                        if (timeSeries == null) {
+                            HttpToolbox.sendNotFound(exchange);
+                        } else {
+                            JSONObject response = new JSONObject();
+
+                            synchronized (this) {
+                                List<Integer> channels = new ArrayList<>();
+                                for (int i = 0; i < timeSeries.getNumberOfChannels(); i++) {
+                                    if (!timeSeries.getChannel(i).getLabel().equals("EDF Annotations")) {
+                                        channels.add(i);
+                                    }
+                                }
+
+                                int[] indices = channels.stream().mapToInt(Integer::intValue).toArray();
+                                Signal[] filtered = App.filter(timeSeries, indices, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff, padding);
+
+                                for (int i = 0; i < indices.length; i++) {
+                                    final double samplingTime = 1.0 / timeSeries.getSamplingFrequency(indices[i]);
+                                    JSONObject item = new JSONObject();
+                                    item.put("source", channelToJson(timeSeries, indices[i]));
+                                    item.put("filtered", signalToJson(filtered[i], samplingTime));
+                                    response.put(timeSeries.getChannel(indices[i]).getLabel(), item);
+                                }
+                            }
+
+                            HttpToolbox.sendResponse(exchange, response);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/envelope":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        final JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        final int channelIndex = request.getInt("channel");
+                        final boolean hasLowpass = request.optBoolean("hasLowpass", false);
+                        final boolean hasHighpass = request.optBoolean("hasHighpass", false);
+                        final double lowpassCutoff = request.optDouble("lowpass", 0);
+                        final double highpassCutoff = request.optDouble("highpass", 0);
+                        final double targetRate = request.optDouble("targetRate", 0);
+                        if (request.has("targetRate") && !(targetRate > 0)) {
+                            throw new IllegalArgumentException("Bad target rate");
+                        }
+
+                        if (timeSeries == null ||
+                            channelIndex < 0 ||
+                            channelIndex >= timeSeries.getNumberOfChannels()) {
+                            HttpToolbox.sendNotFound(exchange);
+                        } else {
+                            JSONObject response;
+
+                            synchronized (this) {
+                                final double frequency = timeSeries.getSamplingFrequency(channelIndex);
+
+                                // By default, a low-passed analytic signal is decimated to
+                                // twice the Nyquist rate of its band, which is enough to
+                                // follow its envelope and its phase
+                                double rate = targetRate;
+                                if (!request.has("targetRate") &&
+                                    hasLowpass &&
+                                    lowpassCutoff > 0) {
+                                    rate = Math.max(4.0 * lowpassCutoff, frequency / PolyphaseResampler.MAX_FACTOR);
+                                }
+
+                                Signal analytic = App.computeAnalyticSignal(timeSeries, channelIndex, hasHighpass, highpassCutoff,
+                                                                            hasLowpass, lowpassCutoff);
+                                response = analyticSignalToJson(analytic, frequency, rate);
+                            }
+
+                            HttpToolbox.sendResponse(exchange, response);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/wavelet-denoise":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        final JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        final int channelIndex = request.getInt("channel");
+                        final Wavelet wavelet = Wavelet.parse(request.optString("wavelet", "db4"));
+                        final double threshold = request.optDouble("threshold", -1);
+
+                        if (timeSeries == null ||
+                            channelIndex < 0 ||
+                            channelIndex >= timeSeries.getNumberOfChannels()) {
+                            HttpToolbox.sendNotFound(exchange);
+                        } else {
+                            final int levels = request.optInt("levels", Math.min(LiftingDWT.DEFAULT_LEVELS,
+                                                                                 LiftingDWT.getMaxLevels(timeSeries.getNumberOfSamples(channelIndex))));
+                            final double samplingTime = 1.0 / timeSeries.getSamplingFrequency(channelIndex);
+
+                            Signal denoised;
+
+                            synchronized (this) {
+                                denoised = App.denoise(timeSeries, channelIndex, wavelet, levels, threshold);
+                            }
+
+                            JSONObject response = new JSONObject();
+                            response.put("source", channelToJson(timeSeries, channelIndex));
+                            response.put("filtered", signalToJson(denoised, samplingTime));
+                            HttpToolbox.sendResponse(exchange, response);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/wavelet-decompose":
+                if (HttpToolbox.protectPostRequest(exchange)) {
+                    try {
+                        final JSONObject request = HttpToolbox.getRequestBodyAsJsonObject(exchange);
+                        final int channelIndex = request.getInt("channel");
+                        final Wavelet wavelet = Wavelet.parse(request.optString("wavelet", "db4"));
+
+                        if (timeSeries == null ||
+                            channelIndex < 0 ||
+                            channelIndex >= timeSeries.getNumberOfChannels()) {
+                            HttpToolbox.sendNotFound(exchange);
+                        } else {
+                            final int length = timeSeries.getNumberOfSamples(channelIndex);
+                            final int levels = request.optInt("levels", Math.min(LiftingDWT.DEFAULT_LEVELS,
+                                                                                 LiftingDWT.getMaxLevels(length)));
+                            final double samplingFrequency = timeSeries.getSamplingFrequency(channelIndex);
+
+                            double[] coefficients;
+
+                            synchronized (this) {
+                                coefficients = App.computeWaveletTransform(timeSeries, channelIndex, wavelet, levels);
+                            }
+
+                            // Level "j" covers the band "[Fs / 2^(j+2), Fs / 2^(j+1)]"
+                            double[] buffer = new double[LiftingDWT.getNumberOfDetails(length, 0)];
+                            JSONArray details = new JSONArray();
+                            for (int level = 0; level < levels; level++) {
+                                LiftingDWT.getDetails(coefficients, length, level, buffer);
+                                details.put(coefficientsToJson(buffer, LiftingDWT.getNumberOfDetails(length, level),
+                                                               samplingFrequency / (1 << (level + 1))));
+                            }
+
+                            buffer = new double[LiftingDWT.getNumberOfSamples(length, levels)];
+                            LiftingDWT.getApproximation(coefficients, length, levels, buffer);
+
+                            JSONObject response = new JSONObject();
+                            response.put("details", details);
+                            response.put("approximation", coefficientsToJson(buffer, buffer.length, samplingFrequency / (1 << levels)));
+                            HttpToolbox.sendResponse(exchange, response);
+                        }
+                    } catch (JSONException | IllegalArgumentException | IOException e) {
+                        HttpToolbox.sendBadRequest(exchange);
+                    }
+                }
+                break;
+
+            case "/fft-plan-cache":
+                if (HttpToolbox.protectGetRequest(exchange)) {
+                    JSONObject statistics = new JSONObject();
+                    statistics.put("hits", FFTPlanCache.getCountHits());
+                    statistics.put("misses", FFTPlanCache.getCountMisses());
+                    statistics.put("size", FFTPlanCache.getSize());
+                    statistics.put("capacity", FFTPlanCache.getCapacity());
+                    HttpToolbox.sendResponse(exchange, statistics);
+                }
+                break;
+
+            case "/filter-mask-cache":
+                if (HttpToolbox.protectGetRequest(exchange)) {
+                    JSONObject statistics = new JSONObject();
+                    statistics.put("hits", FilterMaskCache.getCountHits());
+                    statistics.put("misses", FilterMaskCache.getCountMisses());
+                    statistics.put("size", FilterMaskCache.getSize());
+                    statistics.put("memoryUsage", FilterMaskCache.getMemoryUsage());
+                    statistics.put("memoryBudget", FilterMaskCache.getMemoryBudget());
+                    HttpToolbox.sendResponse(exchange, statistics);
+                }
+                break;
+
             default:
                 HttpToolbox.sendNotFound(exchange);
                 break;
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Matrix that stores the physical values of several channels of an
+ * EDF file, one channel per row, in a single contiguous array. Each
+ * row is zero-padded up to the same length, so that all the rows can
+ * be transformed using one shared FFT plan.
+ */
+public class ChannelMatrix {
+    private final int[] channels;
+    private final int[] numberOfSamples;
+    private final int rowLength;
+    private final double[] data;
+
+    private ChannelMatrix(int[] channels,
+                          int rowLength) {
+        if (rowLength < 0) {
+            throw new IllegalArgumentException("Negative row length");
+        }
+
+        if ((long) channels.length * (long) rowLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many samples to be stored in one matrix");
+        }
+
+        this.channels = channels.clone();
+        this.numberOfSamples = new int[channels.length];
+        this.rowLength = rowLength;
+        this.data = new double[channels.length * rowLength];
+    }
+
+    /**
+     * Decode several channels of an EDF file into a matrix. The
+     * channels are decoded in parallel.
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest.
+     * @param rowLength The length of the rows (must be larger or
+     * equal to the number of samples in each channel).
+     * @return The matrix.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     */
+    public static ChannelMatrix decode(EDFTimeSeries timeSeries,
+                                       int[] channels,
+                                       int rowLength) throws IOException {
+        return decode(timeSeries, channels, rowLength, false);
+    }
+
+    /**
+     * Decode the first samples of several channels of an EDF file
+     * into a matrix. The channels are decoded in parallel. The
+     * samples beyond the length of the rows are not decoded, and the
+     * shorter channels are zero-padded.
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest.
+     * @param rowLength The number of samples to be decoded from each
+     * channel.
+     * @return The matrix.
+     * @throws IOException If the file doesn't follow the EDF specification.
+     */
+    public static ChannelMatrix decodeFirstSamples(EDFTimeSeries timeSeries,
+                                                   int[] channels,
+                                                   int rowLength) throws IOException {
+        return decode(timeSeries, channels, rowLength, true);
+    }
+
+    private static ChannelMatrix decode(final EDFTimeSeries timeSeries,
+                                        int[] channels,
+                                        int rowLength,
+                                        boolean truncate) throws IOException {
+        final ChannelMatrix matrix = new ChannelMatrix(channels, rowLength);
+
+        for (int row = 0; row < channels.length; row++) {
+            int count = timeSeries.getNumberOfSamples(channels[row]);
+            if (count > rowLength) {
+                if (truncate) {
+                    count = rowLength;
+                } else {
+                    throw new IllegalArgumentException("The rows are too short for channel " + channels[row]);
+                }
+            }
+            matrix.numberOfSamples[row] = count;
+
+            // Validate the physical range before entering the parallel section
+            EDFTimeSeries.Channel channel = timeSeries.getChannel(channels[row]);
+            if (channel.getPhysicalMinimum() >= channel.getPhysicalMaximum() ||
+                channel.getDigitalMinimum() >= channel.getDigitalMaximum()) {
+                throw new IOException("Bad EDF file format");
+            }
+        }
+
+        try {
+            ParallelLoop.run(channels.length, (from, to) -> {
+                for (int row = from; row < to; row++) {
+                    final int offset = row * matrix.rowLength;
+                    try {
+                        timeSeries.getPhysicalValues(matrix.channels[row], 0, matrix.data, offset, matrix.numberOfSamples[row]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Group channels according to the length of their zero-padded
+     * buffer. All the channels of one group can be stored in the same
+     * matrix, and transformed using the same FFT plan.
+     * @param timeSeries The EEG data.
+     * @param channels The indices of the channels of interest.
+     * @param padding The padding strategy.
+     * @return Map from the padded length to the indices of the channels.
+     */
+    public static Map<Integer, int[]> groupByPaddedLength(EDFTimeSeries timeSeries,
+                                                          int[] channels,
+                                                          Padding padding) {
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int channelIndex : channels) {
+            int length = padding.getPaddedLength(Math.max(timeSeries.getNumberOfSamples(channelIndex), 1));
+            groups.computeIfAbsent(length, k -> new ArrayList<>()).add(channelIndex);
+        }
+
+        Map<Integer, int[]> result = new TreeMap<>();
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            result.put(group.getKey(), group.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of rows (i.e. of channels) in the matrix.
+     * @return The number of rows.
+     */
+    public int getNumberOfRows() {
+        return channels.length;
+    }
+
+    /**
+     * Get the length of each row.
+     * @return The number of items in each row (including the padding).
+     */
+    public int getRowLength() {
+        return rowLength;
+    }
+
+    /**
+     * Get the index of the EDF channel that is stored in some row.
+     * @param row The row of interest.
+     * @return The index of the channel.
+     */
+    public int getChannelIndex(int row) {
+        return channels[row];
+    }
+
+    /**
+     * Get the number of actual samples (i.e. excluding the padding)
+     * that are stored in some row.
+     * @param row The row of interest.
+     * @return The number of samples.
+     */
+    public int getNumberOfSamples(int row) {
+        return numberOfSamples[row];
+    }
+
+    /**
+     * Get the offset of the first item of some row in the array
+     * returned by "getData()".
+     * @param row The row of interest.
+     * @return The offset.
+     */
+    public int getRowOffset(int row) {
+        return row * rowLength;
+    }
+
+    /**
+     * Get a view on the content of the matrix, stored row by row.
+     * @return The internal array.
+     */
+    public double[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Common interface to the Fast Fourier Transform engines working in
+ * place on primitive arrays of complex numbers.
+ */
+public interface ComplexFFT {
+    /**
+     * Get the size of the transforms computed by this engine.
+     * @return The number of items.
+     */
+    int getSize();
+
+    /**
+     * Compute the forward FFT, in place.
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    void forward(double[] real,
+                 double[] imag);
+
+    /**
+     * Compute the inverse FFT, in place. The output is scaled by
+     * "1/N", so that "inverse(forward(x)) == x".
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    void inverse(double[] real,
+                 double[] imag);
+}
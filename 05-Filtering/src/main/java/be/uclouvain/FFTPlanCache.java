@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU cache of the FFT plans, indexed by the size of the
+ * transform. This avoids recomputing the twiddle factors and the
+ * bit-reversal permutation each time a channel of the same length is
+ * processed. Power-of-2 complex plans ("FFTPlan"), complex plans of
+ * other sizes ("MixedRadixFFTPlan" or "BluesteinFFTPlan"), real
+ * plans ("RealFFTPlan") and single-precision real plans
+ * ("FloatRealFFTPlan") are stored in distinct caches with the same
+ * capacity. The cache is shared by the whole application and is
+ * thread-safe.
+ *
+ * The plans only keep small working buffers per thread (cf.
+ * "ThreadScratch"), so the memory that is retained by the cache is
+ * dominated by the precomputed tables of the plans. The hit/miss
+ * counters only account for the plans that are requested by the
+ * callers, not for the plans that are used internally by other plans.
+ */
+public class FFTPlanCache {
+    /**
+     * Default number of plans of each kind that are kept in the cache.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static int capacity = DEFAULT_CAPACITY;
+    private static long countHits = 0;
+    private static long countMisses = 0;
+
+    private static class LruMap<T> extends LinkedHashMap<Integer, T> {
+        private static final long serialVersionUID = 1L;
+
+        LruMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+            return size() > capacity;
+        }
+
+        void shrink() {
+            while (size() > capacity) {
+                remove(keySet().iterator().next());
+            }
+        }
+    }
+
+    private static final LruMap<FFTPlan> plans = new LruMap<>();
+    private static final LruMap<ComplexFFT> anyLengthPlans = new LruMap<>();
+    private static final LruMap<RealFFTPlan> realPlans = new LruMap<>();
+    private static final LruMap<FloatRealFFTPlan> floatRealPlans = new LruMap<>();
+
+    private FFTPlanCache() {
+    }
+
+    private static synchronized <T> T lookup(LruMap<T> map,
+                                             int size,
+                                             boolean isNested) {
+        T plan = map.get(size);
+        if (!isNested) {  // The plans used internally by other plans are not counted
+            if (plan == null) {
+                countMisses++;
+            } else {
+                countHits++;
+            }
+        }
+        return plan;
+    }
+
+    private static synchronized <T> T store(LruMap<T> map,
+                                            int size,
+                                            T plan) {
+        T previous = map.get(size);
+        if (previous == null) {
+            map.put(size, plan);
+            return plan;
+        } else {
+            return previous;  // Another thread has created the same plan in the meantime
+        }
+    }
+
+    /**
+     * Get the plan for complex transforms of a given size, creating
+     * it if it is not in the cache yet.
+     * @param size The size of the transform (must be a power of 2).
+     * @return The plan.
+     */
+    public static FFTPlan getPlan(int size) {
+        return getPlan(size, false);
+    }
+
+    /**
+     * Variant of "getPlan()" for the plans that use other plans
+     * internally, which doesn't update the hit/miss counters.
+     * @param size The size of the transform (must be a power of 2).
+     * @return The plan.
+     */
+    static FFTPlan getNestedPlan(int size) {
+        return getPlan(size, true);
+    }
+
+    private static FFTPlan getPlan(int size,
+                                   boolean isNested) {
+        FFTPlan plan = lookup(plans, size, isNested);
+        if (plan == null) {
+            // Create the plan outside of the mutex, as this can take
+            // some time for long signals
+            plan = store(plans, size, new FFTPlan(size));
+        }
+        return plan;
+    }
+
+    /**
+     * Get a plan for complex transforms of arbitrary size, creating it
+     * if it is not in the cache yet. The radix-2 engine is used for
+     * powers of 2, the mixed-radix engine for 5-smooth sizes, and
+     * Bluestein's algorithm otherwise.
+     * @param size The size of the transform.
+     * @return The plan.
+     */
+    public static ComplexFFT getAnyLengthPlan(int size) {
+        return getAnyLengthPlan(size, false);
+    }
+
+    /**
+     * Variant of "getAnyLengthPlan()" for the plans that use other
+     * plans internally, which doesn't update the hit/miss counters.
+     * @param size The size of the transform.
+     * @return The plan.
+     */
+    static ComplexFFT getNestedAnyLengthPlan(int size) {
+        return getAnyLengthPlan(size, true);
+    }
+
+    private static ComplexFFT getAnyLengthPlan(int size,
+                                               boolean isNested) {
+        if (FFTPlan.isPowerOfTwo(size)) {
+            return getPlan(size, isNested);
+        }
+
+        ComplexFFT plan = lookup(anyLengthPlans, size, isNested);
+        if (plan == null) {
+            if (MixedRadixFFTPlan.isSmooth(size)) {
+                plan = store(anyLengthPlans, size, new MixedRadixFFTPlan(size));
+            } else {
+                plan = store(anyLengthPlans, size, new BluesteinFFTPlan(size));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Get the plan for transforms of real signals of a given size,
+     * creating it if it is not in the cache yet.
+     * @param size The number of real samples.
+     * @return The plan.
+     */
+    public static RealFFTPlan getRealPlan(int size) {
+        RealFFTPlan plan = lookup(realPlans, size, false);
+        if (plan == null) {
+            plan = store(realPlans, size, new RealFFTPlan(size));
+        }
+        return plan;
+    }
+
+    /**
+     * Get the single-precision plan for transforms of real signals of
+     * a given size, creating it if it is not in the cache yet.
+     * @param size The number of real samples (must be a power of 2).
+     * @return The plan.
+     */
+    public static FloatRealFFTPlan getFloatRealPlan(int size) {
+        FloatRealFFTPlan plan = lookup(floatRealPlans, size, false);
+        if (plan == null) {
+            plan = store(floatRealPlans, size, new FloatRealFFTPlan(size));
+        }
+        return plan;
+    }
+
+    /**
+     * Change the maximum number of plans of each kind in the
+     * cache. The least recently used plans are discarded if needed.
+     * @param capacity The new capacity.
+     */
+    public static synchronized void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        FFTPlanCache.capacity = capacity;
+        plans.shrink();
+        anyLengthPlans.shrink();
+        realPlans.shrink();
+        floatRealPlans.shrink();
+    }
+
+    /**
+     * Get the maximum number of plans of each kind in the cache.
+     * @return The capacity.
+     */
+    public static synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of plans that are currently cached.
+     * @return The number of plans.
+     */
+    public static synchronized int getSize() {
+        return plans.size() + anyLengthPlans.size() + realPlans.size() + floatRealPlans.size();
+    }
+
+    /**
+     * Get the number of requests that were served from the cache.
+     * @return The number of hits.
+     */
+    public static synchronized long getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * Get the number of requests that required creating a new plan.
+     * @return The number of misses.
+     */
+    public static synchronized long getCountMisses() {
+        return countMisses;
+    }
+
+    /**
+     * Empty the cache and reset the hit/miss counters.
+     */
+    public static synchronized void clear() {
+        plans.clear();
+        anyLengthPlans.clear();
+        realPlans.clear();
+        floatRealPlans.clear();
+        countHits = 0;
+        countMisses = 0;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Design of linear-phase FIR filters using the window method: The
+ * impulse response of the ideal filter (a sinc function) is truncated
+ * to a finite number of taps, then multiplied by a Hamming window to
+ * reduce the ripples caused by the truncation.
+ */
+public class FIRDesign {
+    /**
+     * Default order of the FIR filters (the number of taps is the
+     * order plus one).
+     */
+    public static final int DEFAULT_ORDER = 1024;
+
+    private FIRDesign() {
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1;
+        } else {
+            return Math.sin(Math.PI * x) / (Math.PI * x);
+        }
+    }
+
+    // Windowed-sinc low-pass kernel, normalized to a unit gain at DC
+    private static double[] createLowpass(double Fs,
+                                          double cutoff,
+                                          int length) {
+        final double fc = cutoff / Fs;
+        final int center = (length - 1) / 2;
+
+        double[] kernel = new double[length];
+        double sum = 0;
+        for (int n = 0; n < length; n++) {
+            double window = 0.54 - 0.46 * Math.cos(2.0 * Math.PI * n / (length - 1));
+            kernel[n] = 2.0 * fc * sinc(2.0 * fc * (n - center)) * window;
+            sum += kernel[n];
+        }
+
+        for (int n = 0; n < length; n++) {
+            kernel[n] /= sum;
+        }
+
+        return kernel;
+    }
+
+    /**
+     * Design a low-pass, high-pass or band-pass FIR filter. The
+     * conventions for the cutoff frequencies are the same as in
+     * "App.createFilter()": If neither "hasHighpass" nor "hasLowpass"
+     * is true, the filter is the identity, and if "highpassCutoff >
+     * lowpassCutoff", the output is zero.
+     *
+     * The kernel is symmetric, which corresponds to a linear phase
+     * with a delay of "order/2" samples.
+     *
+     * @param Fs The sampling frequency of the signal.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param order The order of the filter (must be even and positive).
+     * @return The "order+1" taps of the filter.
+     */
+    public static double[] createKernel(double Fs,
+                                        boolean hasHighpass,
+                                        double highpassCutoff,
+                                        boolean hasLowpass,
+                                        double lowpassCutoff,
+                                        int order) {
+        if (Fs <= 0 ||
+            order <= 0 ||
+            order % 2 != 0) {
+            throw new IllegalArgumentException("The order of a FIR filter must be even and positive");
+        }
+
+        final int length = order + 1;
+        final int center = order / 2;
+        final double nyquist = Fs / 2.0;
+
+        double[] kernel = new double[length];
+
+        if ((hasHighpass && hasLowpass && highpassCutoff > lowpassCutoff) ||
+            (hasHighpass && highpassCutoff >= nyquist) ||
+            (hasLowpass && lowpassCutoff <= 0)) {
+            return kernel;
+        }
+
+        // Start with the identity (Dirac impulse), then remove the
+        // frequencies above the low-pass cutoff, and below the
+        // high-pass cutoff
+        kernel[center] = 1;
+
+        if (hasLowpass && lowpassCutoff < nyquist) {
+            double[] lowpass = createLowpass(Fs, lowpassCutoff, length);
+            for (int n = 0; n < length; n++) {
+                kernel[n] += lowpass[n] - (n == center ? 1 : 0);
+            }
+        }
+
+        if (hasHighpass && highpassCutoff > 0) {
+            double[] lowpass = createLowpass(Fs, highpassCutoff, length);
+            for (int n = 0; n < length; n++) {
+                kernel[n] -= lowpass[n];
+            }
+        }
+
+        return kernel;
+    }
+}
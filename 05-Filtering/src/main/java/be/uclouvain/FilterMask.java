@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Arrays;
+
+
+/**
+ * Ideal filter in the frequency domain, whose gain is either 100% or
+ * 0%. Instead of storing the gain of each of the "N" bins, the mask
+ * is described by the sorted list of the intervals of bins that are
+ * in the pass band: An ideal low-pass, high-pass or band-pass filter
+ * only needs at most 3 intervals, whatever the length of the signal.
+ *
+ * Masks are immutable, and can thus be shared (cf. "FilterMaskCache").
+ */
+public class FilterMask {
+    private final int length;
+    private final int[] intervals;  // Pairs "[start, end[" of bins with a gain of 100%
+
+    private FilterMask(int length,
+                       int[] intervals) {
+        this.length = length;
+        this.intervals = intervals;
+    }
+
+    // Same as "App.getFrequency()"
+    private static double getFrequency(int k,
+                                       int N,
+                                       double Fs) {
+        if (k <= N/2) {
+            return (k*Fs)/N;
+        } else {
+            return (k-N)*(Fs/N);
+        }
+    }
+
+    private static boolean isPassing(int k,
+                                     int N,
+                                     double Fs,
+                                     boolean hasHighpass,
+                                     double highpassCutoff,
+                                     boolean hasLowpass,
+                                     double lowpassCutoff) {
+        final double f = Math.abs(getFrequency(k, N, Fs));
+        if (hasHighpass && hasLowpass) {
+            return (f <= lowpassCutoff && f >= highpassCutoff);
+        } else if (hasHighpass) {
+            return f > highpassCutoff;
+        } else {
+            return f < lowpassCutoff;
+        }
+    }
+
+    /**
+     * Compute the mask of an ideal low-pass, high-pass or band-pass
+     * filter. The conventions are the same as in "App.createFilter()".
+     *
+     * @param N The length of the signal.
+     * @param Fs The sampling frequency of the signal (i.e. "1/T").
+     * @param hasHighpass Whether a high-pass filter is to be generated.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be generated.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @return The mask.
+     */
+    public static FilterMask create(int N,
+                                    double Fs,
+                                    boolean hasHighpass,
+                                    double highpassCutoff,
+                                    boolean hasLowpass,
+                                    double lowpassCutoff) {
+        if (N < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        if (!hasHighpass && !hasLowpass) {
+            return new FilterMask(N, (N == 0 ? new int[0] : new int[] { 0, N }));
+        } else if (hasHighpass && hasLowpass && highpassCutoff > lowpassCutoff) {
+            return new FilterMask(N, new int[0]);
+        }
+
+        // Single pass over the bins, recording the transitions of the gain
+        int[] intervals = new int[8];
+        int count = 0;
+        int start = -1;
+        for (int k = 0; k < N; k++) {
+            boolean passing = isPassing(k, N, Fs, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+            if (passing && start == -1) {
+                start = k;
+            } else if (!passing && start != -1) {
+                if (count + 2 > intervals.length) {
+                    intervals = Arrays.copyOf(intervals, 2 * intervals.length);
+                }
+                intervals[count++] = start;
+                intervals[count++] = k;
+                start = -1;
+            }
+        }
+
+        if (start != -1) {
+            if (count + 2 > intervals.length) {
+                intervals = Arrays.copyOf(intervals, intervals.length + 2);
+            }
+            intervals[count++] = start;
+            intervals[count++] = N;
+        }
+
+        return new FilterMask(N, Arrays.copyOf(intervals, count));
+    }
+
+    /**
+     * Get the length of the signal this mask applies to.
+     * @return The number of bins "N".
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the number of intervals of bins in the pass band.
+     * @return The number of intervals.
+     */
+    public int getNumberOfIntervals() {
+        return intervals.length / 2;
+    }
+
+    /**
+     * Get the first bin of one interval in the pass band.
+     * @param index The index of the interval.
+     * @return The first bin (inclusive).
+     */
+    public int getIntervalStart(int index) {
+        return intervals[2 * index];
+    }
+
+    /**
+     * Get the end of one interval in the pass band.
+     * @param index The index of the interval.
+     * @return The last bin (exclusive).
+     */
+    public int getIntervalEnd(int index) {
+        return intervals[2 * index + 1];
+    }
+
+    /**
+     * Get the gain of one bin.
+     * @param k The index of the bin.
+     * @return 1 if the bin is in the pass band, 0 otherwise.
+     */
+    public double getGain(int k) {
+        if (k < 0 || k >= length) {
+            throw new IllegalArgumentException();
+        }
+
+        for (int i = 0; i < intervals.length; i += 2) {
+            if (k < intervals[i]) {
+                return 0;
+            } else if (k < intervals[i + 1]) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Write the gain of the bins into an array.
+     * @param gains The target array (at least "N" items).
+     */
+    public void fill(double[] gains) {
+        Arrays.fill(gains, 0, length, 0);
+        for (int i = 0; i < intervals.length; i += 2) {
+            Arrays.fill(gains, intervals[i], intervals[i + 1], 1);
+        }
+    }
+
+    /**
+     * Apply the mask to the first bins of a spectrum, in place, by
+     * zeroing the bins that are outside of the pass band.
+     * @param real The real components of the spectrum.
+     * @param imag The imaginary components of the spectrum.
+     * @param count The number of bins to be processed (at most "N").
+     */
+    public void apply(double[] real,
+                      double[] imag,
+                      int count) {
+        if (count > length) {
+            throw new IllegalArgumentException();
+        }
+
+        int k = 0;
+        for (int i = 0; i < intervals.length && k < count; i += 2) {
+            final int end = Math.min(intervals[i], count);
+            Arrays.fill(real, k, end, 0);
+            Arrays.fill(imag, k, end, 0);
+            k = Math.max(end, Math.min(intervals[i + 1], count));
+        }
+
+        Arrays.fill(real, k, count, 0);
+        Arrays.fill(imag, k, count, 0);
+    }
+
+    /**
+     * Single-precision variant of "apply()" (cf. "FloatRealFFTPlan").
+     * @param real The real components of the spectrum.
+     * @param imag The imaginary components of the spectrum.
+     * @param count The number of bins to be processed (at most "N").
+     */
+    public void apply(float[] real,
+                      float[] imag,
+                      int count) {
+        if (count > length) {
+            throw new IllegalArgumentException();
+        }
+
+        int k = 0;
+        for (int i = 0; i < intervals.length && k < count; i += 2) {
+            final int end = Math.min(intervals[i], count);
+            Arrays.fill(real, k, end, 0);
+            Arrays.fill(imag, k, end, 0);
+            k = Math.max(end, Math.min(intervals[i + 1], count));
+        }
+
+        Arrays.fill(real, k, count, 0);
+        Arrays.fill(imag, k, count, 0);
+    }
+
+    /**
+     * Get an estimate of the memory that is used by this mask.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage() {
+        return 32 + 4 * (long) intervals.length;
+    }
+}
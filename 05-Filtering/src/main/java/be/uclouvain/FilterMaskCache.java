@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU cache of the ideal filter masks, indexed by the length
+ * of the signal, its sampling frequency and the configuration of the
+ * cutoff frequencies. This avoids recomputing the mask each time the
+ * same filter is applied again, for instance while the user is
+ * adjusting the display. The size of the cache is bounded by an
+ * estimate of the memory that is used by the masks. The cache is
+ * shared by the whole application and is thread-safe.
+ */
+public class FilterMaskCache {
+    /**
+     * Default memory budget of the cache, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 1024 * 1024;
+
+    private static final long ENTRY_OVERHEAD = 128;  // Key, map entry and object headers
+
+    private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private static long memoryUsage = 0;
+    private static long countHits = 0;
+    private static long countMisses = 0;
+
+    private static final class Key {
+        private final int length;
+        private final double samplingFrequency;
+        private final boolean hasHighpass;
+        private final double highpassCutoff;
+        private final boolean hasLowpass;
+        private final double lowpassCutoff;
+
+        Key(int length,
+            double samplingFrequency,
+            boolean hasHighpass,
+            double highpassCutoff,
+            boolean hasLowpass,
+            double lowpassCutoff) {
+            this.length = length;
+            this.samplingFrequency = samplingFrequency;
+            this.hasHighpass = hasHighpass;
+            this.highpassCutoff = (hasHighpass ? highpassCutoff : 0);  // Unused cutoffs don't matter
+            this.hasLowpass = hasLowpass;
+            this.lowpassCutoff = (hasLowpass ? lowpassCutoff : 0);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return (length == key.length &&
+                    Double.compare(samplingFrequency, key.samplingFrequency) == 0 &&
+                    hasHighpass == key.hasHighpass &&
+                    Double.compare(highpassCutoff, key.highpassCutoff) == 0 &&
+                    hasLowpass == key.hasLowpass &&
+                    Double.compare(lowpassCutoff, key.lowpassCutoff) == 0);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = length;
+            hash = 31 * hash + Double.hashCode(samplingFrequency);
+            hash = 31 * hash + Boolean.hashCode(hasHighpass);
+            hash = 31 * hash + Double.hashCode(highpassCutoff);
+            hash = 31 * hash + Boolean.hashCode(hasLowpass);
+            hash = 31 * hash + Double.hashCode(lowpassCutoff);
+            return hash;
+        }
+    }
+
+    private static final LinkedHashMap<Key, FilterMask> masks = new LinkedHashMap<>(16, 0.75f, true);
+
+    private FilterMaskCache() {
+    }
+
+    private static long getCost(FilterMask mask) {
+        return ENTRY_OVERHEAD + mask.getMemoryUsage();
+    }
+
+    private static void shrink() {
+        Iterator<Map.Entry<Key, FilterMask>> it = masks.entrySet().iterator();
+        while (memoryUsage > memoryBudget && it.hasNext()) {
+            memoryUsage -= getCost(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    private static synchronized FilterMask lookup(Key key) {
+        FilterMask mask = masks.get(key);
+        if (mask == null) {
+            countMisses++;
+        } else {
+            countHits++;
+        }
+        return mask;
+    }
+
+    private static synchronized FilterMask store(Key key,
+                                                 FilterMask mask) {
+        FilterMask previous = masks.get(key);
+        if (previous == null) {
+            masks.put(key, mask);
+            memoryUsage += getCost(mask);
+            shrink();
+            return mask;
+        } else {
+            return previous;  // Another thread has created the same mask in the meantime
+        }
+    }
+
+    /**
+     * Get the mask of an ideal filter, computing it if it is not in
+     * the cache yet. The arguments are the same as in
+     * "FilterMask.create()".
+     *
+     * @param N The length of the signal.
+     * @param Fs The sampling frequency of the signal (i.e. "1/T").
+     * @param hasHighpass Whether a high-pass filter is to be generated.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be generated.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @return The mask.
+     */
+    public static FilterMask getMask(int N,
+                                     double Fs,
+                                     boolean hasHighpass,
+                                     double highpassCutoff,
+                                     boolean hasLowpass,
+                                     double lowpassCutoff) {
+        Key key = new Key(N, Fs, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff);
+        FilterMask mask = lookup(key);
+        if (mask == null) {
+            // Compute the mask outside of the mutex, as this is O(N)
+            mask = store(key, FilterMask.create(N, Fs, hasHighpass, highpassCutoff, hasLowpass, lowpassCutoff));
+        }
+        return mask;
+    }
+
+    /**
+     * Change the memory budget of the cache. The least recently used
+     * masks are discarded if needed.
+     * @param budget The new budget, in bytes.
+     */
+    public static synchronized void setMemoryBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException();
+        }
+        memoryBudget = budget;
+        shrink();
+    }
+
+    /**
+     * Get the memory budget of the cache.
+     * @return The budget, in bytes.
+     */
+    public static synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get an estimate of the memory that is used by the cached masks.
+     * @return The number of bytes.
+     */
+    public static synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Get the number of masks that are currently cached.
+     * @return The number of masks.
+     */
+    public static synchronized int getSize() {
+        return masks.size();
+    }
+
+    /**
+     * Get the number of requests that were served from the cache.
+     * @return The number of hits.
+     */
+    public static synchronized long getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * Get the number of requests that required computing a new mask.
+     * @return The number of misses.
+     */
+    public static synchronized long getCountMisses() {
+        return countMisses;
+    }
+
+    /**
+     * Empty the cache and reset the hit/miss counters.
+     */
+    public static synchronized void clear() {
+        masks.clear();
+        memoryUsage = 0;
+        countHits = 0;
+        countMisses = 0;
+    }
+}
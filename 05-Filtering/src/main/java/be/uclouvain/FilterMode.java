@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+/**
+ * Algorithms that can be used to filter an EEG channel.
+ */
+public enum FilterMode {
+    /**
+     * Multiplication of the spectrum by an ideal (brick-wall) mask,
+     * using the FFT of the zero-padded channel.
+     */
+    IDEAL,
+
+    /**
+     * Butterworth IIR filter applied in the time domain, in one
+     * forward pass (causal, with a non-linear phase).
+     */
+    IIR,
+
+    /**
+     * Butterworth IIR filter applied forward then backward, which
+     * cancels the phase distortion and squares the magnitude response.
+     */
+    ZERO_PHASE,
+
+    /**
+     * Linear-phase FIR filter applied by blocks using the overlap-save
+     * method, which only needs a fixed-size FFT buffer.
+     */
+    FIR;
+
+    /**
+     * Parse the name of a filter mode, as used in the REST API:
+     * "ideal", "iir", "filtfilt" or "fir".
+     * @param name The name.
+     * @return The filter mode.
+     */
+    public static FilterMode parse(String name) {
+        switch (name) {
+            case "ideal":
+                return IDEAL;
+            case "iir":
+                return IIR;
+            case "filtfilt":
+                return ZERO_PHASE;
+            case "fir":
+                return FIR;
+            default:
+                throw new IllegalArgumentException("Unknown filter mode: " + name);
+        }
+    }
+}
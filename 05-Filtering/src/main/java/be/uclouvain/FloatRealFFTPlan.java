@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Single-precision variant of "RealFFTPlan": The samples, the
+ * spectrum and the twiddle factors are stored as primitive floats,
+ * which halves the memory footprint and the memory bandwidth of the
+ * transform. The EDF samples are 16-bit integers, whose physical
+ * values are already floats (cf. "EDFTimeSeries.Channel"), so no
+ * precision is lost on the input (cf. "Precision" for the accuracy).
+ *
+ * The even and odd samples are packed as a complex signal of length
+ * "N/2", which is transformed by an iterative radix-2 FFT. Only
+ * powers of 2 are supported.
+ */
+public class FloatRealFFTPlan {
+    private final int size;
+    private final int half;
+    private final int[] bitReversal;  // Permutation of the half-length FFT
+    private final float[] cosTable;   // cos(2*pi*k/N), for k < N/2
+    private final float[] sinTable;   // sin(2*pi*k/N), for k < N/2
+    private final ThreadScratch<float[]> scratchSamples;
+    private final ThreadScratch<float[]> scratchReal;
+    private final ThreadScratch<float[]> scratchImag;
+
+    /**
+     * Create a plan for real transforms of a given size.
+     * @param size The number of real samples. Must be a power of 2,
+     * larger or equal to 2.
+     */
+    public FloatRealFFTPlan(int size) {
+        if (size < 2 ||
+            !FFTPlan.isPowerOfTwo(size)) {
+            throw new IllegalArgumentException("N must be a power of 2.");
+        }
+
+        this.size = size;
+        this.half = size / 2;
+
+        int bits = Integer.numberOfTrailingZeros(half);
+        bitReversal = new int[half];
+        for (int i = 1; i < half; i++) {
+            bitReversal[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        // The twiddle factors of the half-length FFT are "W_N^(2k)", so
+        // one table of the "N/2" first powers of "W_N" serves both steps
+        cosTable = new float[half];
+        sinTable = new float[half];
+        for (int k = 0; k < half; k++) {
+            double theta = 2.0 * Math.PI * (double) k / (double) size;
+            cosTable[k] = (float) Math.cos(theta);
+            sinTable[k] = (float) Math.sin(theta);
+        }
+
+        scratchSamples = new ThreadScratch<>(4L * size, () -> new float[size]);
+        scratchReal = new ThreadScratch<>(4L * (half + 1), () -> new float[half + 1]);
+        scratchImag = new ThreadScratch<>(4L * (half + 1), () -> new float[half + 1]);
+    }
+
+    /**
+     * Get the number of real samples that are transformed by this plan.
+     * @return The number of samples "N".
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of bins in the half spectrum.
+     * @return The number of bins, i.e. "N/2+1".
+     */
+    public int getNumberOfBins() {
+        return half + 1;
+    }
+
+    /**
+     * Get a working array of "N" samples, private to the calling
+     * thread and possibly reused across calls (its content is
+     * undefined, cf. "ThreadScratch").
+     * @return The scratch array.
+     */
+    public float[] getScratchSamples() {
+        return scratchSamples.get();
+    }
+
+    /**
+     * Get a working array for the real components of the "N/2+1"
+     * bins, private to the calling thread and possibly reused across calls.
+     * @return The scratch array.
+     */
+    public float[] getScratchReal() {
+        return scratchReal.get();
+    }
+
+    /**
+     * Get a working array for the imaginary components of the "N/2+1"
+     * bins, private to the calling thread and possibly reused across calls.
+     * @return The scratch array.
+     */
+    public float[] getScratchImag() {
+        return scratchImag.get();
+    }
+
+    // In-place complex FFT of length "N/2" (same algorithm as "FFTPlan")
+    private void transform(float[] real,
+                           float[] imag,
+                           boolean inverse) {
+        for (int i = 1; i < half; i++) {
+            int j = bitReversal[i];
+            if (j > i) {
+                float tmp = real[i];
+                real[i] = real[j];
+                real[j] = tmp;
+                tmp = imag[i];
+                imag[i] = imag[j];
+                imag[j] = tmp;
+            }
+        }
+
+        final float sign = inverse ? 1.0f : -1.0f;
+
+        for (int length = 2; length <= half; length *= 2) {
+            final int middle = length / 2;
+            final int step = size / length;  // Twiddles "W_(N/2)^j = W_N^(2j)"
+
+            for (int start = 0; start < half; start += length) {
+                for (int j = 0; j < middle; j++) {
+                    final float wr = cosTable[j * step];
+                    final float wi = sign * sinTable[j * step];
+
+                    final int a = start + j;
+                    final int b = a + middle;
+                    final float tr = real[b] * wr - imag[b] * wi;
+                    final float ti = real[b] * wi + imag[b] * wr;
+                    real[b] = real[a] - tr;
+                    imag[b] = imag[a] - ti;
+                    real[a] += tr;
+                    imag[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the half spectrum of a real signal.
+     * @param samples The "N" real samples (not modified).
+     * @param real Receives the real components of the "N/2+1" bins.
+     * @param imag Receives the imaginary components of the "N/2+1" bins.
+     */
+    public void forward(float[] samples,
+                        float[] real,
+                        float[] imag) {
+        if (samples.length < size ||
+            real.length <= half ||
+            imag.length <= half) {
+            throw new IllegalArgumentException();
+        }
+
+        for (int n = 0; n < half; n++) {
+            real[n] = samples[2 * n];
+            imag[n] = samples[2 * n + 1];
+        }
+
+        transform(real, imag, false);
+
+        // Same splitting as in "RealFFTPlan.forward()"
+        final float z0r = real[0];
+        final float z0i = imag[0];
+        real[0] = z0r + z0i;
+        imag[0] = 0;
+        real[half] = z0r - z0i;
+        imag[half] = 0;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int j = half - k;
+            final float ar = real[k];
+            final float ai = imag[k];
+            final float br = real[j];
+            final float bi = imag[j];
+
+            final float er = (ar + br) * 0.5f;
+            final float ei = (ai - bi) * 0.5f;
+            final float or = (ai + bi) * 0.5f;
+            final float oi = (br - ar) * 0.5f;
+
+            final float c = cosTable[k];
+            final float s = sinTable[k];
+
+            final float tr = c * or + s * oi;
+            final float ti = c * oi - s * or;
+            real[k] = er + tr;
+            imag[k] = ei + ti;
+            real[j] = er - tr;
+            imag[j] = ti - ei;
+        }
+    }
+
+    /**
+     * Reconstruct a real signal from its half spectrum.
+     * @param real The real components of the "N/2+1" bins
+     * (overwritten, as they are used as working memory).
+     * @param imag The imaginary components of the "N/2+1" bins
+     * (overwritten, as they are used as working memory).
+     * @param samples Receives the "N" real samples.
+     */
+    public void inverse(float[] real,
+                        float[] imag,
+                        float[] samples) {
+        if (samples.length < size ||
+            real.length <= half ||
+            imag.length <= half) {
+            throw new IllegalArgumentException();
+        }
+
+        // Same merging as in "RealFFTPlan.inverse()"
+        final float x0r = real[0];
+        final float x0i = imag[0];
+        final float xmr = real[half];
+        final float xmi = imag[half];
+        real[0] = (x0r + xmr) * 0.5f - (x0i + xmi) * 0.5f;
+        imag[0] = (x0i - xmi) * 0.5f + (x0r - xmr) * 0.5f;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int j = half - k;
+            final float ar = real[k];
+            final float ai = imag[k];
+            final float br = real[j];
+            final float bi = imag[j];
+
+            final float c = cosTable[k];
+            final float s = sinTable[k];
+
+            final float er = (ar + br) * 0.5f;
+            final float ei = (ai - bi) * 0.5f;
+
+            final float dr = (ar - br) * 0.5f;
+            final float di = (ai + bi) * 0.5f;
+            final float or = dr * c - di * s;
+            final float oi = dr * s + di * c;
+
+            real[k] = er - oi;
+            imag[k] = ei + or;
+            real[j] = er + oi;
+            imag[j] = or - ei;
+        }
+
+        transform(real, imag, true);
+
+        final float scaling = 1.0f / (float) half;
+        for (int n = 0; n < half; n++) {
+            samples[2 * n] = real[n] * scaling;
+            samples[2 * n + 1] = imag[n] * scaling;
+        }
+    }
+}
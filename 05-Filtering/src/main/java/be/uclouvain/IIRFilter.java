@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Butterworth IIR filter, implemented as a cascade of second-order
+ * sections (biquads) in transposed direct form II. The filter is
+ * designed using the bilinear transform, with the cutoff frequencies
+ * pre-warped so that the gain at each cutoff is exactly -3 dB.
+ *
+ * Filtering runs in O(N), with a state of two numbers per section:
+ * The samples can be pushed one by one while they are decoded, which
+ * doesn't require the full signal to be in memory.
+ *
+ * The state of the filter is mutable, so one object must not be
+ * shared by concurrent threads.
+ */
+public class IIRFilter {
+    /**
+     * Default order of the high-pass and low-pass filters.
+     */
+    public static final int DEFAULT_ORDER = 4;
+
+    // Coefficients of the sections, with "a0" normalized to 1
+    private final double[] b0;
+    private final double[] b1;
+    private final double[] b2;
+    private final double[] a1;
+    private final double[] a2;
+    private final boolean isZero;
+
+    // State of the sections
+    private final double[] z1;
+    private final double[] z2;
+
+    private IIRFilter(List<double[]> sections,
+                      boolean isZero) {
+        int count = sections.size();
+        b0 = new double[count];
+        b1 = new double[count];
+        b2 = new double[count];
+        a1 = new double[count];
+        a2 = new double[count];
+        for (int i = 0; i < count; i++) {
+            double[] section = sections.get(i);
+            b0[i] = section[0];
+            b1[i] = section[1];
+            b2[i] = section[2];
+            a1[i] = section[3];
+            a2[i] = section[4];
+        }
+
+        this.isZero = isZero;
+        z1 = new double[count];
+        z2 = new double[count];
+    }
+
+    /**
+     * Design a Butterworth low-pass, high-pass or band-pass filter.
+     * The conventions for the cutoff frequencies are the same as in
+     * "App.createFilter()": If neither "hasHighpass" nor "hasLowpass"
+     * is true, the filter is the identity, and if "highpassCutoff >
+     * lowpassCutoff", the output is zero. A band-pass filter is the
+     * cascade of a high-pass and a low-pass filter.
+     *
+     * @param Fs The sampling frequency of the signal.
+     * @param hasHighpass Whether a high-pass filter is to be used.
+     * @param highpassCutoff Cutoff frequency for high-pass filtering.
+     * @param hasLowpass Whether a low-pass filter is to be used.
+     * @param lowpassCutoff Cutoff frequency for low-pass filtering.
+     * @param order The order of the high-pass and of the low-pass filters.
+     * @return The filter, with an empty state.
+     */
+    public static IIRFilter createButterworth(double Fs,
+                                              boolean hasHighpass,
+                                              double highpassCutoff,
+                                              boolean hasLowpass,
+                                              double lowpassCutoff,
+                                              int order) {
+        if (Fs <= 0 ||
+            order < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        final double nyquist = Fs / 2.0;
+        List<double[]> sections = new ArrayList<>();
+
+        if ((hasHighpass && hasLowpass && highpassCutoff > lowpassCutoff) ||
+            (hasHighpass && highpassCutoff >= nyquist) ||
+            (hasLowpass && lowpassCutoff <= 0)) {
+            return new IIRFilter(sections, true);
+        }
+
+        // A cutoff outside of "]0,Fs/2[" lets the whole spectrum pass
+        if (hasHighpass && highpassCutoff > 0) {
+            addSections(sections, Fs, highpassCutoff, order, true);
+        }
+
+        if (hasLowpass && lowpassCutoff < nyquist) {
+            addSections(sections, Fs, lowpassCutoff, order, false);
+        }
+
+        return new IIRFilter(sections, false);
+    }
+
+    private static void addSections(List<double[]> sections,
+                                    double Fs,
+                                    double cutoff,
+                                    int order,
+                                    boolean isHighpass) {
+        final double w0 = 2.0 * Math.PI * cutoff / Fs;
+        final double cosW0 = Math.cos(w0);
+        final double sinW0 = Math.sin(w0);
+
+        // The poles of the analog Butterworth filter are grouped by
+        // conjugate pairs, the pair "k" having a quality factor of
+        // "1 / (2 * sin((2k+1) * pi / (2 * order)))"
+        for (int k = 0; k < order / 2; k++) {
+            final double q = 1.0 / (2.0 * Math.sin((2.0 * k + 1.0) * Math.PI / (2.0 * order)));
+            final double alpha = sinW0 / (2.0 * q);
+            final double a0 = 1.0 + alpha;
+
+            final double gain = (isHighpass ? (1.0 + cosW0) : (1.0 - cosW0)) / 2.0;
+            sections.add(new double[] {
+                    gain / a0,
+                    (isHighpass ? -2.0 : 2.0) * gain / a0,
+                    gain / a0,
+                    -2.0 * cosW0 / a0,
+                    (1.0 - alpha) / a0
+                });
+        }
+
+        // Odd orders have one additional real pole (first-order section)
+        if (order % 2 == 1) {
+            final double t = Math.tan(w0 / 2.0);
+            final double a0 = 1.0 + t;
+            if (isHighpass) {
+                sections.add(new double[] { 1.0 / a0, -1.0 / a0, 0, (t - 1.0) / a0, 0 });
+            } else {
+                sections.add(new double[] { t / a0, t / a0, 0, (t - 1.0) / a0, 0 });
+            }
+        }
+    }
+
+    /**
+     * Reset the state of the filter, as if the input had been equal
+     * to some constant value forever (i.e. the filter is in its
+     * steady state). This avoids the transient that would be caused
+     * by a signal starting far from zero.
+     * @param value The constant input value.
+     */
+    public void reset(double value) {
+        double x = value;
+        for (int s = 0; s < b0.length; s++) {
+            // Output of the section for a constant input, given its DC gain
+            final double y = x * (b0[s] + b1[s] + b2[s]) / (1.0 + a1[s] + a2[s]);
+            z2[s] = b2[s] * x - a2[s] * y;
+            z1[s] = b1[s] * x - a1[s] * y + z2[s];
+            x = y;
+        }
+    }
+
+    /**
+     * Filter one sample, updating the state of the filter.
+     * @param value The input sample.
+     * @return The output sample.
+     */
+    public double process(double value) {
+        if (isZero) {
+            return 0;
+        }
+
+        double x = value;
+        for (int s = 0; s < b0.length; s++) {
+            final double y = b0[s] * x + z1[s];
+            z1[s] = b1[s] * x - a1[s] * y + z2[s];
+            z2[s] = b2[s] * x - a2[s] * y;
+            x = y;
+        }
+        return x;
+    }
+
+    /**
+     * Filter a range of samples in place, continuing from the current
+     * state of the filter.
+     * @param buffer The samples.
+     * @param from Index of the first sample (inclusive).
+     * @param to Index of the last sample (exclusive).
+     */
+    public void process(double[] buffer,
+                        int from,
+                        int to) {
+        for (int i = from; i < to; i++) {
+            buffer[i] = process(buffer[i]);
+        }
+    }
+
+    /**
+     * Filter a range of samples in place, in the backward direction,
+     * continuing from the current state of the filter.
+     * @param buffer The samples.
+     * @param from Index of the first sample (inclusive).
+     * @param to Index of the last sample (exclusive).
+     */
+    public void processBackward(double[] buffer,
+                                int from,
+                                int to) {
+        for (int i = to - 1; i >= from; i--) {
+            buffer[i] = process(buffer[i]);
+        }
+    }
+
+    /**
+     * Causal filtering of a range of samples, in place. The filter
+     * starts in the steady state of the first sample, so that an
+     * offset in the recording doesn't cause a transient.
+     * @param buffer The samples.
+     * @param from Index of the first sample (inclusive).
+     * @param to Index of the last sample (exclusive).
+     */
+    public void filter(double[] buffer,
+                       int from,
+                       int to) {
+        if (from >= to) {
+            return;
+        }
+
+        reset(buffer[from]);
+        process(buffer, from, to);
+    }
+
+    /**
+     * Zero-phase filtering of a range of samples, in place: The
+     * filter is applied forward, then backward, both passes starting
+     * in their steady state.
+     * @param buffer The samples.
+     * @param from Index of the first sample (inclusive).
+     * @param to Index of the last sample (exclusive).
+     */
+    public void filtfilt(double[] buffer,
+                         int from,
+                         int to) {
+        if (from >= to) {
+            return;
+        }
+
+        filter(buffer, from, to);
+        reset(buffer[to - 1]);
+        processBackward(buffer, from, to);
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Arrays;
+
+
+/**
+ * Discrete wavelet transform computed in place using the lifting
+ * scheme (cf. "Wavelet"), on primitive arrays of any length (not only
+ * powers of 2). Contrarily to the FFT, the coefficients are localized
+ * in time, and the multi-level decomposition runs in O(N) without any
+ * allocation.
+ *
+ * The coefficients are stored in the interleaved layout of the
+ * in-place transform: The level "j" (starting at 0) works on the
+ * samples whose index is a multiple of "2^j". After it, the detail
+ * coefficients of level "j" are at the odd multiples of "2^j", and
+ * the approximation coefficients are at the multiples of "2^(j+1)".
+ * The signal is extended symmetrically at its boundaries.
+ */
+public class LiftingDWT {
+    /**
+     * Default number of levels of the decomposition.
+     */
+    public static final int DEFAULT_LEVELS = 6;
+
+    private LiftingDWT() {
+    }
+
+    /**
+     * Get the number of samples that are processed by one level.
+     * @param length The length of the signal.
+     * @param level The level (starting at 0).
+     * @return The number of samples, i.e. "ceil(length / 2^level)".
+     */
+    public static int getNumberOfSamples(int length,
+                                         int level) {
+        return (int) (((long) length + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Get the number of detail coefficients of one level.
+     * @param length The length of the signal.
+     * @param level The level (starting at 0).
+     * @return The number of detail coefficients.
+     */
+    public static int getNumberOfDetails(int length,
+                                         int level) {
+        return getNumberOfSamples(length, level) / 2;
+    }
+
+    /**
+     * Get the maximum number of levels of the decomposition of a
+     * signal, i.e. until only one approximation coefficient is left.
+     * @param length The length of the signal.
+     * @return The number of levels.
+     */
+    public static int getMaxLevels(int length) {
+        int levels = 0;
+        while (levels < 30 &&
+               getNumberOfSamples(length, levels) >= 2) {
+            levels++;
+        }
+        return levels;
+    }
+
+    private static void checkArguments(double[] data,
+                                       int length,
+                                       int levels) {
+        if (length < 0 ||
+            length > data.length ||
+            levels < 0 ||
+            levels > getMaxLevels(length)) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Compute the multi-level forward transform, in place.
+     * @param data The samples (overwritten by the coefficients).
+     * @param length The number of samples.
+     * @param wavelet The wavelet.
+     * @param levels The number of levels (at most "getMaxLevels()").
+     */
+    public static void forward(double[] data,
+                               int length,
+                               Wavelet wavelet,
+                               int levels) {
+        checkArguments(data, length, levels);
+
+        for (int level = 0; level < levels; level++) {
+            final int stride = 1 << level;
+            final int count = getNumberOfSamples(length, level);
+
+            for (int step = 0; step < wavelet.getNumberOfSteps(); step++) {
+                lift(data, count, stride, wavelet, step, 1.0);
+            }
+
+            scale(data, count, stride, wavelet.getEvenScale(), wavelet.getOddScale());
+        }
+    }
+
+    /**
+     * Compute the multi-level inverse transform, in place.
+     * @param data The coefficients (overwritten by the samples).
+     * @param length The number of samples.
+     * @param wavelet The wavelet.
+     * @param levels The number of levels used by "forward()".
+     */
+    public static void inverse(double[] data,
+                               int length,
+                               Wavelet wavelet,
+                               int levels) {
+        checkArguments(data, length, levels);
+
+        for (int level = levels - 1; level >= 0; level--) {
+            final int stride = 1 << level;
+            final int count = getNumberOfSamples(length, level);
+
+            scale(data, count, stride, 1.0 / wavelet.getEvenScale(), 1.0 / wavelet.getOddScale());
+
+            for (int step = wavelet.getNumberOfSteps() - 1; step >= 0; step--) {
+                lift(data, count, stride, wavelet, step, -1.0);
+            }
+        }
+    }
+
+    // Apply one lifting step to the "count" samples at "data[i * stride]".
+    // The neighbors outside of the signal are clamped, which
+    // corresponds to a whole-sample symmetric extension.
+    private static void lift(double[] data,
+                             int count,
+                             int stride,
+                             Wavelet wavelet,
+                             int step,
+                             double sign) {
+        final int countEven = (count + 1) / 2;
+        final int countOdd = count / 2;
+        final double previous = sign * wavelet.getWeight(step, -1);
+        final double current = sign * wavelet.getWeight(step, 0);
+        final double next = sign * wavelet.getWeight(step, 1);
+        final int pair = 2 * stride;
+
+        if (countOdd == 0) {
+            return;
+        }
+
+        if (wavelet.isPredict(step)) {
+            // Odd sample "j" is at "(2j+1) * stride", its even neighbors at "2j * stride" and "(2j+2) * stride"
+            for (int j = 0; j < countOdd; j++) {
+                final int e = j * pair;
+                data[e + stride] += (previous * data[Math.max(j - 1, 0) * pair] +
+                                     current * data[e] +
+                                     next * data[Math.min(j + 1, countEven - 1) * pair]);
+            }
+        } else {
+            for (int j = 0; j < countEven; j++) {
+                final int e = j * pair;
+                data[e] += (previous * data[Math.max(j - 1, 0) * pair + stride] +
+                            current * data[Math.min(j, countOdd - 1) * pair + stride] +
+                            next * data[Math.min(j + 1, countOdd - 1) * pair + stride]);
+            }
+        }
+    }
+
+    private static void scale(double[] data,
+                              int count,
+                              int stride,
+                              double evenScale,
+                              double oddScale) {
+        if (count < 2) {
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            data[i * stride] *= (i % 2 == 0 ? evenScale : oddScale);
+        }
+    }
+
+    /**
+     * Copy the detail coefficients of one level out of the
+     * interleaved layout.
+     * @param data The coefficients computed by "forward()".
+     * @param length The length of the signal.
+     * @param level The level (starting at 0).
+     * @param target Receives the "getNumberOfDetails()" coefficients.
+     */
+    public static void getDetails(double[] data,
+                                  int length,
+                                  int level,
+                                  double[] target) {
+        final int stride = 1 << level;
+        final int count = getNumberOfDetails(length, level);
+        for (int j = 0; j < count; j++) {
+            target[j] = data[(2 * j + 1) * stride];
+        }
+    }
+
+    /**
+     * Copy the approximation coefficients that are left after some
+     * levels out of the interleaved layout.
+     * @param data The coefficients computed by "forward()".
+     * @param length The length of the signal.
+     * @param levels The number of levels used by "forward()".
+     * @param target Receives the "getNumberOfSamples(length, levels)"
+     * coefficients.
+     */
+    public static void getApproximation(double[] data,
+                                        int length,
+                                        int levels,
+                                        double[] target) {
+        final int stride = 1 << levels;
+        final int count = getNumberOfSamples(length, levels);
+        for (int j = 0; j < count; j++) {
+            target[j] = data[j * stride];
+        }
+    }
+
+    /**
+     * Estimate the standard deviation of the noise from the detail
+     * coefficients of the finest level, using the median absolute
+     * deviation: "sigma = median(|d|) / 0.6745".
+     * @param data The coefficients computed by "forward()".
+     * @param length The length of the signal.
+     * @return The estimated standard deviation.
+     */
+    public static double estimateNoise(double[] data,
+                                       int length) {
+        final int count = getNumberOfDetails(length, 0);
+        if (count == 0) {
+            return 0;
+        }
+
+        double[] magnitudes = new double[count];
+        for (int j = 0; j < count; j++) {
+            magnitudes[j] = Math.abs(data[2 * j + 1]);
+        }
+        Arrays.sort(magnitudes);
+
+        final double median = (count % 2 == 1 ? magnitudes[count / 2] :
+                               (magnitudes[count / 2 - 1] + magnitudes[count / 2]) / 2.0);
+        return median / 0.6745;
+    }
+
+    /**
+     * Denoise a signal, in place, by soft thresholding of its detail
+     * coefficients at all the levels of the decomposition. The
+     * approximation coefficients are kept as such.
+     * @param data The samples (overwritten by the denoised signal).
+     * @param length The number of samples.
+     * @param wavelet The wavelet.
+     * @param levels The number of levels.
+     * @param threshold The threshold, or a negative value to use the
+     * universal threshold "sigma * sqrt(2 * ln(N))" of Donoho and
+     * Johnstone, where "sigma" is given by "estimateNoise()".
+     * @return The threshold that was applied.
+     */
+    public static double denoise(double[] data,
+                                 int length,
+                                 Wavelet wavelet,
+                                 int levels,
+                                 double threshold) {
+        forward(data, length, wavelet, levels);
+
+        if (threshold < 0) {
+            threshold = (length < 2 ? 0 : estimateNoise(data, length) * Math.sqrt(2.0 * Math.log(length)));
+        }
+
+        for (int level = 0; level < levels; level++) {
+            final int stride = 1 << level;
+            final int count = getNumberOfDetails(length, level);
+            for (int j = 0; j < count; j++) {
+                final int index = (2 * j + 1) * stride;
+                final double value = data[index];
+                if (value > threshold) {
+                    data[index] = value - threshold;
+                } else if (value < -threshold) {
+                    data[index] = value + threshold;
+                } else {
+                    data[index] = 0;
+                }
+            }
+        }
+
+        inverse(data, length, wavelet, levels);
+        return threshold;
+    }
+}
@@ -0,0 +1,393 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Arrays;
+
+
+/**
+ * Fast Fourier Transform for sizes whose only prime factors are 2, 3
+ * and 5 (aka. "5-smooth" sizes), using the self-sorting Stockham
+ * formulation with radix-4, radix-2, radix-3 and radix-5 stages. Such
+ * sizes are dense among the integers, which allows to transform a
+ * signal without padding it up to the next power of 2.
+ *
+ * The twiddle factors of each stage are computed once, when the plan
+ * is created. Plans can be shared by several threads.
+ */
+public class MixedRadixFFTPlan implements ComplexFFT {
+    private final int size;
+    private final int[] radices;
+    private final double[][] twiddleReal;  // For each stage, W_n^(p*k) at index "p*(P-1)+k-1"
+    private final double[][] twiddleImag;
+    private final double[] rootsReal;      // cos(2*pi*r/5), used by the radix-5 stages
+    private final double[] rootsImag;      // -sin(2*pi*r/5)
+    private final ThreadScratch<SignalBuffer> scratch;
+
+    /**
+     * Check whether some integer only has 2, 3 and 5 as prime factors.
+     * @param n The integer.
+     * @return `true` iff. "n" is strictly positive and 5-smooth.
+     */
+    public static boolean isSmooth(int n) {
+        if (n <= 0) {
+            return false;
+        }
+        for (int p : new int[] { 2, 3, 5 }) {
+            while (n % p == 0) {
+                n /= p;
+            }
+        }
+        return n == 1;
+    }
+
+    /**
+     * Get the smallest 5-smooth integer that is larger or equal to
+     * some integer.
+     * @param n The integer (must be strictly positive).
+     * @return The 5-smooth integer.
+     */
+    public static int nextSmoothSize(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (long f5 = 1; ; f5 *= 5) {
+            for (long f3 = f5; ; f3 *= 3) {
+                long candidate = f3;
+                while (candidate < n) {
+                    candidate *= 2;
+                }
+                best = Math.min(best, candidate);
+                if (f3 >= n) {
+                    break;
+                }
+            }
+            if (f5 >= n) {
+                break;
+            }
+        }
+
+        if (best > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        return (int) best;
+    }
+
+    /**
+     * Create a plan for transforms of a given size.
+     * @param size The number of items in the transformed vectors.
+     * Its only prime factors must be 2, 3 and 5.
+     */
+    public MixedRadixFFTPlan(int size) {
+        if (!isSmooth(size)) {
+            throw new IllegalArgumentException("N must only have 2, 3 and 5 as prime factors.");
+        }
+
+        this.size = size;
+
+        int[] factors = new int[32];
+        int countFactors = 0;
+        int n = size;
+        for (int p : new int[] { 4, 2, 3, 5 }) {
+            while (n % p == 0) {
+                factors[countFactors++] = p;
+                n /= p;
+            }
+        }
+        radices = Arrays.copyOf(factors, countFactors);
+
+        twiddleReal = new double[countFactors][];
+        twiddleImag = new double[countFactors][];
+        n = size;
+        for (int stage = 0; stage < countFactors; stage++) {
+            final int radix = radices[stage];
+            final int m = n / radix;
+            twiddleReal[stage] = new double[m * (radix - 1)];
+            twiddleImag[stage] = new double[m * (radix - 1)];
+            for (int p = 0; p < m; p++) {
+                for (int k = 1; k < radix; k++) {
+                    double theta = 2.0 * Math.PI * (double) ((long) p * k % n) / (double) n;
+                    twiddleReal[stage][p * (radix - 1) + k - 1] = Math.cos(theta);
+                    twiddleImag[stage][p * (radix - 1) + k - 1] = -Math.sin(theta);
+                }
+            }
+            n = m;
+        }
+
+        rootsReal = new double[5];
+        rootsImag = new double[5];
+        for (int r = 0; r < 5; r++) {
+            rootsReal[r] = Math.cos(2.0 * Math.PI * (double) r / 5.0);
+            rootsImag[r] = -Math.sin(2.0 * Math.PI * (double) r / 5.0);
+        }
+
+        scratch = new ThreadScratch<>(16L * size, () -> new SignalBuffer(size));
+    }
+
+    /**
+     * Get the size of the transforms computed by this plan.
+     * @return The number of items.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Compute the forward FFT, in place.
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    public void forward(double[] real,
+                        double[] imag) {
+        if (real.length < size ||
+            imag.length < size) {
+            throw new IllegalArgumentException();
+        }
+
+        SignalBuffer work = scratch.get();
+        double[] srcReal = real;
+        double[] srcImag = imag;
+        double[] dstReal = work.getReal();
+        double[] dstImag = work.getImag();
+
+        int n = size;
+        int s = 1;
+        long reads = 0;
+        for (int stage = 0; stage < radices.length; stage++) {
+            final int radix = radices[stage];
+            final int m = n / radix;
+
+            switch (radix) {
+                case 2:
+                    reads += radix2(n, s, srcReal, srcImag, dstReal, dstImag, twiddleReal[stage], twiddleImag[stage]);
+                    break;
+                case 3:
+                    reads += radix3(n, s, srcReal, srcImag, dstReal, dstImag, twiddleReal[stage], twiddleImag[stage]);
+                    break;
+                case 4:
+                    reads += radix4(n, s, srcReal, srcImag, dstReal, dstImag, twiddleReal[stage], twiddleImag[stage]);
+                    break;
+                default:
+                    reads += radix5(n, s, srcReal, srcImag, dstReal, dstImag, twiddleReal[stage], twiddleImag[stage]);
+                    break;
+            }
+
+            double[] tmp = srcReal;
+            srcReal = dstReal;
+            dstReal = tmp;
+            tmp = srcImag;
+            srcImag = dstImag;
+            dstImag = tmp;
+
+            n = m;
+            s *= radix;
+        }
+
+        if (srcReal != real) {
+            System.arraycopy(srcReal, 0, real, 0, size);
+            System.arraycopy(srcImag, 0, imag, 0, size);
+        }
+
+        // Report the work done by the butterflies, for the complexity tests
+        Signal.countBulkReads(reads);
+    }
+
+    /**
+     * Compute the inverse FFT, in place. The output is scaled by
+     * "1/N", so that "inverse(forward(x)) == x".
+     * @param real The real components (overwritten by the output).
+     * @param imag The imaginary components (overwritten by the output).
+     */
+    public void inverse(double[] real,
+                        double[] imag) {
+        // "IFFT(x) = conj(FFT(conj(x))) / N"
+        for (int i = 0; i < size; i++) {
+            imag[i] = -imag[i];
+        }
+
+        forward(real, imag);
+
+        final double scaling = 1.0 / (double) size;
+        for (int i = 0; i < size; i++) {
+            real[i] *= scaling;
+            imag[i] *= -scaling;
+        }
+    }
+
+    private static long radix2(int n, int s,
+                               double[] xr, double[] xi,
+                               double[] yr, double[] yi,
+                               double[] wr, double[] wi) {
+        final int m = n / 2;
+        long reads = 0;
+        for (int p = 0; p < m; p++) {
+            final double w1r = wr[p];
+            final double w1i = wi[p];
+            for (int q = 0; q < s; q++) {
+                final int i0 = q + s * p;
+                final int i1 = i0 + s * m;
+                final double ar = xr[i0] - xr[i1];
+                final double ai = xi[i0] - xi[i1];
+                final int o = q + s * 2 * p;
+                yr[o] = xr[i0] + xr[i1];
+                yi[o] = xi[i0] + xi[i1];
+                yr[o + s] = ar * w1r - ai * w1i;
+                yi[o + s] = ar * w1i + ai * w1r;
+                reads += 2;
+            }
+        }
+        return reads;
+    }
+
+    private static long radix3(int n, int s,
+                               double[] xr, double[] xi,
+                               double[] yr, double[] yi,
+                               double[] wr, double[] wi) {
+        final double c = Math.sqrt(3.0) / 2.0;
+        final int m = n / 3;
+        long reads = 0;
+        for (int p = 0; p < m; p++) {
+            final double w1r = wr[2 * p];
+            final double w1i = wi[2 * p];
+            final double w2r = wr[2 * p + 1];
+            final double w2i = wi[2 * p + 1];
+            for (int q = 0; q < s; q++) {
+                final int i0 = q + s * p;
+                final int i1 = i0 + s * m;
+                final int i2 = i1 + s * m;
+                final double tr = xr[i1] + xr[i2];
+                final double ti = xi[i1] + xi[i2];
+                final double dr = xr[i1] - xr[i2];
+                final double di = xi[i1] - xi[i2];
+                final double hr = xr[i0] - tr / 2.0;
+                final double hi = xi[i0] - ti / 2.0;
+                final double b1r = hr + c * di;
+                final double b1i = hi - c * dr;
+                final double b2r = hr - c * di;
+                final double b2i = hi + c * dr;
+                final int o = q + s * 3 * p;
+                yr[o] = xr[i0] + tr;
+                yi[o] = xi[i0] + ti;
+                yr[o + s] = b1r * w1r - b1i * w1i;
+                yi[o + s] = b1r * w1i + b1i * w1r;
+                yr[o + 2 * s] = b2r * w2r - b2i * w2i;
+                yi[o + 2 * s] = b2r * w2i + b2i * w2r;
+                reads += 3;
+            }
+        }
+        return reads;
+    }
+
+    private static long radix4(int n, int s,
+                               double[] xr, double[] xi,
+                               double[] yr, double[] yi,
+                               double[] wr, double[] wi) {
+        final int m = n / 4;
+        long reads = 0;
+        for (int p = 0; p < m; p++) {
+            final double w1r = wr[3 * p];
+            final double w1i = wi[3 * p];
+            final double w2r = wr[3 * p + 1];
+            final double w2i = wi[3 * p + 1];
+            final double w3r = wr[3 * p + 2];
+            final double w3i = wi[3 * p + 2];
+            for (int q = 0; q < s; q++) {
+                final int i0 = q + s * p;
+                final int i1 = i0 + s * m;
+                final int i2 = i1 + s * m;
+                final int i3 = i2 + s * m;
+                final double t0r = xr[i0] + xr[i2];
+                final double t0i = xi[i0] + xi[i2];
+                final double t1r = xr[i0] - xr[i2];
+                final double t1i = xi[i0] - xi[i2];
+                final double t2r = xr[i1] + xr[i3];
+                final double t2i = xi[i1] + xi[i3];
+                final double t3r = xr[i1] - xr[i3];
+                final double t3i = xi[i1] - xi[i3];
+                final double b1r = t1r + t3i;
+                final double b1i = t1i - t3r;
+                final double b2r = t0r - t2r;
+                final double b2i = t0i - t2i;
+                final double b3r = t1r - t3i;
+                final double b3i = t1i + t3r;
+                final int o = q + s * 4 * p;
+                yr[o] = t0r + t2r;
+                yi[o] = t0i + t2i;
+                yr[o + s] = b1r * w1r - b1i * w1i;
+                yi[o + s] = b1r * w1i + b1i * w1r;
+                yr[o + 2 * s] = b2r * w2r - b2i * w2i;
+                yi[o + 2 * s] = b2r * w2i + b2i * w2r;
+                yr[o + 3 * s] = b3r * w3r - b3i * w3i;
+                yi[o + 3 * s] = b3r * w3i + b3i * w3r;
+                reads += 4;
+            }
+        }
+        return reads;
+    }
+
+    private long radix5(int n, int s,
+                        double[] xr, double[] xi,
+                        double[] yr, double[] yi,
+                        double[] wr, double[] wi) {
+        final int m = n / 5;
+        final double[] ar = new double[5];
+        final double[] ai = new double[5];
+        long reads = 0;
+        for (int p = 0; p < m; p++) {
+            for (int q = 0; q < s; q++) {
+                for (int j = 0; j < 5; j++) {
+                    ar[j] = xr[q + s * (p + j * m)];
+                    ai[j] = xi[q + s * (p + j * m)];
+                }
+
+                final int o = q + s * 5 * p;
+                for (int k = 0; k < 5; k++) {
+                    double br = 0;
+                    double bi = 0;
+                    for (int j = 0; j < 5; j++) {
+                        final int r = (j * k) % 5;
+                        br += ar[j] * rootsReal[r] - ai[j] * rootsImag[r];
+                        bi += ar[j] * rootsImag[r] + ai[j] * rootsReal[r];
+                    }
+
+                    if (k == 0) {
+                        yr[o] = br;
+                        yi[o] = bi;
+                    } else {
+                        final double twr = wr[4 * p + k - 1];
+                        final double twi = wi[4 * p + k - 1];
+                        yr[o + k * s] = br * twr - bi * twi;
+                        yi[o + k * s] = br * twi + bi * twr;
+                    }
+                }
+                reads += 5;
+            }
+        }
+        return reads;
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.io.IOException;
+
+
+/**
+ * Streaming convolution of a signal with a FIR kernel, using the
+ * overlap-save method. The samples are pushed as they become
+ * available, and are transformed by blocks using one real FFT of
+ * fixed size: The memory is constant, whatever the length of the
+ * signal. Each time a block has been filtered, it is passed to a
+ * consumer, so that the first results are available before the end
+ * of the signal.
+ *
+ * The kernel is assumed to be symmetric (linear phase), and its delay
+ * is compensated: The "i"-th output sample corresponds to the "i"-th
+ * input sample, and there are as many output samples as input samples.
+ */
+public class OverlapSaveFilter {
+    /**
+     * Callback receiving the blocks of filtered samples, in order.
+     */
+    public interface BlockConsumer {
+        /**
+         * Receive one block of filtered samples. The array is reused
+         * by the filter, so its content must be copied if it is to be
+         * kept after the call.
+         * @param samples The array containing the samples.
+         * @param offset Index of the first sample in the array.
+         * @param count Number of samples in the block.
+         * @throws IOException If the samples cannot be written.
+         */
+        void accept(double[] samples,
+                    int offset,
+                    int count) throws IOException;
+    }
+
+    private final RealFFTPlan plan;
+    private final int fftSize;
+    private final int overlap;  // Number of taps minus one
+    private final int delay;
+    private final double[] kernelReal;
+    private final double[] kernelImag;
+    private final double[] input;
+    private final double[] output;
+    private final BlockConsumer consumer;
+    private int fill;
+    private long countPushed;
+    private long countEmitted;
+    private long countSkipped;
+    private boolean isFlushed;
+
+    /**
+     * Get the default size of the FFT for a given kernel. The FFT
+     * covers four times the kernel, so that three quarters of each
+     * transform produce new samples.
+     * @param kernelLength The number of taps.
+     * @return The size of the FFT (a power of 2).
+     */
+    public static int getDefaultFFTSize(int kernelLength) {
+        return FFTPlan.nextPowerOfTwo(4 * Math.max(kernelLength, 2));
+    }
+
+    /**
+     * Create a streaming filter.
+     * @param kernel The taps of the FIR filter.
+     * @param fftSize The size of the FFT, which must be larger than
+     * the number of taps.
+     * @param consumer The callback receiving the filtered blocks.
+     */
+    public OverlapSaveFilter(double[] kernel,
+                             int fftSize,
+                             BlockConsumer consumer) {
+        if (kernel.length == 0 ||
+            fftSize <= kernel.length) {
+            throw new IllegalArgumentException("The FFT must be longer than the kernel");
+        }
+
+        this.plan = FFTPlanCache.getRealPlan(fftSize);
+        this.fftSize = fftSize;
+        this.overlap = kernel.length - 1;
+        this.delay = overlap / 2;
+        this.consumer = consumer;
+
+        double[] samples = new double[fftSize];
+        System.arraycopy(kernel, 0, samples, 0, kernel.length);
+        kernelReal = new double[plan.getNumberOfBins()];
+        kernelImag = new double[plan.getNumberOfBins()];
+        plan.forward(samples, kernelReal, kernelImag);
+
+        // The history of "overlap" samples starts with zeros
+        input = new double[fftSize];
+        output = new double[fftSize];
+        fill = overlap;
+    }
+
+    /**
+     * Get the number of new samples that are produced by each FFT.
+     * @return The block size.
+     */
+    public int getBlockSize() {
+        return fftSize - overlap;
+    }
+
+    /**
+     * Push one sample into the filter.
+     * @param value The sample.
+     * @throws IOException If the consumer failed.
+     */
+    public void push(double value) throws IOException {
+        if (isFlushed) {
+            throw new IllegalStateException("The filter was already flushed");
+        }
+
+        input[fill] = value;
+        fill++;
+        countPushed++;
+
+        if (fill == fftSize) {
+            processBlock();
+        }
+    }
+
+    /**
+     * Push a range of samples into the filter.
+     * @param values The array containing the samples.
+     * @param offset Index of the first sample in the array.
+     * @param count Number of samples.
+     * @throws IOException If the consumer failed.
+     */
+    public void push(double[] values,
+                     int offset,
+                     int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            push(values[offset + i]);
+        }
+    }
+
+    /**
+     * Signal the end of the input, and emit the remaining samples.
+     * @throws IOException If the consumer failed.
+     */
+    public void flush() throws IOException {
+        if (isFlushed) {
+            return;
+        }
+
+        // Push zeros until the delayed output reaches the last input
+        final long target = countPushed;
+        while (countEmitted < target) {
+            input[fill] = 0;
+            fill++;
+            if (fill == fftSize) {
+                processBlock();
+            }
+        }
+
+        isFlushed = true;
+    }
+
+    private void processBlock() throws IOException {
+        double[] samples = plan.getScratchSamples();
+        System.arraycopy(input, 0, samples, 0, fftSize);
+
+        SignalBuffer spectrum = plan.getScratchSpectrum();
+        double[] real = spectrum.getReal();
+        double[] imag = spectrum.getImag();
+        plan.forward(samples, real, imag);
+
+        for (int k = 0; k < plan.getNumberOfBins(); k++) {
+            double re = real[k] * kernelReal[k] - imag[k] * kernelImag[k];
+            double im = real[k] * kernelImag[k] + imag[k] * kernelReal[k];
+            real[k] = re;
+            imag[k] = im;
+        }
+
+        plan.inverse(real, imag, output);
+
+        // The first "overlap" outputs are corrupted by the circular
+        // convolution, and the history for the next block is the end
+        // of the current input
+        System.arraycopy(input, fftSize - overlap, input, 0, overlap);
+        fill = overlap;
+
+        int offset = overlap;
+        int count = fftSize - overlap;
+
+        // Skip the delay of the linear-phase kernel
+        if (countSkipped < delay) {
+            int skip = (int) Math.min(delay - countSkipped, count);
+            countSkipped += skip;
+            offset += skip;
+            count -= skip;
+        }
+
+        // Never emit more samples than were pushed
+        count = (int) Math.min(count, countPushed - countEmitted);
+
+        if (count > 0) {
+            countEmitted += count;
+            consumer.accept(output, offset, count);
+        }
+    }
+}
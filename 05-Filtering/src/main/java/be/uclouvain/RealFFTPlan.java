@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * FFT of real-valued signals. The spectrum of a real signal of length
+ * "N" is Hermitian (i.e. "X[N-k] == conj(X[k])"), so only its "N/2+1"
+ * first bins are stored. Internally, the even and odd samples are
+ * packed as the real and imaginary parts of a complex signal of
+ * length "N/2", which is transformed using the regular complex FFT:
+ * This halves both the computations and the memory.
+ *
+ * Any size is supported, but odd sizes cannot use the packing trick
+ * and fall back to a full complex FFT.
+ */
+public class RealFFTPlan {
+    private final int size;
+    private final int half;
+    private final ComplexFFT halfPlan;  // Only for even sizes
+    private final ComplexFFT fullPlan;  // Only for odd sizes
+    private final double[] cosTable;  // cos(2*pi*k/N), for k <= N/4
+    private final double[] sinTable;  // sin(2*pi*k/N), for k <= N/4
+    private final ThreadScratch<double[]> scratchSamples;
+    private final ThreadScratch<SignalBuffer> scratchSpectrum;
+    private final ThreadScratch<SignalBuffer> scratchFull;
+
+    /**
+     * Create a plan for real transforms of a given size.
+     * @param size The number of real samples.
+     */
+    public RealFFTPlan(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.size = size;
+        this.half = size / 2;
+
+        if (size % 2 == 0) {
+            halfPlan = FFTPlanCache.getNestedAnyLengthPlan(half);
+            fullPlan = null;
+            scratchFull = null;
+        } else {
+            halfPlan = null;
+            fullPlan = FFTPlanCache.getNestedAnyLengthPlan(size);
+            scratchFull = new ThreadScratch<>(16L * size, () -> new SignalBuffer(size));
+        }
+
+        cosTable = new double[half / 2 + 1];
+        sinTable = new double[half / 2 + 1];
+        for (int k = 0; k < cosTable.length; k++) {
+            double theta = 2.0 * Math.PI * (double) k / (double) size;
+            cosTable[k] = Math.cos(theta);
+            sinTable[k] = Math.sin(theta);
+        }
+
+        scratchSamples = new ThreadScratch<>(8L * size, () -> new double[size]);
+        scratchSpectrum = new ThreadScratch<>(16L * (half + 1), () -> new SignalBuffer(half + 1));
+    }
+
+    /**
+     * Get the number of real samples that are transformed by this plan.
+     * @return The number of samples "N".
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of bins in the half spectrum.
+     * @return The number of bins, i.e. "N/2+1".
+     */
+    public int getNumberOfBins() {
+        return half + 1;
+    }
+
+    /**
+     * Get a working array of "N" samples. The array is private to
+     * the calling thread and may be reused across calls (cf.
+     * "ThreadScratch"), so its initial content is undefined.
+     * @return The scratch array.
+     */
+    public double[] getScratchSamples() {
+        return scratchSamples.get();
+    }
+
+    /**
+     * Get a working buffer of "N/2+1" bins. The buffer is private to
+     * the calling thread and may be reused across calls (cf.
+     * "ThreadScratch"), so its initial content is undefined.
+     * @return The scratch buffer.
+     */
+    public SignalBuffer getScratchSpectrum() {
+        return scratchSpectrum.get();
+    }
+
+    /**
+     * Compute the half spectrum of a real signal.
+     * @param samples The "N" real samples (not modified).
+     * @param real Receives the real components of the "N/2+1" bins.
+     * @param imag Receives the imaginary components of the "N/2+1" bins.
+     */
+    public void forward(double[] samples,
+                        double[] real,
+                        double[] imag) {
+        if (samples.length < size ||
+            real.length <= half ||
+            imag.length <= half) {
+            throw new IllegalArgumentException();
+        }
+
+        if (fullPlan != null) {
+            SignalBuffer full = scratchFull.get();
+            full.setValues(0, samples, null, 0, size);
+            fullPlan.forward(full.getReal(), full.getImag());
+            full.getValues(0, real, imag, 0, half + 1);
+            return;
+        }
+
+        for (int n = 0; n < half; n++) {
+            real[n] = samples[2 * n];
+            imag[n] = samples[2 * n + 1];
+        }
+
+        halfPlan.forward(real, imag);
+
+        // Split the spectrum of the packed signal into the spectra
+        // "E" and "O" of the even and odd samples, then combine them
+        // as "X[k] = E[k] + exp(-2*i*pi*k/N) * O[k]". Bins "k" and
+        // "N/2-k" are processed together, which allows to work in place.
+        final double z0r = real[0];
+        final double z0i = imag[0];
+        real[0] = z0r + z0i;
+        imag[0] = 0;
+        real[half] = z0r - z0i;
+        imag[half] = 0;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int j = half - k;
+            final double ar = real[k];
+            final double ai = imag[k];
+            final double br = real[j];
+            final double bi = imag[j];
+
+            final double er = (ar + br) / 2.0;
+            final double ei = (ai - bi) / 2.0;
+            final double or = (ai + bi) / 2.0;
+            final double oi = (br - ar) / 2.0;
+
+            final double c = cosTable[k];
+            final double s = sinTable[k];
+
+            // W^k = (c, -s), and W^(N/2-k) = (-c, -s)
+            final double tr = c * or + s * oi;
+            final double ti = c * oi - s * or;
+            real[k] = er + tr;
+            imag[k] = ei + ti;
+            real[j] = er - tr;
+            imag[j] = ti - ei;
+        }
+    }
+
+    /**
+     * Reconstruct a real signal from its half spectrum.
+     * @param real The real components of the "N/2+1" bins
+     * (overwritten, as they are used as working memory).
+     * @param imag The imaginary components of the "N/2+1" bins
+     * (overwritten, as they are used as working memory).
+     * @param samples Receives the "N" real samples.
+     */
+    public void inverse(double[] real,
+                        double[] imag,
+                        double[] samples) {
+        if (samples.length < size ||
+            real.length <= half ||
+            imag.length <= half) {
+            throw new IllegalArgumentException();
+        }
+
+        if (fullPlan != null) {
+            // Rebuild the full Hermitian spectrum
+            SignalBuffer full = scratchFull.get();
+            full.setValues(0, real, imag, 0, half + 1);
+            for (int k = 1; k <= half; k++) {
+                full.set(size - k, real[k], -imag[k]);
+            }
+            fullPlan.inverse(full.getReal(), full.getImag());
+            System.arraycopy(full.getReal(), 0, samples, 0, size);
+            return;
+        }
+
+        // Inverse of the splitting in "forward()": Rebuild the
+        // spectrum of the packed signal "Z[k] = E[k] + i * O[k]"
+        final double x0r = real[0];
+        final double x0i = imag[0];
+        final double xmr = real[half];
+        final double xmi = imag[half];
+        real[0] = (x0r + xmr) / 2.0 - (x0i + xmi) / 2.0;
+        imag[0] = (x0i - xmi) / 2.0 + (x0r - xmr) / 2.0;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int j = half - k;
+            final double ar = real[k];
+            final double ai = imag[k];
+            final double br = real[j];
+            final double bi = imag[j];
+
+            final double c = cosTable[k];
+            final double s = sinTable[k];
+
+            // E[k] = (X[k] + conj(X[j])) / 2
+            final double er = (ar + br) / 2.0;
+            final double ei = (ai - bi) / 2.0;
+
+            // O[k] = (X[k] - conj(X[j])) * conj(W^k) / 2, with conj(W^k) = (c, s)
+            final double dr = (ar - br) / 2.0;
+            final double di = (ai + bi) / 2.0;
+            final double or = dr * c - di * s;
+            final double oi = dr * s + di * c;
+
+            // E[j] = conj(E[k]) and O[j] = conj(O[k])
+            real[k] = er - oi;
+            imag[k] = ei + or;
+            real[j] = er + oi;
+            imag[j] = or - ei;
+        }
+
+        halfPlan.inverse(real, imag);
+
+        for (int n = 0; n < half; n++) {
+            samples[2 * n] = real[n];
+            samples[2 * n + 1] = imag[n];
+        }
+    }
+}
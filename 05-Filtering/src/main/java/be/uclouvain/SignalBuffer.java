@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+import java.util.Arrays;
+
+
+/**
+ * This class encodes a vector of complex numbers as two parallel
+ * arrays of primitive doubles (one for the real components, one for
+ * the imaginary components). Contrarily to an array of
+ * "ComplexNumber" objects, this layout doesn't allocate one object
+ * per sample, which matters for long EEG recordings.
+ *
+ * The arrays returned by "getReal()" and "getImag()" are views on
+ * the internal storage, not copies: Modifying them modifies the
+ * buffer.
+ */
+public class SignalBuffer {
+    private final double[] real;
+    private final double[] imag;
+
+    /**
+     * Create a buffer of given length, filled with zeros.
+     * @param length The number of complex numbers in the buffer.
+     */
+    public SignalBuffer(int length) {
+        this(new double[length], new double[length]);
+    }
+
+    /**
+     * Create a buffer that wraps existing arrays (no copy is done).
+     * @param real The real components.
+     * @param imag The imaginary components.
+     */
+    public SignalBuffer(double[] real,
+                        double[] imag) {
+        if (real.length != imag.length) {
+            throw new IllegalArgumentException("The real and imaginary arrays must have the same length");
+        }
+        this.real = real;
+        this.imag = imag;
+    }
+
+    /**
+     * Create a buffer containing a real-valued signal. The real
+     * components are copied, possibly with zero-padding.
+     * @param values The real values.
+     * @param length The length of the buffer (must be larger or
+     * equal to the number of values).
+     * @return The new buffer.
+     */
+    public static SignalBuffer fromReal(double[] values,
+                                        int length) {
+        if (length < values.length) {
+            throw new IllegalArgumentException();
+        }
+        return new SignalBuffer(Arrays.copyOf(values, length), new double[length]);
+    }
+
+    /**
+     * Get the length of the buffer.
+     * @return The number of complex numbers in the buffer.
+     */
+    public int getLength() {
+        return real.length;
+    }
+
+    /**
+     * Get a view on the real components.
+     * @return The internal array of real components.
+     */
+    public double[] getReal() {
+        return real;
+    }
+
+    /**
+     * Get a view on the imaginary components.
+     * @return The internal array of imaginary components.
+     */
+    public double[] getImag() {
+        return imag;
+    }
+
+    /**
+     * Get the real component of one item.
+     * @param index The index of the item.
+     * @return The real component.
+     */
+    public double getReal(int index) {
+        return real[index];
+    }
+
+    /**
+     * Get the imaginary component of one item.
+     * @param index The index of the item.
+     * @return The imaginary component.
+     */
+    public double getImag(int index) {
+        return imag[index];
+    }
+
+    /**
+     * Set one item in the buffer.
+     * @param index The index of the item.
+     * @param re The real component.
+     * @param im The imaginary component.
+     */
+    public void set(int index,
+                    double re,
+                    double im) {
+        real[index] = re;
+        imag[index] = im;
+    }
+
+    /**
+     * Copy a range of items out of the buffer.
+     * @param from Index of the first item to be read.
+     * @param re Target array for the real components.
+     * @param im Target array for the imaginary components (can be
+     * `null` if not needed).
+     * @param offset Index in the target arrays.
+     * @param count Number of items to be copied.
+     */
+    public void getValues(int from,
+                          double[] re,
+                          double[] im,
+                          int offset,
+                          int count) {
+        System.arraycopy(real, from, re, offset, count);
+        if (im != null) {
+            System.arraycopy(imag, from, im, offset, count);
+        }
+    }
+
+    /**
+     * Copy a range of items into the buffer.
+     * @param from Index of the first item to be written.
+     * @param re Source array for the real components.
+     * @param im Source array for the imaginary components, or `null`
+     * to store real numbers.
+     * @param offset Index in the source arrays.
+     * @param count Number of items to be copied.
+     */
+    public void setValues(int from,
+                          double[] re,
+                          double[] im,
+                          int offset,
+                          int count) {
+        System.arraycopy(re, offset, real, from, count);
+        if (im == null) {
+            Arrays.fill(imag, from, from + count, 0);
+        } else {
+            System.arraycopy(im, offset, imag, from, count);
+        }
+    }
+
+    /**
+     * Set a range of items to zero.
+     * @param from Index of the first item (inclusive).
+     * @param to Index of the last item (exclusive).
+     */
+    public void clear(int from,
+                      int to) {
+        Arrays.fill(real, from, to, 0);
+        Arrays.fill(imag, from, to, 0);
+    }
+
+    /**
+     * Create a deep copy of the buffer, possibly resized (truncated
+     * or zero-padded).
+     * @param length The length of the copy.
+     * @return The copy.
+     */
+    public SignalBuffer copy(int length) {
+        return new SignalBuffer(Arrays.copyOf(real, length), Arrays.copyOf(imag, length));
+    }
+}
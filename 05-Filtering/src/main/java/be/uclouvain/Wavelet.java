@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2022, Sebastien Jodogne, ICTEAM UCLouvain, Belgium
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ **/
+
+
+package be.uclouvain;
+
+
+/**
+ * Wavelets that are available in the lifting scheme (cf.
+ * "LiftingDWT"). Each wavelet is factored into a sequence of lifting
+ * steps, followed by a scaling of the two polyphase components. A
+ * lifting step adds to each sample of one parity a linear combination
+ * of its previous, current and next neighbors of the other parity:
+ * Such a step is trivially inverted by subtracting the same
+ * combination, whatever the boundary handling.
+ *
+ * The scaling factors are chosen so that the low-pass branch has a
+ * gain of "sqrt(2)" at the DC frequency, as for orthonormal wavelets.
+ */
+public enum Wavelet {
+    /**
+     * Haar wavelet (2 taps). Its support is the shortest, but it has
+     * only one vanishing moment.
+     */
+    HAAR(new double[][] {
+            predict(0, -1, 0),
+            update(0, 0.5, 0)
+        }, Math.sqrt(2.0), 1.0 / Math.sqrt(2.0)),
+
+    /**
+     * Daubechies wavelet with 4 taps (2 vanishing moments), using the
+     * factorization of Daubechies and Sweldens (1998).
+     */
+    DAUBECHIES_4(new double[][] {
+            update(0, Math.sqrt(3.0), 0),
+            predict(-(Math.sqrt(3.0) - 2.0) / 4.0, -Math.sqrt(3.0) / 4.0, 0),
+            update(0, 0, -1)
+        }, (Math.sqrt(3.0) - 1.0) / Math.sqrt(2.0), (Math.sqrt(3.0) + 1.0) / Math.sqrt(2.0)),
+
+    /**
+     * Cohen-Daubechies-Feauveau 9/7 biorthogonal wavelet, as used by
+     * JPEG 2000. It is symmetric, which avoids phase distortion.
+     */
+    CDF_97(new double[][] {
+            predict(0, -1.586134342059924, -1.586134342059924),
+            update(-0.052980118572961, -0.052980118572961, 0),
+            predict(0, 0.882911075530934, 0.882911075530934),
+            update(0.443506852043971, 0.443506852043971, 0)
+        }, 1.149604398860241, 1.0 / 1.149604398860241);
+
+    // The odd samples are updated from their even neighbors, or conversely
+    private static final double PREDICT = 0;
+    private static final double UPDATE = 1;
+
+    private final double[][] steps;
+    private final double evenScale;
+    private final double oddScale;
+
+    Wavelet(double[][] steps,
+            double evenScale,
+            double oddScale) {
+        this.steps = steps;
+        this.evenScale = evenScale;
+        this.oddScale = oddScale;
+    }
+
+    private static double[] predict(double previous,
+                                    double current,
+                                    double next) {
+        return new double[] { PREDICT, previous, current, next };
+    }
+
+    private static double[] update(double previous,
+                                   double current,
+                                   double next) {
+        return new double[] { UPDATE, previous, current, next };
+    }
+
+    /**
+     * Get the number of lifting steps.
+     * @return The number of steps.
+     */
+    int getNumberOfSteps() {
+        return steps.length;
+    }
+
+    /**
+     * Check whether one lifting step updates the odd samples.
+     * @param step The index of the step.
+     * @return `true` for a prediction step, `false` for an update step.
+     */
+    boolean isPredict(int step) {
+        return steps[step][0] == PREDICT;
+    }
+
+    /**
+     * Get one weight of a lifting step.
+     * @param step The index of the step.
+     * @param neighbor -1, 0 or 1 for the previous, current and next
+     * neighbor of the other parity.
+     * @return The weight.
+     */
+    double getWeight(int step,
+                     int neighbor) {
+        return steps[step][2 + neighbor];
+    }
+
+    /**
+     * Get the factor that is applied to the approximation coefficients.
+     * @return The factor.
+     */
+    double getEvenScale() {
+        return evenScale;
+    }
+
+    /**
+     * Get the factor that is applied to the detail coefficients.
+     * @return The factor.
+     */
+    double getOddScale() {
+        return oddScale;
+    }
+
+    /**
+     * Parse the name of a wavelet, as used in the REST API: "haar",
+     * "db4" or "cdf97".
+     * @param name The name.
+     * @return The wavelet.
+     */
+    public static Wavelet parse(String name) {
+        switch (name) {
+            case "haar":
+                return HAAR;
+            case "db4":
+                return DAUBECHIES_4;
+            case "cdf97":
+                return CDF_97;
+            default:
+                throw new IllegalArgumentException("Unknown wavelet: " + name);
+        }
+    }
+}
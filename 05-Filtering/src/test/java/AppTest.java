@@ -7,11 +7,31 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import be.uclouvain.ChannelColumnCache;
 import be.uclouvain.ComplexNumber;
 import be.uclouvain.EDFTimeSeries;
+import be.uclouvain.FFTPlanCache;
+import be.uclouvain.FilterMask;
+import be.uclouvain.FilterMaskCache;
+import be.uclouvain.FilterMode;
 import be.uclouvain.HttpToolbox;
+import be.uclouvain.LiftingDWT;
+import be.uclouvain.MockHttpExchange;
+import be.uclouvain.OverlapSaveFilter;
+import be.uclouvain.Padding;
+import be.uclouvain.PolyphaseResampler;
+import be.uclouvain.Precision;
+import be.uclouvain.RealFFTPlan;
 import be.uclouvain.Signal;
+import be.uclouvain.ThreadScratch;
+import be.uclouvain.Wavelet;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 @Grade
 @Allow("all")  // Allows the use of "java.lang.Thread" and "java.lang.ClassLoader" for dcm4che/HttpToolbox
@@ -234,4 +254,462 @@ public class AppTest {
         output = App.filter(edf, channelIndex, true, 8.1, false, 0);
         assertTrue(isZero(output));
     }
+
+    @Test
+    @Grade(value = 1)
+    public void testPlanCache() {
+        FFTPlanCache.clear();
+        Signal s = new Signal(64);
+        App.computeInverseFFT(App.computeFFT(s));
+        assertEquals(1, FFTPlanCache.getCountMisses());
+        assertEquals(1, FFTPlanCache.getCountHits());
+
+        FFTPlanCache.setCapacity(2);
+        App.computeFFT(new Signal(128));
+        App.computeFFT(new Signal(256));
+        assertEquals(2, FFTPlanCache.getSize());
+        App.computeFFT(new Signal(64));  // Was evicted
+        assertEquals(4, FFTPlanCache.getCountMisses());
+
+        FFTPlanCache.setCapacity(FFTPlanCache.DEFAULT_CAPACITY);
+
+        // The complex plan of size 500 that is used by the real plan is not counted
+        FFTPlanCache.clear();
+        RealFFTPlan real = FFTPlanCache.getRealPlan(1000);
+        assertEquals(1, FFTPlanCache.getCountMisses());
+        assertEquals(0, FFTPlanCache.getCountHits());
+        assertEquals(2, FFTPlanCache.getSize());
+
+        // Only the small working buffers are kept by each thread
+        assertTrue(real.getScratchSamples() == real.getScratchSamples());
+        RealFFTPlan large = new RealFFTPlan((int) (ThreadScratch.MAX_RETAINED_BYTES / 8) + 2);
+        assertTrue(large.getScratchSamples() != large.getScratchSamples());
+        assertEquals(large.getSize(), large.getScratchSamples().length);
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testFilterAllChannels() throws IOException {
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        int[] channels = new int[edf.getNumberOfChannels() - 1];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = i;
+        }
+
+        Signal[] outputs = App.filter(edf, channels, true, 2, true, 20, Padding.SMOOTH);
+        assertEquals(channels.length, outputs.length);
+        for (int i = 0; i < channels.length; i++) {
+            compareSignals(App.filter(edf, channels[i], true, 2, true, 20, Padding.SMOOTH), outputs[i]);
+        }
+
+        try {
+            App.filter(edf, new int[] { 0, 1, 0 }, true, 2, true, 20, Padding.SMOOTH);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testIIRFilter() throws IOException {
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        int channelIndex = edf.lookupChannelIndex("sine 8 Hz");
+
+        for (FilterMode mode : new FilterMode[] { FilterMode.IIR, FilterMode.ZERO_PHASE }) {
+            Signal output = App.filter(edf, channelIndex, false, 0, false, 0, mode, 4, Padding.NONE);
+            assertFalse(isZero(output));
+            output = App.filter(edf, channelIndex, false, 0, true, 16, mode, 4, Padding.NONE);
+            assertFalse(isZero(output));
+            output = App.filter(edf, channelIndex, false, 0, true, 2, mode, 4, Padding.NONE);
+            assertTrue(isZero(output));
+            output = App.filter(edf, channelIndex, true, 2, false, 0, mode, 4, Padding.NONE);
+            assertFalse(isZero(output));
+            output = App.filter(edf, channelIndex, true, 30, false, 0, mode, 4, Padding.NONE);
+            assertTrue(isZero(output));
+            output = App.filter(edf, channelIndex, true, 10, true, 5, mode, 4, Padding.NONE);
+            assertTrue(isZero(output));
+        }
+
+        // Zero-phase filtering of a pass-band must not shift the sine wave
+        Signal ideal = App.filter(edf, channelIndex, true, 2, true, 16);
+        Signal output = App.filter(edf, channelIndex, true, 2, true, 16, FilterMode.ZERO_PHASE, 6, Padding.NONE);
+        final int N = output.getLength();
+        for (int i = N/5; i < 4*N/5; i++) {
+            assertEquals(ideal.getValue(i).getReal(), output.getValue(i).getReal(), 1);
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testOverlapSave() throws IOException {
+        final double[] kernel = new double[] { 0.1, -0.3, 0.5, 1.0, 0.5, -0.3, 0.1 };
+        final double[] input = new double[1000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = Math.sin(0.1 * i) + 0.01 * (i % 17);
+        }
+
+        final List<Double> output = new ArrayList<>();
+        final int[] countBlocks = new int[1];
+        OverlapSaveFilter filter = new OverlapSaveFilter(kernel, 32, (samples, offset, count) -> {
+            for (int i = 0; i < count; i++) {
+                output.add(samples[offset + i]);
+            }
+            countBlocks[0]++;
+        });
+        assertEquals(26, filter.getBlockSize());
+
+        filter.push(input, 0, 100);
+        assertTrue(output.size() > 0);  // Results are available before the end of the signal
+        filter.push(input, 100, input.length - 100);
+        filter.flush();
+
+        assertEquals(input.length, output.size());
+        assertTrue(countBlocks[0] > 1);
+
+        // Compare with the direct convolution, compensated for the delay
+        for (int i = 0; i < input.length; i++) {
+            double expected = 0;
+            for (int k = 0; k < kernel.length; k++) {
+                int j = i + kernel.length / 2 - k;
+                if (j >= 0 && j < input.length) {
+                    expected += kernel[k] * input[j];
+                }
+            }
+            assertEquals(expected, output.get(i), 0.0000001);
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testFIRFilter() throws IOException, URISyntaxException {
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        int channelIndex = edf.lookupChannelIndex("sine 8 Hz");
+
+        Signal output = App.filter(edf, channelIndex, false, 0, false, 0, FilterMode.FIR, 256, Padding.NONE);
+        assertEquals(edf.getNumberOfSamples(channelIndex), output.getLength());
+        assertFalse(isZero(output));
+        output = App.filter(edf, channelIndex, false, 0, true, 2, FilterMode.FIR, 256, Padding.NONE);
+        assertTrue(isZero(output));
+        output = App.filter(edf, channelIndex, true, 30, false, 0, FilterMode.FIR, 256, Padding.NONE);
+        assertTrue(isZero(output));
+
+        // The FIR filter has a linear phase, which is compensated
+        Signal ideal = App.filter(edf, channelIndex, true, 2, true, 16);
+        output = App.filter(edf, channelIndex, true, 2, true, 16, FilterMode.FIR, 256, Padding.NONE);
+        final int N = output.getLength();
+        for (int i = N/5; i < 4*N/5; i++) {
+            assertEquals(ideal.getValue(i).getReal(), output.getValue(i).getReal(), 1);
+        }
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        JSONArray streamed = HttpToolbox.parseJsonArray(MockHttpExchange.executePostAsBytes(
+                app, "/filter-stream", MockHttpExchange.stringToBytes(
+                    "{\"channel\":" + channelIndex + ",\"hasHighpass\":true,\"highpass\":2,\"hasLowpass\":true,\"lowpass\":16,\"order\":256}")));
+        assertEquals(N, streamed.length());
+        assertEquals(0, ChannelColumnCache.getSize());  // Streaming doesn't decode the whole channel
+        for (int i = 0; i < N; i += 1000) {
+            assertEquals(output.getValue(i).getReal(), streamed.getJSONObject(i).getDouble("y"), 0.0000001);
+        }
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testResampledFilter() throws IOException, URISyntaxException {
+        PolyphaseResampler resampler = PolyphaseResampler.create(200, 50);
+        assertEquals(1, resampler.getUp());
+        assertEquals(4, resampler.getDown());
+        assertEquals(50.0, resampler.getOutputRate(200), 0.000001);
+        assertEquals(250, resampler.getOutputLength(1000));
+
+        assertEquals(1, PolyphaseResampler.create(200, 0.2).getUp());
+        assertEquals(1000, PolyphaseResampler.create(200, 0.2).getDown());
+        try {
+            // 1/2000 needs a denominator above "MAX_FACTOR"
+            PolyphaseResampler.create(200, 0.1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            PolyphaseResampler.create(0.1, 200);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // A 3Hz sine is preserved, a 40Hz sine is above the new Nyquist frequency
+        final double[] input = new double[1000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = Math.sin(2.0 * Math.PI * 3.0 * i / 200.0) + Math.sin(2.0 * Math.PI * 40.0 * i / 200.0);
+        }
+        final double[] output = resampler.process(input, input.length);
+        assertEquals(250, output.length);
+        for (int i = 50; i < 200; i++) {
+            assertEquals(Math.sin(2.0 * Math.PI * 3.0 * i / 50.0), output[i], 0.01);
+        }
+
+        // The array-based filters agree with each other on a pass-band
+        Signal ideal = App.filter(output, output.length, 50, true, 1, true, 10, FilterMode.IDEAL, 0, Padding.NONE);
+        for (FilterMode mode : new FilterMode[] { FilterMode.ZERO_PHASE, FilterMode.FIR }) {
+            Signal filtered = App.filter(output, output.length, 50, true, 1, true, 10, mode, (mode == FilterMode.FIR ? 64 : 4), Padding.NONE);
+            assertEquals(250, filtered.getLength());
+            for (int i = 50; i < 200; i++) {
+                assertEquals(ideal.getValue(i).getReal(), filtered.getValue(i).getReal(), 0.05);
+            }
+        }
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        int channelIndex = edf.lookupChannelIndex("sine 8 Hz");
+
+        JSONObject response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/filter", MockHttpExchange.stringToBytes(
+                    "{\"channel\":" + channelIndex + ",\"hasHighpass\":true,\"highpass\":2,\"hasLowpass\":true,\"lowpass\":16,\"targetRate\":50}")));
+        final int N = edf.getNumberOfSamples(channelIndex) / 4;
+        assertEquals(N, response.getJSONArray("source").length());
+        assertEquals(N, response.getJSONArray("filtered").length());
+        assertEquals(0.02, response.getJSONArray("filtered").getJSONObject(1).getDouble("x"), 0.000001);
+        for (int i = N/5; i < 4*N/5; i += 100) {
+            assertEquals(response.getJSONArray("source").getJSONObject(i).getDouble("y"),
+                         response.getJSONArray("filtered").getJSONObject(i).getDouble("y"), 1);
+        }
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/filter", MockHttpExchange.stringToBytes(
+                    "{\"channel\":" + channelIndex + ",\"hasHighpass\":true,\"highpass\":2,\"hasLowpass\":true,\"lowpass\":16,\"targetRate\":-1}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testSinglePrecision() throws IOException, URISyntaxException {
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        for (int channel = 0; channel < edf.getNumberOfChannels() - 1; channel++) {
+            Signal expected = App.filter(edf, channel, true, 2, true, 20, Padding.POWER_OF_TWO);
+            Signal actual = App.filter(edf, channel, true, 2, true, 20, Padding.POWER_OF_TWO, Precision.SINGLE);
+            assertEquals(expected.getLength(), actual.getLength());
+            for (int i = 0; i < expected.getLength(); i++) {
+                assertEquals(expected.getBuffer().getReal(i), actual.getBuffer().getReal(i), 0.0001);
+            }
+        }
+
+        int channelIndex = edf.lookupChannelIndex("sine 8 Hz");
+        assertTrue(isZero(App.filter(edf, channelIndex, true, 8.1, false, 0, Padding.POWER_OF_TWO, Precision.SINGLE)));
+
+        AppLauncher app = new AppLauncher();
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        final String filter = "{\"channel\":" + channelIndex + ",\"hasHighpass\":true,\"highpass\":2,\"hasLowpass\":true,\"lowpass\":16,";
+        JSONObject response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/filter", MockHttpExchange.stringToBytes(filter + "\"precision\":\"float32\"}")));
+        assertEquals(edf.getNumberOfSamples(channelIndex), response.getJSONArray("filtered").length());
+
+        response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/filter", MockHttpExchange.stringToBytes(filter + "\"precision\":\"float32\",\"targetRate\":50}")));
+        assertEquals(edf.getNumberOfSamples(channelIndex) / 4, response.getJSONArray("filtered").length());
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/filter", MockHttpExchange.stringToBytes(
+                    "{\"channel\":-1,\"hasHighpass\":false,\"highpass\":0,\"hasLowpass\":false,\"lowpass\":0,\"targetRate\":50}")));
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/filter", MockHttpExchange.stringToBytes(
+                    filter + "\"precision\":\"float32\",\"mode\":\"iir\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/filter", MockHttpExchange.stringToBytes(
+                    filter + "\"precision\":\"float32\",\"padding\":\"smooth\"}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testAnalyticSignal() throws IOException, URISyntaxException {
+        // The analytic signal of "A*cos(wt)" is "A*exp(iwt)"
+        Signal source = new Signal(256);
+        for (int i = 0; i < 256; i++) {
+            source.setValue(i, 3.0 * Math.cos(2.0 * Math.PI * 8.0 * i / 256.0), 0);
+        }
+
+        Signal analytic = App.computeAnalyticSignal(source);
+        assertEquals(256, analytic.getLength());
+        for (int i = 0; i < 256; i++) {
+            ComplexNumber z = analytic.getValue(i);
+            assertEquals(3.0 * Math.cos(2.0 * Math.PI * 8.0 * i / 256.0), z.getReal(), 0.000001);
+            assertEquals(3.0 * Math.sin(2.0 * Math.PI * 8.0 * i / 256.0), z.getImag(), 0.000001);
+        }
+
+        try {
+            App.computeAnalyticSignal(new Signal(100));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        AppLauncher app = new AppLauncher();
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/envelope", MockHttpExchange.stringToBytes("{\"channel\":0}")));
+
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+        final EDFTimeSeries edf = new EDFTimeSeries(HttpToolbox.readResource("/test_generator_2.edf"));
+        int channelIndex = edf.lookupChannelIndex("sine 8 Hz");
+
+        JSONObject response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/envelope", MockHttpExchange.stringToBytes(
+                    "{\"channel\":" + channelIndex + ",\"hasHighpass\":true,\"highpass\":4,\"hasLowpass\":true,\"lowpass\":12,\"targetRate\":50}")));
+        assertEquals(50, response.getDouble("samplingFrequency"), 0.000001);
+
+        JSONArray envelope = response.getJSONArray("envelope");
+        JSONArray phase = response.getJSONArray("phase");
+        final int N = edf.getNumberOfSamples(channelIndex) / 4;
+        assertEquals(N, envelope.length());
+        assertEquals(N, phase.length());
+
+        // The envelope of a pure sine is flat, and its phase turns at 8Hz
+        final double amplitude = envelope.getDouble(N / 2);
+        assertTrue(amplitude > 1);
+        int countWraps = 0;
+        for (int i = N/5; i < 4*N/5; i++) {
+            assertEquals(amplitude, envelope.getDouble(i), 0.01 * amplitude);
+            if (phase.getDouble(i) < phase.getDouble(i - 1)) {
+                countWraps++;
+            }
+        }
+        assertEquals(8.0, countWraps / ((4*N/5 - N/5) / 50.0), 0.1);
+
+        // Without "targetRate", the band-limited signal is decimated to 4 times its upper cutoff
+        response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/envelope", MockHttpExchange.stringToBytes(
+                    "{\"channel\":" + channelIndex + ",\"hasHighpass\":true,\"highpass\":4,\"hasLowpass\":true,\"lowpass\":12}")));
+        assertEquals(48, response.getDouble("samplingFrequency"), 0.000001);
+        assertEquals(edf.getNumberOfSamples(channelIndex) * 6 / 25, response.getJSONArray("envelope").length(), 1);
+
+        response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/envelope", MockHttpExchange.stringToBytes("{\"channel\":" + channelIndex + "}")));
+        assertEquals(edf.getSamplingFrequency(channelIndex), response.getDouble("samplingFrequency"), 0.000001);
+        assertEquals(edf.getNumberOfSamples(channelIndex), response.getJSONArray("envelope").length());
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/envelope", MockHttpExchange.stringToBytes(
+                    "{\"channel\":" + channelIndex + ",\"targetRate\":0}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testWavelet() throws IOException, URISyntaxException {
+        final java.util.Random random = new java.util.Random(42);
+        final double[] source = new double[1001];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextGaussian();
+        }
+
+        assertEquals(10, LiftingDWT.getMaxLevels(1001));
+        assertEquals(251, LiftingDWT.getNumberOfSamples(1001, 2));
+        assertEquals(125, LiftingDWT.getNumberOfDetails(1001, 2));
+
+        for (Wavelet wavelet : Wavelet.values()) {
+            // Perfect reconstruction, for any length
+            double[] data = source.clone();
+            LiftingDWT.forward(data, data.length, wavelet, 10);
+            LiftingDWT.inverse(data, data.length, wavelet, 10);
+            for (int i = 0; i < data.length; i++) {
+                assertEquals(source[i], data[i], 0.0000001);
+            }
+
+            // A constant signal has no details
+            data = new double[64];
+            Arrays.fill(data, 3);
+            LiftingDWT.forward(data, data.length, wavelet, 3);
+            for (int level = 0; level < 3; level++) {
+                double[] details = new double[LiftingDWT.getNumberOfDetails(64, level)];
+                LiftingDWT.getDetails(data, 64, level, details);
+                for (double d : details) {
+                    assertEquals(0, d, 0.0000001);
+                }
+            }
+            assertEquals(3 * Math.pow(2, 1.5), data[0], 0.0000001);
+        }
+
+        // Daubechies-4 and CDF 9/7 have (at least) 2 vanishing moments: A ramp has no details
+        for (Wavelet wavelet : new Wavelet[] { Wavelet.DAUBECHIES_4, Wavelet.CDF_97 }) {
+            double[] data = new double[64];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = 2.0 * i - 5.0;
+            }
+            LiftingDWT.forward(data, data.length, wavelet, 1);
+            for (int j = 2; j < 28; j++) {
+                assertEquals(0, data[2 * j + 1], 0.0000001);
+            }
+        }
+
+        // Denoising a noisy sine brings it closer to the clean sine
+        final double[] clean = new double[4096];
+        final double[] noisy = new double[4096];
+        for (int i = 0; i < clean.length; i++) {
+            clean[i] = 10.0 * Math.sin(2.0 * Math.PI * 4.0 * i / 4096.0);
+            noisy[i] = clean[i] + random.nextGaussian();
+        }
+
+        double[] denoised = noisy.clone();
+        double threshold = LiftingDWT.denoise(denoised, denoised.length, Wavelet.DAUBECHIES_4, 6, -1);
+        assertEquals(Math.sqrt(2.0 * Math.log(4096)), threshold, 0.5);
+        double before = 0;
+        double after = 0;
+        for (int i = 0; i < clean.length; i++) {
+            before += (noisy[i] - clean[i]) * (noisy[i] - clean[i]);
+            after += (denoised[i] - clean[i]) * (denoised[i] - clean[i]);
+        }
+        assertTrue(after < before / 4);
+
+        AppLauncher app = new AppLauncher();
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/wavelet-denoise", MockHttpExchange.stringToBytes("{\"channel\":0}")));
+        MockHttpExchange.executeMultipartUploadAsBytes(app, "/upload", "data", HttpToolbox.readResource("/test_generator_2.edf"));
+
+        JSONObject response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/wavelet-denoise", MockHttpExchange.stringToBytes("{\"channel\":4,\"wavelet\":\"cdf97\"}")));
+        assertEquals(120000, response.getJSONArray("source").length());
+        assertEquals(120000, response.getJSONArray("filtered").length());
+
+        response = HttpToolbox.parseJsonObject(MockHttpExchange.executePostAsBytes(
+                app, "/wavelet-decompose", MockHttpExchange.stringToBytes("{\"channel\":4,\"levels\":3}")));
+        assertEquals(3, response.getJSONArray("details").length());
+        assertEquals(60000, response.getJSONArray("details").getJSONObject(0).getJSONArray("values").length());
+        assertEquals(100, response.getJSONArray("details").getJSONObject(0).getDouble("samplingFrequency"), 0.000001);
+        assertEquals(15000, response.getJSONObject("approximation").getJSONArray("values").length());
+        assertEquals(25, response.getJSONObject("approximation").getDouble("samplingFrequency"), 0.000001);
+
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/wavelet-denoise", MockHttpExchange.stringToBytes(
+                    "{\"channel\":4,\"wavelet\":\"nope\"}")));
+        assertEquals(400, MockHttpExchange.executePostAsStatusCode(app, "/wavelet-decompose", MockHttpExchange.stringToBytes(
+                    "{\"channel\":4,\"levels\":100}")));
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/wavelet-denoise", MockHttpExchange.stringToBytes(
+                    "{\"channel\":-1}")));
+        assertEquals(404, MockHttpExchange.executePostAsStatusCode(app, "/wavelet-decompose", MockHttpExchange.stringToBytes(
+                    "{\"channel\":-1}")));
+    }
+
+    @Test
+    @Grade(value = 1)
+    public void testFilterMaskCache() {
+        FilterMask mask = FilterMask.create(1000, 100, true, 10, true, 20);
+        assertEquals(2, mask.getNumberOfIntervals());  // Positive and negative frequencies
+        assertEquals(100, mask.getIntervalStart(0));
+        assertEquals(201, mask.getIntervalEnd(0));
+        assertEquals(800, mask.getIntervalStart(1));
+        assertEquals(901, mask.getIntervalEnd(1));
+        assertEquals(1, mask.getGain(150), 0);
+        assertEquals(0, mask.getGain(500), 0);
+
+        double[] real = new double[501];
+        double[] imag = new double[501];
+        Arrays.fill(real, 1);
+        Arrays.fill(imag, 1);
+        mask.apply(real, imag, 501);
+        for (int k = 0; k < 501; k++) {
+            assertEquals(mask.getGain(k), real[k], 0);
+            assertEquals(mask.getGain(k), imag[k], 0);
+        }
+
+        FilterMaskCache.clear();
+        FilterMaskCache.getMask(1000, 100, true, 10, true, 20);
+        FilterMaskCache.getMask(1000, 100, true, 10, true, 20);
+        FilterMaskCache.getMask(1000, 100, false, 5, true, 20);
+        FilterMaskCache.getMask(1000, 100, false, 7, true, 20);  // The high-pass cutoff is unused
+        assertEquals(2, FilterMaskCache.getCountMisses());
+        assertEquals(2, FilterMaskCache.getCountHits());
+        assertEquals(2, FilterMaskCache.getSize());
+
+        FilterMaskCache.setMemoryBudget(1);
+        assertEquals(0, FilterMaskCache.getSize());
+        assertEquals(0, FilterMaskCache.getMemoryUsage());
+        FilterMaskCache.setMemoryBudget(FilterMaskCache.DEFAULT_MEMORY_BUDGET);
+    }
 }
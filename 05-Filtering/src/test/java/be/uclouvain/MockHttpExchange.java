@@ -111,7 +111,9 @@ public class MockHttpExchange extends HttpExchange {
             throw new IllegalStateException("Already closed");
         } else if (hasResponse) {
             byte[] body = responseBody.toByteArray();
+            // A length of 0 corresponds to chunked transfer encoding
             if (responseCode == 200 &&
+                    responseLength != 0 &&
                     body.length != responseLength) {
                 throw new IllegalStateException("Size of the response body doesn't match sendResponseHeaders()");
             }